@@ -0,0 +1,284 @@
+package com.example.accountimport;
+
+import com.example.changelog.ChangeLog;
+import com.example.config.AccountCacheConfig;
+import com.example.dto.ChangeEvent;
+import com.example.dto.ImportReport;
+import com.example.invalidation.CacheInvalidator;
+import com.example.invalidation.InvalidationKey;
+import com.example.service.UsernameIndex;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hibernate.Cache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Imports accounts from a CSV or NDJSON upload without going through POST /register once per account.
+ * The upload is read line by line and valid lines are collected into batches of accounts.import.batch-size.
+ * Each batch costs three statements: one IN query for usernames that already exist, one JDBC batch insert and
+ * one IN query for the new IDs. Each batch commits on its own, on a connection taken from the pool only once the
+ * batch has been read.
+ * A username repeated within a batch is caught in memory; one repeated across batches is caught by the next batch's
+ * IN query, so memory stays bounded by the batch size whatever the size of the file.
+ * Every committed batch is reported to the other nodes as one invalidation entry holding all of its new accounts.
+ */
+@Service
+public class AccountImporter {
+    private static final Logger log = LoggerFactory.getLogger(AccountImporter.class);
+    private static final String DUPLICATE = "Username already exists";
+
+    private final DataSource dataSource;
+    private final UsernameIndex usernameIndex;
+    private final ChangeLog changeLog;
+    private final CacheInvalidator cacheInvalidator;
+    private final EntityManagerFactory entityManagerFactory;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final int maxReportedErrors;
+
+    public AccountImporter(DataSource dataSource, UsernameIndex usernameIndex, ChangeLog changeLog,
+                           CacheInvalidator cacheInvalidator, EntityManagerFactory entityManagerFactory, ObjectMapper objectMapper,
+                           @Value("${accounts.import.batch-size:1000}") int batchSize,
+                           @Value("${accounts.import.max-reported-errors:100}") int maxReportedErrors) {
+        this.dataSource = dataSource;
+        this.usernameIndex = usernameIndex;
+        this.changeLog = changeLog;
+        this.cacheInvalidator = cacheInvalidator;
+        this.entityManagerFactory = entityManagerFactory;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    /**
+     * Imports every valid line of an upload. Lines before a failure stay imported.
+     *
+     * @param body The upload
+     * @param charset The upload's character set
+     * @param format CSV or NDJSON
+     * @return Line counts and up to accounts.import.max-reported-errors rejected lines, in line order
+     * @throws IOException if the upload cannot be read
+     */
+    public ImportReport importAccounts(InputStream body, Charset charset, AccountRecordReader.Format format)
+            throws IOException {
+        long start = System.nanoTime();
+        ImportReport report = new ImportReport();
+        AccountRecordReader reader = new AccountRecordReader(
+            new BufferedReader(new InputStreamReader(body, charset)), format, objectMapper);
+        try {
+            List<AccountRecordReader.Record> batch = new ArrayList<>(batchSize);
+            AccountRecordReader.Record record;
+            while ((record = reader.next()) != null) {
+                report.setLines(report.getLines() + 1);
+                String error = record.getError() != null ? record.getError() : validate(record);
+                if (error != null) {
+                    reject(report, record, error);
+                    continue;
+                }
+                batch.add(record);
+                if (batch.size() >= batchSize) {
+                    insert(batch, report);
+                    batch.clear();
+                }
+            }
+            insert(batch, report);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Account import stopped after " + report.getImported() + " accounts", e);
+        }
+        // Duplicates are only found when their batch is written, after later lines may have failed validation
+        report.getErrors().sort(Comparator.comparingLong(ImportReport.LineError::getLine));
+        log.info("Imported {} of {} accounts in {} ms", report.getImported(), report.getLines(),
+            (System.nanoTime() - start) / 1_000_000);
+        return report;
+    }
+
+    /**
+     * Same rules as AccountService.registerAccount, plus the column length.
+     */
+    private static String validate(AccountRecordReader.Record record) {
+        if (record.getUsername() == null || record.getUsername().trim().isEmpty()) {
+            return "Username is required";
+        }
+        if (record.getUsername().length() > 255) {
+            return "Username is longer than 255 characters";
+        }
+        if (record.getPassword() == null || record.getPassword().length() < 4) {
+            return "Password must be at least 4 characters";
+        }
+        if (record.getPassword().length() > 255) {
+            return "Password is longer than 255 characters";
+        }
+        return null;
+    }
+
+    /**
+     * Writes one parsed batch on a pooled connection taken for just that batch, so a slow upload never holds a
+     * connection while its next lines are still arriving.
+     */
+    private void insert(List<AccountRecordReader.Record> batch, ImportReport report) throws SQLException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            insert(connection, batch, report);
+        }
+    }
+
+    private void insert(Connection connection, List<AccountRecordReader.Record> batch, ImportReport report)
+            throws SQLException {
+        Map<String, AccountRecordReader.Record> accounts = new LinkedHashMap<>();
+        for (AccountRecordReader.Record record : batch) {
+            if (accounts.putIfAbsent(record.getUsername(), record) != null) {
+                reject(report, record, DUPLICATE);
+            }
+        }
+        Set<String> taken = existing(connection, accounts.keySet());
+        accounts.values().removeIf(record -> {
+            if (taken.contains(record.getUsername())) {
+                reject(report, record, DUPLICATE);
+                return true;
+            }
+            return false;
+        });
+        if (accounts.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO account (accountId, username, password) VALUES (NEXT VALUE FOR hibernate_sequence, ?, ?)")) {
+            try {
+                for (AccountRecordReader.Record record : accounts.values()) {
+                    insert.setString(1, record.getUsername());
+                    insert.setString(2, record.getPassword());
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+                evictUsernameLookups();
+                connection.commit();
+            } catch (BatchUpdateException e) {
+                // Someone registered one of these names since the IN query; settle the batch row by row
+                connection.rollback();
+                insert.clearBatch();
+                evictUsernameLookups();
+                insertEach(connection, insert, accounts, report);
+            }
+        }
+        if (!accounts.isEmpty()) {
+            index(connection, accounts.keySet());
+            report.setImported(report.getImported() + accounts.size());
+        }
+    }
+
+    private void insertEach(Connection connection, PreparedStatement insert,
+                            Map<String, AccountRecordReader.Record> accounts, ImportReport report) throws SQLException {
+        List<String> taken = new ArrayList<>();
+        for (AccountRecordReader.Record record : accounts.values()) {
+            insert.setString(1, record.getUsername());
+            insert.setString(2, record.getPassword());
+            try {
+                insert.executeUpdate();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                if (e.getSQLState() == null || !e.getSQLState().startsWith("23")) {
+                    throw e;
+                }
+                reject(report, record, DUPLICATE);
+                taken.add(record.getUsername());
+            }
+        }
+        taken.forEach(accounts::remove);
+    }
+
+    private Set<String> existing(Connection connection, Collection<String> usernames) throws SQLException {
+        Set<String> existing = new HashSet<>();
+        if (usernames.isEmpty()) {
+            return existing;
+        }
+        try (PreparedStatement query = connection.prepareStatement(
+                "SELECT username FROM account WHERE username IN (" + placeholders(usernames.size()) + ")")) {
+            bind(query, usernames);
+            try (ResultSet rows = query.executeQuery()) {
+                while (rows.next()) {
+                    existing.add(rows.getString(1));
+                }
+            }
+        }
+        return existing;
+    }
+
+    /**
+     * Adds the batch to the username index and, once committed, to the change log in one append and to the
+     * invalidation bus in one entry. The rows went in behind Hibernate's back, so cached username lookups are evicted;
+     * one may have said the name was free. The IDs come from the sequence inside the insert, so they are read back.
+     */
+    private void index(Connection connection, Collection<String> usernames) throws SQLException {
+        List<ChangeEvent> events = new ArrayList<>(usernames.size());
+        List<InvalidationKey> keys = new ArrayList<>(usernames.size());
+        try (PreparedStatement query = connection.prepareStatement(
+                "SELECT accountId, username FROM account WHERE username IN (" + placeholders(usernames.size()) + ")")) {
+            bind(query, usernames);
+            try (ResultSet rows = query.executeQuery()) {
+                while (rows.next()) {
+                    usernameIndex.add(rows.getInt(1), rows.getString(2));
+                    events.add(ChangeEvent.accountCreated(rows.getInt(1), rows.getString(2)));
+                    keys.add(InvalidationKey.account(rows.getInt(1)));
+                }
+            }
+        }
+        connection.commit();
+        evictUsernameLookups();
+        cacheInvalidator.invalidate(keys);
+        changeLog.appendAll(events);
+    }
+
+    /**
+     * Drops cached username lookups. Done before a batch commits and again after: the first keeps a lookup from
+     * answering from the cache while the rows go in, the second clears a "no such user" cached in between.
+     */
+    private void evictUsernameLookups() {
+        entityManagerFactory.getCache().unwrap(Cache.class).evictQueryRegion(AccountCacheConfig.USERNAME_REGION);
+    }
+
+    private void reject(ImportReport report, AccountRecordReader.Record record, String error) {
+        report.setFailed(report.getFailed() + 1);
+        if (report.getErrors().size() < maxReportedErrors) {
+            report.getErrors().add(new ImportReport.LineError(record.getLine(), error));
+        }
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+
+    private static void bind(PreparedStatement statement, Collection<String> values) throws SQLException {
+        int i = 1;
+        for (String value : values) {
+            statement.setString(i++, value);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.accountimport;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads import records one line at a time, so only the current line is ever held in memory.
+ * CSV lines are username,password with optional double quotes ("" inside quotes is a quote); a first line of
+ * exactly username,password is taken as a header. NDJSON lines are objects with username and password fields.
+ * Blank lines are skipped. A line that cannot be parsed comes back as a record carrying the parse error.
+ */
+public class AccountRecordReader {
+    /**
+     * The two accepted upload formats.
+     */
+    public enum Format {
+        CSV, NDJSON
+    }
+
+    private final BufferedReader reader;
+    private final Format format;
+    private final ObjectMapper objectMapper;
+    private long lineNumber;
+
+    public AccountRecordReader(BufferedReader reader, Format format, ObjectMapper objectMapper) {
+        this.reader = reader;
+        this.format = format;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @return The next record, or null at the end of the input
+     * @throws IOException if the upload cannot be read
+     */
+    public Record next() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            if (format == Format.CSV && lineNumber == 1 && line.trim().equalsIgnoreCase("username,password")) {
+                continue;
+            }
+            try {
+                return format == Format.CSV ? csv(line) : ndjson(line);
+            } catch (IllegalArgumentException | IOException e) {
+                return new Record(lineNumber, null, null, format + " line could not be parsed");
+            }
+        }
+        return null;
+    }
+
+    private Record csv(String line) {
+        List<String> fields = new ArrayList<>(2);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quote");
+        }
+        fields.add(field.toString());
+        if (fields.size() != 2) {
+            throw new IllegalArgumentException("Expected 2 fields");
+        }
+        return new Record(lineNumber, fields.get(0), fields.get(1), null);
+    }
+
+    private Record ndjson(String line) throws IOException {
+        JsonNode node = objectMapper.readTree(line);
+        if (!node.isObject()) {
+            throw new IllegalArgumentException("Expected an object");
+        }
+        JsonNode username = node.get("username");
+        JsonNode password = node.get("password");
+        return new Record(lineNumber, username == null || username.isNull() ? null : username.asText(),
+            password == null || password.isNull() ? null : password.asText(), null);
+    }
+
+    /**
+     * One line of the upload: the account fields, or the reason the line could not be read.
+     */
+    public static final class Record {
+        private final long line;
+        private final String username;
+        private final String password;
+        private final String error;
+
+        Record(long line, String username, String password, String error) {
+            this.line = line;
+            this.username = username;
+            this.password = password;
+            this.error = error;
+        }
+
+        public long getLine() {
+            return line;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+}
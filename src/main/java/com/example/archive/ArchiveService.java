@@ -0,0 +1,120 @@
+package com.example.archive;
+
+import com.example.dto.VersionedMessage;
+import com.example.entity.Message;
+import com.example.repository.MessageRepository;
+import com.example.repository.MessageWithVersion;
+import com.example.sharding.MessageShards;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Moves messages older than archive.max-age-days out of the message table into compressed cold segments.
+ * Each run archives up to archive.batch-size messages into new segments; a segment is durable and readable
+ * before the rows are deleted, so a message is always visible in at least one tier. Rows that a previous run
+ * archived but did not get to delete are simply deleted. With sharding enabled each shard is archived in turn.
+ * A batch is split by archive.bucket-days of timePostedEpoch and each bucket goes to its own segment, so every segment
+ * covers one time bucket and retention can drop it whole once the bucket has expired.
+ * Only active when archive.enabled=true.
+ */
+@Service
+@ConditionalOnProperty(name = "archive.enabled", havingValue = "true")
+public class ArchiveService {
+    private static final Logger log = LoggerFactory.getLogger(ArchiveService.class);
+
+    private final MessageRepository messageRepository;
+    private final ColdStore coldStore;
+    private final MessageShards messageShards;
+    private final long maxAgeSeconds;
+    private final int batchSize;
+    private final int blockSize;
+    private final long bucketSeconds;
+
+    public ArchiveService(MessageRepository messageRepository, ColdStore coldStore, MessageShards messageShards,
+                          @Value("${archive.max-age-days:90}") long maxAgeDays,
+                          @Value("${archive.batch-size:10000}") int batchSize,
+                          @Value("${archive.block-size:256}") int blockSize,
+                          @Value("${archive.bucket-days:1}") long bucketDays) {
+        this.messageRepository = messageRepository;
+        this.coldStore = coldStore;
+        this.messageShards = messageShards;
+        this.maxAgeSeconds = maxAgeDays * 24 * 60 * 60;
+        this.batchSize = batchSize;
+        this.blockSize = blockSize;
+        this.bucketSeconds = bucketDays * 24 * 60 * 60;
+    }
+
+    /**
+     * Archives batches until no message is older than the cutoff.
+     */
+    @Scheduled(initialDelayString = "${archive.interval-ms:3600000}", fixedDelayString = "${archive.interval-ms:3600000}")
+    public void archive() {
+        try {
+            for (int shard = 0; shard < messageShards.getShardCount(); shard++) {
+                int archived;
+                do {
+                    archived = archiveOnce(shard);
+                } while (archived == batchSize);
+            }
+        } catch (IOException e) {
+            log.error("Archiving failed, messages stay in the hot table", e);
+        }
+    }
+
+    /**
+     * Archives one batch of old messages from every shard.
+     *
+     * @return The number of messages removed from the hot table
+     * @throws IOException if a segment cannot be written; no rows of that shard's batch are deleted in that case
+     */
+    public synchronized int archiveOnce() throws IOException {
+        int archived = 0;
+        for (int shard = 0; shard < messageShards.getShardCount(); shard++) {
+            archived += archiveOnce(shard);
+        }
+        return archived;
+    }
+
+    private synchronized int archiveOnce(int shard) throws IOException {
+        long cutoff = Instant.now().getEpochSecond() - maxAgeSeconds;
+        coldStore.getTierLock().writeLock().lock();
+        try {
+            List<MessageWithVersion> candidates = messageShards.onShard(shard,
+                () -> messageRepository.findWithVersionPostedBefore(cutoff, batchSize));
+            if (candidates.isEmpty()) {
+                return 0;
+            }
+            List<Integer> archivedIds = candidates.stream().map(MessageWithVersion::getMessageId).collect(Collectors.toList());
+            Set<Integer> alreadyArchived = coldStore.hasSegments() ? coldStore.findByIds(archivedIds).keySet() : Set.of();
+            // Bucket number -> messages of that bucket, in messageId order
+            TreeMap<Long, List<VersionedMessage>> buckets = new TreeMap<>();
+            for (MessageWithVersion row : candidates) {
+                if (!alreadyArchived.contains(row.getMessageId())) {
+                    // the rest were archived by a run that stopped before deleting them
+                    buckets.computeIfAbsent(Math.floorDiv(row.getTimePostedEpoch(), bucketSeconds),
+                        bucket -> new ArrayList<>()).add(new VersionedMessage(new Message(row.getMessageId(),
+                            row.getPostedBy(), row.getMessageText(), row.getTimePostedEpoch()), row.getVersion()));
+                }
+            }
+            for (List<VersionedMessage> toWrite : buckets.values()) {
+                ColdSegment segment = coldStore.addSegment(toWrite, blockSize);
+                log.info("Archived {} messages to {}", toWrite.size(), segment.getPath());
+            }
+            return messageShards.onShard(shard, () -> messageRepository.deleteByMessageIdIn(archivedIds));
+        } finally {
+            coldStore.getTierLock().writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.example.archive;
+
+import com.example.dto.VersionedMessage;
+import com.example.entity.Message;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * An immutable, memory-mapped file of archived messages.
+ *
+ * Layout (all big-endian):
+ * <pre>
+ * header  : int magic, int version, int messageCount, int blockCount, long indexOffset, int indexLength, int indexCrc
+ * blocks  : deflate-compressed runs of records sorted by messageId,
+ *           record = int messageId, int postedBy, long timePostedEpoch, long version, short textLength (-1 for null),
+ *           utf-8 text
+ * index   : per block  int firstMessageId, int lastMessageId, long offset, int compressedLength, int rawLength, int records
+ *           int accountCount, per account  int postedBy, int messages, long lastPostedEpoch, int blockRefs, int[] blocks
+ * </pre>
+ * The index is sparse: one entry per block for messageId lookups (binary search on firstMessageId)
+ * and, per account, the list of blocks holding its messages. Only those blocks are ever inflated.
+ * Records keep the row version the message had when it was archived, so an edit that moves it back to the hot table
+ * carries on from that version. Segments written before versions were kept (format version 1) read as version 0.
+ */
+public final class ColdSegment {
+    static final int MAGIC = 0x4D534753; // "MSGS"
+    static final int VERSION = 2;
+    private static final int UNVERSIONED = 1;
+    static final int HEADER_LENGTH = 32;
+
+    private final Path path;
+    private final MappedByteBuffer data;
+    private final boolean versioned;
+    private final int messageCount;
+    private final int[] firstIds;
+    private final int[] lastIds;
+    private final long[] offsets;
+    private final int[] compressedLengths;
+    private final int[] rawLengths;
+    private final Map<Integer, AccountEntry> accounts;
+
+    private ColdSegment(Path path, MappedByteBuffer data, boolean versioned, int messageCount, int blockCount) {
+        this.path = path;
+        this.data = data;
+        this.versioned = versioned;
+        this.messageCount = messageCount;
+        this.firstIds = new int[blockCount];
+        this.lastIds = new int[blockCount];
+        this.offsets = new long[blockCount];
+        this.compressedLengths = new int[blockCount];
+        this.rawLengths = new int[blockCount];
+        this.accounts = new HashMap<>();
+    }
+
+    /**
+     * Maps a segment file and loads its index, verifying the header and index checksum.
+     *
+     * @param path The segment file
+     * @return The opened segment
+     * @throws IOException if the file cannot be read or is not a valid segment
+     */
+    public static ColdSegment open(Path path) throws IOException {
+        MappedByteBuffer data;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (data.capacity() < HEADER_LENGTH || data.getInt(0) != MAGIC
+                || (data.getInt(4) != VERSION && data.getInt(4) != UNVERSIONED)) {
+            throw new IOException("Not a message segment: " + path);
+        }
+        int messageCount = data.getInt(8);
+        int blockCount = data.getInt(12);
+        long indexOffset = data.getLong(16);
+        int indexLength = data.getInt(24);
+        int indexCrc = data.getInt(28);
+
+        ByteBuffer index = data.duplicate();
+        index.position((int) indexOffset).limit((int) indexOffset + indexLength);
+        CRC32 crc = new CRC32();
+        crc.update(index.duplicate());
+        if ((int) crc.getValue() != indexCrc) {
+            throw new IOException("Corrupt segment index: " + path);
+        }
+
+        ColdSegment segment = new ColdSegment(path, data, data.getInt(4) == VERSION, messageCount, blockCount);
+        for (int b = 0; b < blockCount; b++) {
+            segment.firstIds[b] = index.getInt();
+            segment.lastIds[b] = index.getInt();
+            segment.offsets[b] = index.getLong();
+            segment.compressedLengths[b] = index.getInt();
+            segment.rawLengths[b] = index.getInt();
+            index.getInt(); // record count, informational
+        }
+        int accountCount = index.getInt();
+        for (int a = 0; a < accountCount; a++) {
+            int postedBy = index.getInt();
+            int messages = index.getInt();
+            long lastPosted = index.getLong();
+            int[] blocks = new int[index.getInt()];
+            for (int i = 0; i < blocks.length; i++) {
+                blocks[i] = index.getInt();
+            }
+            segment.accounts.put(postedBy, new AccountEntry(messages, lastPosted, blocks));
+        }
+        return segment;
+    }
+
+    /**
+     * @param messageId The ID to look up
+     * @return The archived message, or null if this segment does not contain it
+     */
+    public Message findById(int messageId) {
+        VersionedMessage found = findVersionedById(messageId);
+        return found == null ? null : found.getMessage();
+    }
+
+    /**
+     * @param messageId The ID to look up
+     * @return The archived message with the version it was archived at, or null if this segment does not contain it
+     */
+    public VersionedMessage findVersionedById(int messageId) {
+        int block = Arrays.binarySearch(firstIds, messageId);
+        if (block < 0) {
+            block = -block - 2;
+        }
+        if (block < 0 || messageId > lastIds[block]) {
+            return null;
+        }
+        for (VersionedMessage record : readBlock(block)) {
+            if (record.getMessage().getMessageId() == messageId) {
+                return record;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Looks up several IDs, inflating each block that may hold one of them once.
+     *
+     * @param messageIds The IDs to look up
+     * @return The archived messages found, keyed by messageId
+     */
+    public Map<Integer, Message> findByIds(Collection<Integer> messageIds) {
+        Map<Integer, Set<Integer>> byBlock = new TreeMap<>();
+        for (Integer messageId : messageIds) {
+            int block = Arrays.binarySearch(firstIds, messageId);
+            if (block < 0) {
+                block = -block - 2;
+            }
+            if (block >= 0 && messageId <= lastIds[block]) {
+                byBlock.computeIfAbsent(block, b -> new HashSet<>()).add(messageId);
+            }
+        }
+        Map<Integer, Message> found = new HashMap<>();
+        byBlock.forEach((block, wanted) -> {
+            for (VersionedMessage record : readBlock(block)) {
+                if (wanted.contains(record.getMessage().getMessageId())) {
+                    found.put(record.getMessage().getMessageId(), record.getMessage());
+                }
+            }
+        });
+        return found;
+    }
+
+    /**
+     * @param postedBy The poster to look up
+     * @return The poster's archived messages, in messageId order
+     */
+    public List<Message> findByPostedBy(int postedBy) {
+        AccountEntry entry = accounts.get(postedBy);
+        if (entry == null) {
+            return Collections.emptyList();
+        }
+        List<Message> result = new ArrayList<>(entry.messages);
+        for (int block : entry.blocks) {
+            for (VersionedMessage record : readBlock(block)) {
+                if (record.getMessage().getPostedBy() == postedBy) {
+                    result.add(record.getMessage());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return Every message in this segment, in messageId order
+     */
+    public List<Message> findAll() {
+        List<Message> result = new ArrayList<>(messageCount);
+        for (int block = 0; block < firstIds.length; block++) {
+            readBlock(block).forEach(record -> result.add(record.getMessage()));
+        }
+        return result;
+    }
+
+    /**
+     * @return The message count and last post time of every account in this segment
+     */
+    public Map<Integer, long[]> accountTotals() {
+        Map<Integer, long[]> totals = new HashMap<>();
+        accounts.forEach((postedBy, entry) -> totals.put(postedBy, new long[] {entry.messages, entry.lastPosted}));
+        return totals;
+    }
+
+    /**
+     * @param postedBy The poster
+     * @return The poster's message count and last post time in this segment, or null if it has none here
+     */
+    public long[] accountTotal(Integer postedBy) {
+        AccountEntry entry = accounts.get(postedBy);
+        return entry == null ? null : new long[] {entry.messages, entry.lastPosted};
+    }
+
+    /**
+     * @return The newest post time of any message in this segment, or Long.MIN_VALUE if it is empty
+     */
+    public long getLastPostedEpoch() {
+        long last = Long.MIN_VALUE;
+        for (AccountEntry entry : accounts.values()) {
+            last = Math.max(last, entry.lastPosted);
+        }
+        return last;
+    }
+
+    public int getMessageCount() {
+        return messageCount;
+    }
+
+    public int getFirstMessageId() {
+        return firstIds.length == 0 ? 0 : firstIds[0];
+    }
+
+    public int getLastMessageId() {
+        return lastIds.length == 0 ? 0 : lastIds[lastIds.length - 1];
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    private List<VersionedMessage> readBlock(int block) {
+        byte[] compressed = new byte[compressedLengths[block]];
+        ByteBuffer slice = data.duplicate();
+        slice.position((int) offsets[block]);
+        slice.get(compressed);
+        byte[] raw = new byte[rawLengths[block]];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            inflater.inflate(raw);
+        } catch (DataFormatException e) {
+            throw new UncheckedIOException(new IOException("Corrupt block " + block + " in " + path, e));
+        } finally {
+            inflater.end();
+        }
+
+        ByteBuffer records = ByteBuffer.wrap(raw);
+        List<VersionedMessage> messages = new ArrayList<>();
+        while (records.hasRemaining()) {
+            int messageId = records.getInt();
+            int postedBy = records.getInt();
+            long timePosted = records.getLong();
+            long version = versioned ? records.getLong() : 0L;
+            short textLength = records.getShort();
+            String text = null;
+            if (textLength >= 0) {
+                text = new String(raw, records.position(), textLength, StandardCharsets.UTF_8);
+                records.position(records.position() + textLength);
+            }
+            messages.add(new VersionedMessage(new Message(messageId, postedBy, text, timePosted), version));
+        }
+        return messages;
+    }
+
+    private static final class AccountEntry {
+        final int messages;
+        final long lastPosted;
+        final int[] blocks;
+
+        AccountEntry(int messages, long lastPosted, int[] blocks) {
+            this.messages = messages;
+            this.lastPosted = lastPosted;
+            this.blocks = blocks;
+        }
+    }
+}
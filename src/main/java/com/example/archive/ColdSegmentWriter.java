@@ -0,0 +1,178 @@
+package com.example.archive;
+
+import com.example.dto.VersionedMessage;
+import com.example.entity.Message;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes ColdSegment files. The segment is written to a temporary file, forced to disk and then
+ * atomically renamed, so readers only ever see complete segments.
+ */
+public final class ColdSegmentWriter {
+    private static final int BLOCK_ENTRY_LENGTH = 28;
+
+    private ColdSegmentWriter() {
+    }
+
+    /**
+     * Writes the given messages as a new segment.
+     *
+     * @param target The final path of the segment
+     * @param messages The messages to archive with their row versions, in any order
+     * @param blockSize The number of messages per compressed block
+     * @throws IOException if the segment cannot be written
+     * @throws IllegalArgumentException if a message has no ID, poster or post time, none of which a record can hold
+     */
+    public static void write(Path target, List<VersionedMessage> messages, int blockSize) throws IOException {
+        for (VersionedMessage record : messages) {
+            Message message = record.getMessage();
+            if (message.getMessageId() == null || message.getPostedBy() == null || message.getTimePostedEpoch() == null) {
+                throw new IllegalArgumentException("Message " + message.getMessageId()
+                    + " is missing its ID, poster or post time and cannot be archived");
+            }
+        }
+        List<VersionedMessage> sorted = new ArrayList<>(messages);
+        sorted.sort(Comparator.comparing((VersionedMessage record) -> record.getMessage().getMessageId()));
+
+        List<byte[]> blocks = new ArrayList<>();
+        ByteBuffer blockIndex = ByteBuffer.allocate(BLOCK_ENTRY_LENGTH * ((sorted.size() + blockSize - 1) / blockSize));
+        Map<Integer, AccountAccumulator> accounts = new LinkedHashMap<>();
+        long offset = ColdSegment.HEADER_LENGTH;
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            for (int start = 0; start < sorted.size(); start += blockSize) {
+                List<VersionedMessage> chunk = sorted.subList(start, Math.min(sorted.size(), start + blockSize));
+                int blockNumber = blocks.size();
+                byte[] raw = encode(chunk);
+                byte[] compressed = deflate(deflater, raw);
+                blocks.add(compressed);
+                blockIndex.putInt(chunk.get(0).getMessage().getMessageId())
+                    .putInt(chunk.get(chunk.size() - 1).getMessage().getMessageId())
+                    .putLong(offset)
+                    .putInt(compressed.length)
+                    .putInt(raw.length)
+                    .putInt(chunk.size());
+                offset += compressed.length;
+                for (VersionedMessage record : chunk) {
+                    Message message = record.getMessage();
+                    accounts.computeIfAbsent(message.getPostedBy(), id -> new AccountAccumulator()).add(message, blockNumber);
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+
+        ByteArrayOutputStream accountIndex = new ByteArrayOutputStream();
+        ByteBuffer count = ByteBuffer.allocate(4).putInt(accounts.size());
+        accountIndex.write(count.array());
+        for (Map.Entry<Integer, AccountAccumulator> entry : accounts.entrySet()) {
+            AccountAccumulator account = entry.getValue();
+            ByteBuffer buffer = ByteBuffer.allocate(20 + 4 * account.blocks.size())
+                .putInt(entry.getKey())
+                .putInt(account.messages)
+                .putLong(account.lastPosted)
+                .putInt(account.blocks.size());
+            account.blocks.forEach(buffer::putInt);
+            accountIndex.write(buffer.array());
+        }
+
+        blockIndex.flip();
+        ByteBuffer accountBuffer = ByteBuffer.wrap(accountIndex.toByteArray());
+        CRC32 crc = new CRC32();
+        crc.update(blockIndex.duplicate());
+        crc.update(accountBuffer.duplicate());
+        int indexLength = blockIndex.remaining() + accountBuffer.remaining();
+
+        ByteBuffer header = ByteBuffer.allocate(ColdSegment.HEADER_LENGTH)
+            .putInt(ColdSegment.MAGIC)
+            .putInt(ColdSegment.VERSION)
+            .putInt(sorted.size())
+            .putInt(blocks.size())
+            .putLong(offset)
+            .putInt(indexLength)
+            .putInt((int) crc.getValue());
+        header.flip();
+
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, header);
+            for (byte[] block : blocks) {
+                writeFully(channel, ByteBuffer.wrap(block));
+            }
+            writeFully(channel, blockIndex);
+            writeFully(channel, accountBuffer);
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static byte[] encode(List<VersionedMessage> chunk) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(chunk.size() * 64);
+        ByteBuffer fixed = ByteBuffer.allocate(26);
+        for (VersionedMessage record : chunk) {
+            Message message = record.getMessage();
+            byte[] text = message.getMessageText() == null ? null : message.getMessageText().getBytes(StandardCharsets.UTF_8);
+            fixed.clear();
+            fixed.putInt(message.getMessageId())
+                .putInt(message.getPostedBy())
+                .putLong(message.getTimePostedEpoch())
+                .putLong(record.getVersion())
+                .putShort((short) (text == null ? -1 : text.length));
+            out.write(fixed.array(), 0, fixed.position());
+            if (text != null) {
+                out.write(text, 0, text.length);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(Deflater deflater, byte[] raw) {
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 64);
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buffer);
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static final class AccountAccumulator {
+        int messages;
+        long lastPosted = Long.MIN_VALUE;
+        final List<Integer> blocks = new ArrayList<>();
+
+        void add(Message message, int block) {
+            messages++;
+            lastPosted = Math.max(lastPosted, message.getTimePostedEpoch());
+            if (blocks.isEmpty() || blocks.get(blocks.size() - 1) != block) {
+                blocks.add(block);
+            }
+        }
+    }
+}
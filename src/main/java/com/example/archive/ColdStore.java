@@ -0,0 +1,440 @@
+package com.example.archive;
+
+import com.example.dto.VersionedMessage;
+import com.example.entity.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * The cold tier: archived messages held in immutable ColdSegment files under archive.directory.
+ * Segments are numbered in the order they were written and searched newest first.
+ * They never change once written, so deleting an archived message, or moving it back to the hot table to edit it,
+ * records a tombstone for that segment's copy. Tombstones live in an append-only file forced to disk on every write.
+ * A message moved back to the hot table can later be archived again into a newer segment.
+ * Retention drops whole segments once their newest message has expired; sequence numbers are never reused, so a
+ * tombstone left behind for a dropped segment can never hide a message of a newer one.
+ * When archive.enabled=false nothing is loaded and every lookup returns empty without touching the disk.
+ */
+@Component
+public class ColdStore {
+    private static final Logger log = LoggerFactory.getLogger(ColdStore.class);
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String TOMBSTONE_FILE = "tombstones";
+    private static final int TOMBSTONE_LENGTH = 12;
+
+    private final boolean enabled;
+    private final Path directory;
+    // Newest segment first
+    private final CopyOnWriteArrayList<Segment> segments = new CopyOnWriteArrayList<>();
+    // (segment sequence, messageId) of every hidden copy, mapped to the message's postedBy
+    private final ConcurrentHashMap<Long, Integer> tombstones = new ConcurrentHashMap<>();
+    private FileChannel tombstoneLog;
+    private int lastSequence;
+    // Shared by message writes, exclusive while a batch is being moved between the tiers
+    private final ReentrantReadWriteLock tierLock = new ReentrantReadWriteLock();
+
+    public ColdStore(@Value("${archive.enabled:false}") boolean enabled,
+                     @Value("${archive.directory:archive}") String directory) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+    }
+
+    /**
+     * Opens every segment in the archive directory and replays the tombstone file.
+     *
+     * @throws IOException if the directory or a segment cannot be read
+     */
+    @PostConstruct
+    public void load() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(directory);
+        List<Segment> opened = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int sequence = Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                opened.add(new Segment(sequence, ColdSegment.open(file)));
+            }
+        }
+        opened.sort(Comparator.comparingInt((Segment s) -> s.sequence).reversed());
+        segments.addAll(opened);
+        Set<Integer> sequences = new HashSet<>();
+        opened.forEach(segment -> sequences.add(segment.sequence));
+        lastSequence = opened.isEmpty() ? 0 : opened.get(0).sequence;
+
+        tombstoneLog = FileChannel.open(directory.resolve(TOMBSTONE_FILE), StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer entries = ByteBuffer.allocate((int) tombstoneLog.size());
+        while (entries.hasRemaining() && tombstoneLog.read(entries) >= 0) {
+            // read the whole file
+        }
+        entries.flip();
+        while (entries.remaining() >= TOMBSTONE_LENGTH) {
+            int sequence = entries.getInt();
+            long key = key(sequence, entries.getInt());
+            int postedBy = entries.getInt();
+            lastSequence = Math.max(lastSequence, sequence);
+            if (sequences.contains(sequence)) {
+                tombstones.put(key, postedBy); // otherwise the segment was dropped before the file was compacted
+            }
+        }
+        tombstoneLog.truncate(tombstoneLog.size() - entries.remaining()); // drop a torn trailing entry
+        log.info("Cold tier loaded {} segments ({} messages, {} tombstones) from {}", segments.size(),
+            segments.stream().mapToInt(s -> s.data.getMessageCount()).sum(), tombstones.size(), directory);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Message updates and deletes hold the read lock while archiving is enabled, and the archiver holds the write lock
+     * from writing a segment until the archived rows are deleted, so no write can land on a row that is about to disappear.
+     *
+     * @return The lock guarding moves between the hot table and the cold tier
+     */
+    public ReadWriteLock getTierLock() {
+        return tierLock;
+    }
+
+    /**
+     * @return True if at least one segment is loaded
+     */
+    public boolean hasSegments() {
+        return !segments.isEmpty();
+    }
+
+    /**
+     * @param messageId The ID to look up
+     * @return The archived message, or null if it is not live in the cold tier
+     */
+    public Message findById(Integer messageId) {
+        VersionedMessage found = findVersionedById(messageId);
+        return found == null ? null : found.getMessage();
+    }
+
+    /**
+     * @param messageId The ID to look up
+     * @return The archived message with the row version it was archived at, or null if it is not live in the cold tier
+     */
+    public VersionedMessage findVersionedById(Integer messageId) {
+        for (Segment segment : segments) {
+            VersionedMessage found = segment.findLive(messageId);
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Looks up several IDs with one pass over the segments, newest first; each segment inflates a block at most once.
+     *
+     * @param messageIds The IDs to look up
+     * @return The live archived messages found, keyed by messageId
+     */
+    public Map<Integer, Message> findByIds(Collection<Integer> messageIds) {
+        Map<Integer, Message> found = new HashMap<>();
+        Set<Integer> remaining = new HashSet<>(messageIds);
+        for (Segment segment : segments) {
+            if (remaining.isEmpty()) {
+                break;
+            }
+            segment.data.findByIds(remaining).forEach((messageId, message) -> {
+                if (!segment.isTombstoned(messageId)) {
+                    found.put(messageId, message);
+                    remaining.remove(messageId);
+                }
+            });
+        }
+        return found;
+    }
+
+    /**
+     * @param postedBy The poster to look up
+     * @return The poster's live archived messages, in messageId order
+     */
+    public List<Message> findByPostedBy(Integer postedBy) {
+        if (segments.isEmpty()) {
+            return List.of();
+        }
+        TreeMap<Integer, Message> live = new TreeMap<>();
+        for (Segment segment : segments) {
+            for (Message message : segment.data.findByPostedBy(postedBy)) {
+                if (!segment.isTombstoned(message.getMessageId())) {
+                    live.putIfAbsent(message.getMessageId(), message);
+                }
+            }
+        }
+        return new ArrayList<>(live.values());
+    }
+
+    /**
+     * @return Every live archived message, in messageId order
+     */
+    public List<Message> findAll() {
+        if (segments.isEmpty()) {
+            return List.of();
+        }
+        TreeMap<Integer, Message> live = new TreeMap<>();
+        for (Segment segment : segments) {
+            for (Message message : segment.data.findAll()) {
+                if (!segment.isTombstoned(message.getMessageId())) {
+                    live.putIfAbsent(message.getMessageId(), message);
+                }
+            }
+        }
+        return new ArrayList<>(live.values());
+    }
+
+    /**
+     * Per-account counts of the live archived messages, read from the segment indexes only.
+     * Last post times still include tombstoned messages.
+     *
+     * @return postedBy mapped to {messageCount, lastPostedEpoch}
+     */
+    public Map<Integer, long[]> accountTotals() {
+        Map<Integer, long[]> totals = new HashMap<>();
+        for (Segment segment : segments) {
+            segment.data.accountTotals().forEach((postedBy, total) -> totals.merge(postedBy, total,
+                (a, b) -> new long[] {a[0] + b[0], Math.max(a[1], b[1])}));
+        }
+        tombstones.values().forEach(postedBy -> {
+            long[] total = totals.get(postedBy);
+            if (total != null) {
+                total[0]--;
+            }
+        });
+        return totals;
+    }
+
+    /**
+     * Same as one entry of accountTotals, without building the map for every account: a lookup in each segment's
+     * account index, and a pass over the tombstones.
+     *
+     * @param postedBy The poster
+     * @return The poster's live archived message count and last post time; zero and Long.MIN_VALUE if it has none
+     */
+    public long[] accountTotal(Integer postedBy) {
+        long[] total = null;
+        for (Segment segment : segments) {
+            long[] inSegment = segment.data.accountTotal(postedBy);
+            if (inSegment != null) {
+                total = total == null ? inSegment
+                    : new long[] {total[0] + inSegment[0], Math.max(total[1], inSegment[1])};
+            }
+        }
+        if (total == null) {
+            return new long[] {0L, Long.MIN_VALUE};
+        }
+        for (Integer owner : tombstones.values()) {
+            if (postedBy.equals(owner)) {
+                total[0]--;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Hides the live copy of an archived message from every read. Durable once this returns.
+     *
+     * @param messageId The ID of the message
+     * @return The message that was hidden, or null if it was not live in the cold tier
+     */
+    public synchronized Message remove(Integer messageId) {
+        for (Segment segment : segments) {
+            VersionedMessage found = segment.findLive(messageId);
+            if (found != null) {
+                writeTombstone(segment.sequence, found.getMessage());
+                return found.getMessage();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Hides every live archived message of a poster. Durable once this returns.
+     *
+     * @param postedBy The poster
+     * @return The IDs of the messages hidden
+     */
+    public synchronized List<Integer> removeByPostedBy(Integer postedBy) {
+        List<Integer> removed = new ArrayList<>();
+        for (Segment segment : segments) {
+            for (Message message : segment.data.findByPostedBy(postedBy)) {
+                if (!segment.isTombstoned(message.getMessageId())) {
+                    writeTombstone(segment.sequence, message);
+                    removed.add(message.getMessageId());
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Writes messages to a new segment and makes them readable.
+     *
+     * @param messages The messages to archive, with their row versions
+     * @param blockSize The number of messages per compressed block
+     * @return The new segment
+     * @throws IOException if the segment cannot be written
+     */
+    public synchronized ColdSegment addSegment(List<VersionedMessage> messages, int blockSize) throws IOException {
+        int sequence = ++lastSequence;
+        Path file = directory.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+        ColdSegmentWriter.write(file, messages, blockSize);
+        ColdSegment segment = ColdSegment.open(file);
+        segments.add(0, new Segment(sequence, segment));
+        return segment;
+    }
+
+    /**
+     * Deletes every segment whose newest message was posted before a cutoff, then rewrites the tombstone file without
+     * the entries of the dropped segments. Callers hold the tier write lock.
+     *
+     * @param cutoffEpoch Segments holding only messages posted strictly before this epoch second are dropped
+     * @param onDropped If not null, receives each live message of the dropped segments; this decompresses them
+     * @return postedBy mapped to the number of live messages dropped
+     * @throws IOException if a segment file cannot be deleted or the tombstone file cannot be rewritten
+     */
+    public synchronized Map<Integer, Long> dropSegmentsBefore(long cutoffEpoch, Consumer<Message> onDropped)
+            throws IOException {
+        Map<Integer, Long> dropped = new HashMap<>();
+        List<Segment> expired = new ArrayList<>();
+        for (Segment segment : segments) {
+            if (segment.data.getLastPostedEpoch() < cutoffEpoch) {
+                expired.add(segment);
+            }
+        }
+        if (expired.isEmpty()) {
+            return dropped;
+        }
+        segments.removeAll(expired);
+        for (Segment segment : expired) {
+            if (onDropped != null) {
+                for (Message message : segment.data.findAll()) {
+                    if (!tombstones.containsKey(key(segment.sequence, message.getMessageId()))) {
+                        onDropped.accept(message);
+                    }
+                }
+            }
+            segment.data.accountTotals().forEach((postedBy, total) -> dropped.merge(postedBy, total[0], Long::sum));
+            tombstones.entrySet().removeIf(entry -> {
+                if ((int) (entry.getKey() >>> 32) != segment.sequence) {
+                    return false;
+                }
+                dropped.merge(entry.getValue(), -1L, Long::sum);
+                return true;
+            });
+            // The file stays mapped until the segment is garbage collected, so a read already under way can finish
+            Files.deleteIfExists(segment.data.getPath());
+            log.info("Dropped expired segment {}", segment.data.getPath());
+        }
+        compactTombstones();
+        dropped.values().removeIf(count -> count == 0);
+        return dropped;
+    }
+
+    /**
+     * @return The loaded segments, newest first
+     */
+    public List<ColdSegment> getSegments() {
+        List<ColdSegment> result = new ArrayList<>(segments.size());
+        segments.forEach(segment -> result.add(segment.data));
+        return result;
+    }
+
+    private void writeTombstone(int sequence, Message message) {
+        ByteBuffer entry = ByteBuffer.allocate(TOMBSTONE_LENGTH)
+            .putInt(sequence).putInt(message.getMessageId()).putInt(message.getPostedBy());
+        entry.flip();
+        try {
+            long position = tombstoneLog.size();
+            while (entry.hasRemaining()) {
+                position += tombstoneLog.write(entry, position);
+            }
+            tombstoneLog.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        tombstones.put(key(sequence, message.getMessageId()), message.getPostedBy());
+    }
+
+    /**
+     * Replaces the tombstone file with one holding only the live tombstones.
+     */
+    private void compactTombstones() throws IOException {
+        Path compacted = directory.resolve(TOMBSTONE_FILE + ".tmp");
+        ByteBuffer entries = ByteBuffer.allocate(tombstones.size() * TOMBSTONE_LENGTH);
+        tombstones.forEach((key, postedBy) -> entries.putInt((int) (key >>> 32)).putInt((int) (long) key).putInt(postedBy));
+        entries.flip();
+        try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (entries.hasRemaining()) {
+                out.write(entries);
+            }
+            out.force(false);
+        }
+        tombstoneLog.close();
+        Files.move(compacted, directory.resolve(TOMBSTONE_FILE), StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+        tombstoneLog = FileChannel.open(directory.resolve(TOMBSTONE_FILE), StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    }
+
+    private static long key(int sequence, int messageId) {
+        return ((long) sequence << 32) | (messageId & 0xFFFFFFFFL);
+    }
+
+    private final class Segment {
+        final int sequence;
+        final ColdSegment data;
+
+        Segment(int sequence, ColdSegment data) {
+            this.sequence = sequence;
+            this.data = data;
+        }
+
+        boolean isTombstoned(int messageId) {
+            return tombstones.containsKey(key(sequence, messageId));
+        }
+
+        VersionedMessage findLive(int messageId) {
+            if (messageId < data.getFirstMessageId() || messageId > data.getLastMessageId() || isTombstoned(messageId)) {
+                return null;
+            }
+            return data.findVersionedById(messageId);
+        }
+    }
+}
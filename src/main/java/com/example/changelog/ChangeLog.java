@@ -0,0 +1,428 @@
+package com.example.changelog;
+
+import com.example.dto.ChangeEvent;
+import com.example.dto.ChangePage;
+import com.example.exception.InvalidChangeOffsetException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of every committed account and message change, so downstream consumers can follow the data
+ * instead of re-scanning the tables.
+ * Each event is a record of its payload length, the payload's CRC32 and the JSON payload. Records go to segment
+ * files under changelog.directory named after the offset of their first byte; once a segment reaches
+ * changelog.segment-bytes the next record starts a new one. An event's offset is its byte position in the whole log,
+ * so a read seeks straight to it.
+ * An append returns once its records are on disk. The fsync is shared: appends that arrive while the file is being
+ * forced are covered by the next force together, so under concurrent writes one fsync serves many events.
+ * Readers only see forced records. At startup a torn or corrupt record at the end of the last segment, left by a
+ * crash during an append, is cut off along with anything after it.
+ * Events of one account go into the log in the order their writes committed. A writer runs its write and its append
+ * inside inOrder for the account, which holds one of ORDER_STRIPES locks from before the commit until the events are
+ * on disk; an append made after a commit, such as a purge's, takes the locks of its events' accounts first, so it
+ * lands after any write to those accounts that committed before it. An append that fails is logged and counted
+ * under changelog.failures instead of failing a write that has already committed.
+ * When changelog.enabled=false nothing is written and every append is a no-op.
+ */
+@Component
+public class ChangeLog {
+    private static final Logger log = LoggerFactory.getLogger(ChangeLog.class);
+    private static final String SEGMENT_PREFIX = "changes-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int HEADER_LENGTH = 8;
+    private static final int REPLAY_PAGE = 1000;
+    private static final int ORDER_STRIPES = 64;
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long segmentBytes;
+    private final ObjectMapper objectMapper;
+    private final Counter appended;
+    private final Counter syncs;
+    private final Counter failures;
+    // Account ID -> stripe, held by a writer from before its commit until its events are appended
+    private final ReentrantLock[] orderLocks = new ReentrantLock[ORDER_STRIPES];
+    // Base offset -> segment file
+    private final ConcurrentSkipListMap<Long, Path> segments = new ConcurrentSkipListMap<>();
+    // Held while writing; syncLock is only ever taken inside it, never the other way round
+    private final Object appendLock = new Object();
+    // Held while forcing; readers waiting for new events wait on it
+    private final Object syncLock = new Object();
+    // Replaced under both locks when a segment is rolled
+    private FileChannel current;
+    private long currentBase;
+    private volatile long writtenOffset;
+    private volatile long durableOffset;
+
+    public ChangeLog(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                     @Value("${changelog.enabled:false}") boolean enabled,
+                     @Value("${changelog.directory:changelog}") String directory,
+                     @Value("${changelog.segment-bytes:67108864}") long segmentBytes) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.segmentBytes = segmentBytes;
+        this.appended = meterRegistry.counter("changelog.events");
+        this.syncs = meterRegistry.counter("changelog.fsyncs");
+        this.failures = meterRegistry.counter("changelog.failures");
+        for (int i = 0; i < ORDER_STRIPES; i++) {
+            orderLocks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Finds the segments and cuts a torn tail off the last one.
+     *
+     * @throws IOException if the directory or the last segment cannot be read
+     */
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                segments.put(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())), file);
+            }
+        }
+        if (segments.isEmpty()) {
+            segments.put(0L, segmentPath(0));
+        }
+        Map.Entry<Long, Path> last = segments.lastEntry();
+        currentBase = last.getKey();
+        current = FileChannel.open(last.getValue(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long valid = validLength(current);
+        if (valid < current.size()) {
+            log.warn("Cut {} bytes of incomplete records off the end of {}", current.size() - valid, last.getValue());
+            current.truncate(valid);
+            current.force(false);
+        }
+        writtenOffset = currentBase + valid;
+        durableOffset = writtenOffset;
+        log.info("Change log opened with {} segments, offsets {} to {}", segments.size(), segments.firstKey(), durableOffset);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (current != null) {
+            synchronized (appendLock) {
+                current.force(false);
+                current.close();
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return The offset of the first event still in the log
+     */
+    public long getStartOffset() {
+        return enabled ? segments.firstKey() : 0;
+    }
+
+    /**
+     * @return The offset the next event will be written at, once every earlier event is on disk
+     */
+    public long getEndOffset() {
+        return durableOffset;
+    }
+
+    /**
+     * Runs a write of one account's data and the append of its events as one step of that account's order, so no
+     * other change to the account can be committed and appended in between.
+     *
+     * @param accountId The account whose data is written
+     * @param write Commits the change and appends its events
+     * @return What write returned
+     */
+    public <T> T inOrder(Integer accountId, Supplier<T> write) {
+        if (!enabled) {
+            return write.get();
+        }
+        ReentrantLock lock = orderLock(accountId);
+        lock.lock();
+        try {
+            return write.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends one event and waits until it is on disk.
+     *
+     * @param event The change to record
+     */
+    public void append(ChangeEvent event) {
+        appendAll(List.of(event));
+    }
+
+    /**
+     * Appends events in order and waits until they are all on disk; a batch costs at most one fsync.
+     * The change is already committed, so a failure is logged and counted rather than thrown.
+     *
+     * @param events The changes to record
+     */
+    public void appendAll(List<ChangeEvent> events) {
+        if (!enabled || events.isEmpty()) {
+            return;
+        }
+        // Sorted, so two appends spanning several accounts never wait on each other's stripes
+        int[] stripes = events.stream().mapToInt(event -> stripe(event.getAccountId())).distinct().sorted().toArray();
+        for (int stripe : stripes) {
+            orderLocks[stripe].lock();
+        }
+        try {
+            write(events);
+        } catch (UncheckedIOException e) {
+            failures.increment(events.size());
+            log.error("Lost {} change events, starting with {} of account {}", events.size(),
+                events.get(0).getType(), events.get(0).getAccountId(), e);
+        } finally {
+            for (int stripe : stripes) {
+                orderLocks[stripe].unlock();
+            }
+        }
+    }
+
+    /**
+     * Appends events in order and waits until they are all on disk, failing if they cannot be written.
+     *
+     * @param events The changes to record
+     * @throws UncheckedIOException if the log cannot be written
+     */
+    void write(List<ChangeEvent> events) {
+        if (!enabled || events.isEmpty()) {
+            return;
+        }
+        try {
+            long end;
+            synchronized (appendLock) {
+                for (ChangeEvent event : events) {
+                    write(event);
+                }
+                end = writtenOffset;
+            }
+            appended.increment(events.size());
+            sync(end);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads events starting at an offset, waiting up to waitMillis for the first one if the reader is caught up.
+     *
+     * @param from The offset of the first event to read, normally a previous page's nextOffset
+     * @param limit The maximum number of events to return
+     * @param waitMillis How long to wait when there is nothing to read yet
+     * @return The events read, each with its offset, and where to read next
+     * @throws InvalidChangeOffsetException if from is not the offset of an event in the log
+     */
+    public ChangePage read(long from, int limit, long waitMillis) {
+        if (!enabled || from < segments.firstKey() || from > durableOffset) {
+            throw new InvalidChangeOffsetException("Offset is outside the change log");
+        }
+        long end = awaitBeyond(from, waitMillis);
+        List<ChangeEvent> events = new ArrayList<>(Math.min(limit, REPLAY_PAGE));
+        long offset = from;
+        while (events.size() < limit && offset < end) {
+            Map.Entry<Long, Path> segment = segments.floorEntry(offset);
+            Long nextBase = segments.higherKey(segment.getKey());
+            long segmentEnd = nextBase == null ? end : Math.min(nextBase, end);
+            try (FileChannel channel = FileChannel.open(segment.getValue(), StandardOpenOption.READ)) {
+                channel.position(offset - segment.getKey());
+                DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 65536));
+                while (events.size() < limit && offset < segmentEnd) {
+                    byte[] payload = readRecord(in, segmentEnd - offset);
+                    if (payload == null) {
+                        throw new InvalidChangeOffsetException("Offset is not the start of a change");
+                    }
+                    ChangeEvent event = objectMapper.readValue(payload, ChangeEvent.class);
+                    event.setOffset(offset);
+                    events.add(event);
+                    offset += HEADER_LENGTH + payload.length;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return new ChangePage(events, offset, end);
+    }
+
+    /**
+     * Feeds every event from an offset up to the current end of the log to a consumer, in order. This is how an
+     * in-memory index is rebuilt without scanning the tables.
+     *
+     * @param from The offset to start at, getStartOffset() for everything
+     * @param consumer Receives each event
+     * @return The offset after the last event replayed
+     */
+    public long replay(long from, Consumer<ChangeEvent> consumer) {
+        ChangePage page;
+        long offset = from;
+        do {
+            page = read(offset, REPLAY_PAGE, 0);
+            page.getEvents().forEach(consumer);
+            offset = page.getNextOffset();
+        } while (offset < page.getEndOffset());
+        return offset;
+    }
+
+    private ReentrantLock orderLock(Integer accountId) {
+        return orderLocks[stripe(accountId)];
+    }
+
+    private static int stripe(Integer accountId) {
+        return accountId == null ? 0 : Math.floorMod(accountId, ORDER_STRIPES);
+    }
+
+    private void write(ChangeEvent event) throws IOException {
+        byte[] payload = objectMapper.writeValueAsBytes(event);
+        int length = HEADER_LENGTH + payload.length;
+        if (writtenOffset > currentBase && writtenOffset - currentBase + length > segmentBytes) {
+            roll();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(length).putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        record.flip();
+        long position = writtenOffset - currentBase;
+        while (record.hasRemaining()) {
+            position += current.write(record, position);
+        }
+        writtenOffset += length;
+    }
+
+    /**
+     * Forces the full segment and starts the next one at the current end of the log. Called under appendLock.
+     */
+    private void roll() throws IOException {
+        synchronized (syncLock) {
+            current.force(false);
+            syncs.increment();
+            current.close();
+            currentBase = writtenOffset;
+            Path file = segmentPath(currentBase);
+            current = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            segments.put(currentBase, file);
+            durableOffset = writtenOffset;
+            syncLock.notifyAll();
+        }
+    }
+
+    /**
+     * Makes everything up to end durable. Whoever holds syncLock forces everything written so far, so appends that
+     * queued behind it usually find their records already on disk and return without a force of their own.
+     */
+    private void sync(long end) throws IOException {
+        synchronized (syncLock) {
+            if (durableOffset >= end) {
+                return;
+            }
+            long target = writtenOffset;
+            current.force(false);
+            syncs.increment();
+            durableOffset = target;
+            syncLock.notifyAll();
+        }
+    }
+
+    /**
+     * @return The durable end of the log once it passes offset or waitMillis has passed
+     */
+    private long awaitBeyond(long offset, long waitMillis) {
+        if (durableOffset > offset || waitMillis <= 0) {
+            return durableOffset;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+        synchronized (syncLock) {
+            try {
+                long remaining;
+                while (durableOffset <= offset && (remaining = deadline - System.nanoTime()) > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(syncLock, remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return durableOffset;
+        }
+    }
+
+    /**
+     * @return The length of the run of intact records at the start of a segment
+     */
+    private long validLength(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long valid = 0;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 65536));
+        byte[] payload;
+        while (valid < size && (payload = readRecord(in, size - valid)) != null) {
+            valid += HEADER_LENGTH + payload.length;
+        }
+        return valid;
+    }
+
+    /**
+     * @param available The bytes left in the segment from the record's start
+     * @return The record's payload, or null if no complete record with a matching checksum starts here
+     */
+    private byte[] readRecord(DataInputStream in, long available) throws IOException {
+        if (available < HEADER_LENGTH) {
+            return null;
+        }
+        try {
+            int length = in.readInt();
+            int checksum = in.readInt();
+            if (length < 0 || length > available - HEADER_LENGTH) {
+                return null;
+            }
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            return (int) crc.getValue() == checksum ? payload : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private Path segmentPath(long baseOffset) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, baseOffset, SEGMENT_SUFFIX));
+    }
+}
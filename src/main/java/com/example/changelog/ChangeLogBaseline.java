@@ -0,0 +1,64 @@
+package com.example.changelog;
+
+import com.example.dto.ChangeEvent;
+import com.example.entity.Message;
+import com.example.repository.AccountName;
+import com.example.repository.AccountRepository;
+import com.example.service.MessageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Starts an empty change log with a creation event for every account and message already stored, so replaying the
+ * log from its start yields the whole data set and not just what changed after the log was switched on.
+ * A baseline that cannot be written fails startup rather than leaving the log incomplete.
+ */
+@Component
+public class ChangeLogBaseline implements SmartInitializingSingleton {
+    private static final Logger log = LoggerFactory.getLogger(ChangeLogBaseline.class);
+    private static final int BATCH_SIZE = 10000;
+
+    private final ChangeLog changeLog;
+    private final AccountRepository accountRepository;
+    private final MessageService messageService;
+
+    public ChangeLogBaseline(ChangeLog changeLog, AccountRepository accountRepository, MessageService messageService) {
+        this.changeLog = changeLog;
+        this.accountRepository = accountRepository;
+        this.messageService = messageService;
+    }
+
+    /**
+     * Writes the baseline before the web server starts accepting requests, once, while the log is still empty.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!changeLog.isEnabled() || changeLog.getEndOffset() > 0) {
+            return;
+        }
+        List<ChangeEvent> batch = new ArrayList<>(BATCH_SIZE);
+        List<AccountName> accounts = accountRepository.findAllNames();
+        for (AccountName account : accounts) {
+            add(batch, ChangeEvent.accountCreated(account.getAccountId(), account.getUsername()));
+        }
+        List<Message> messages = messageService.getAllMessages();
+        for (Message message : messages) {
+            add(batch, ChangeEvent.messageCreated(message));
+        }
+        changeLog.write(batch);
+        log.info("Change log started with {} accounts and {} messages", accounts.size(), messages.size());
+    }
+
+    private void add(List<ChangeEvent> batch, ChangeEvent event) {
+        batch.add(event);
+        if (batch.size() == BATCH_SIZE) {
+            changeLog.write(batch);
+            batch.clear();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.config;
+
+import com.example.entity.Account;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.spi.CachingProvider;
+
+/**
+ * Hibernate second-level cache for accounts, which are written once at registration and from then on only read:
+ * by ID for every message post and account message list, by username for every login and registration.
+ * Account entities are cached in the account region and findByUsername results in the account-by-username query
+ * region. Each region is an Ehcache heap store holding at most accounts.cache.max-entries entries, handed to
+ * Hibernate's JCache region factory; a region missing here fails startup rather than being created unbounded.
+ * A registration goes through Hibernate, which marks the account table as changed and so drops cached username
+ * lookups, including a "no such user" answer for the name just registered. The bulk import inserts with plain JDBC
+ * and evicts the query region itself. Accounts written on other nodes arrive over the invalidation bus, and
+ * AccountService evicts the account and every username lookup for each. The Account entity is left unannotated; caching is switched on for it here.
+ * With hibernate.generate_statistics the hits, misses and puts of each region are published under
+ * hibernate.second.level.cache.* and hibernate.cache.query.*.
+ */
+@Configuration
+public class AccountCacheConfig {
+    public static final String ACCOUNT_REGION = "account";
+    public static final String USERNAME_REGION = "account-by-username";
+    // Created by Hibernate whenever the query cache is on; the timestamps region holds one entry per table
+    private static final String DEFAULT_QUERY_REGION = "default-query-results-region";
+    private static final String TIMESTAMPS_REGION = "default-update-timestamps-region";
+
+    /**
+     * A cache manager of its own, from a fresh provider, so an application restarted in the same JVM never finds
+     * the previous run's caches.
+     */
+    @Bean(destroyMethod = "close")
+    public CacheManager accountCacheManager(@Value("${accounts.cache.max-entries:100000}") long maxEntries) {
+        CachingProvider provider = new EhcacheCachingProvider();
+        CacheManager cacheManager = provider.getCacheManager(provider.getDefaultURI(), getClass().getClassLoader());
+        for (String region : new String[] {ACCOUNT_REGION, USERNAME_REGION, DEFAULT_QUERY_REGION, TIMESTAMPS_REGION}) {
+            cacheManager.createCache(region, Eh107Configuration.fromEhcacheCacheConfiguration(
+                CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
+                    ResourcePoolsBuilder.heap(maxEntries))));
+        }
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer accountCacheSettings(CacheManager accountCacheManager) {
+        return properties -> {
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, "true");
+            properties.put(AvailableSettings.USE_QUERY_CACHE, "true");
+            properties.put(AvailableSettings.CACHE_REGION_FACTORY, ConfigSettings.SIMPLE_FACTORY_NAME);
+            properties.put(ConfigSettings.CACHE_MANAGER, accountCacheManager);
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+            properties.put(AvailableSettings.CLASS_CACHE_PREFIX + "." + Account.class.getName(), "read-write," + ACCOUNT_REGION);
+        };
+    }
+}
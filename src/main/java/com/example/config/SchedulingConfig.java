@@ -0,0 +1,13 @@
+package com.example.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables @Scheduled background jobs (pool resizing, reconciliation, cleanup).
+ * Each job is guarded by its own property, so enabling scheduling alone does not start any work.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
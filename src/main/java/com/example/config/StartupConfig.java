@@ -0,0 +1,33 @@
+package com.example.config;
+
+import com.example.archive.ArchiveService;
+import com.example.changelog.ChangeLogBaseline;
+import com.example.datasource.AdaptivePoolSizer;
+import com.example.datasource.ReplicaFeeder;
+import com.example.invalidation.CacheInvalidator;
+import com.example.retention.RetentionService;
+import com.example.service.MessageCounterService;
+import com.example.service.UsernameIndex;
+import com.example.sharding.ShardInitializer;
+import com.example.snapshot.SnapshotService;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.sql.init.AbstractScriptDatabaseInitializer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Startup tuning for the "fast" profile, which turns on lazy bean initialization.
+ * Beans that must exist before the first request (data.sql, the snapshot restore, the shard setup, the counters and username index
+ * loaded from them and the change log baseline), or that only start their @Scheduled work or background threads once created, are kept eager here.
+ */
+@Configuration
+public class StartupConfig {
+
+    @Bean
+    public static LazyInitializationExcludeFilter eagerBackgroundBeans() {
+        return LazyInitializationExcludeFilter.forBeanTypes(AbstractScriptDatabaseInitializer.class,
+            MessageCounterService.class, AdaptivePoolSizer.class, ArchiveService.class,
+            SnapshotService.class, ReplicaFeeder.class, ShardInitializer.class, CacheInvalidator.class,
+            UsernameIndex.class, RetentionService.class, ChangeLogBaseline.class);
+    }
+}
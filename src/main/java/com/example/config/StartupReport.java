@@ -0,0 +1,106 @@
+package com.example.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.core.metrics.StartupStep;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records how long each startup phase and bean takes and logs a report once the app is ready.
+ * Enabled with startup.report.enabled=true (on in the "fast" profile): it installs a BufferingApplicationStartup
+ * on the context before refresh, which also backs the /actuator/startup endpoint.
+ * With startup.exit-after-ready=true the JVM exits right after the report, which the appcds build profile
+ * uses to record a class data sharing archive from one real startup.
+ * Registered in META-INF/spring.factories so it also applies when tests start the app with SpringApplication.run.
+ */
+public class StartupReport implements ApplicationContextInitializer<ConfigurableApplicationContext> {
+    private static final Logger log = LoggerFactory.getLogger(StartupReport.class);
+    private static final String INSTANTIATE_STEP = "spring.beans.instantiate";
+    // Beans whose creation covers the phases we care about most
+    private static final Map<String, String> KEY_BEANS = Map.of(
+        "&entityManagerFactory", "Hibernate metamodel build",
+        "dataSourceScriptDatabaseInitializer", "data.sql execution",
+        "dataSource", "Connection pool creation");
+
+    @Override
+    public void initialize(ConfigurableApplicationContext context) {
+        Environment environment = context.getEnvironment();
+        if (!environment.getProperty("startup.report.enabled", Boolean.class, false)) {
+            return;
+        }
+        BufferingApplicationStartup startup = new BufferingApplicationStartup(
+            environment.getProperty("startup.report.capacity", Integer.class, 10000));
+        context.setApplicationStartup(startup);
+        int topBeans = environment.getProperty("startup.report.top-beans", Integer.class, 15);
+        boolean exitAfterReady = environment.getProperty("startup.exit-after-ready", Boolean.class, false);
+        context.addApplicationListener((ApplicationListener<ApplicationReadyEvent>) event -> {
+            log.info(render(startup.getBufferedTimeline(), topBeans));
+            if (exitAfterReady) {
+                System.exit(SpringApplication.exit(event.getApplicationContext()));
+            }
+        });
+    }
+
+    /**
+     * Builds the report text from a recorded timeline.
+     *
+     * @param timeline The steps recorded during startup
+     * @param topBeans How many of the slowest beans to list
+     * @return The report, one line per phase or bean
+     */
+    static String render(StartupTimeline timeline, int topBeans) {
+        Map<String, Duration> phases = new LinkedHashMap<>();
+        List<StartupTimeline.TimelineEvent> beans = new ArrayList<>();
+        for (StartupTimeline.TimelineEvent event : timeline.getEvents()) {
+            StartupStep step = event.getStartupStep();
+            if (INSTANTIATE_STEP.equals(step.getName())) {
+                beans.add(event);
+                String phase = KEY_BEANS.get(beanName(step));
+                if (phase != null) {
+                    phases.merge(phase, event.getDuration(), Duration::plus);
+                }
+            } else {
+                phases.merge(step.getName(), event.getDuration(), Duration::plus);
+            }
+        }
+
+        StringBuilder report = new StringBuilder("Startup report\n");
+        report.append(String.format("  %-55s %8d ms%n", "JVM start to ready",
+            ManagementFactory.getRuntimeMXBean().getUptime()));
+        report.append("  Phases:\n");
+        phases.entrySet().stream()
+            .sorted(Map.Entry.<String, Duration>comparingByValue().reversed())
+            .forEach(phase -> report.append(String.format("    %-53s %8d ms%n", phase.getKey(), phase.getValue().toMillis())));
+        report.append("  Slowest beans (including their dependencies):\n");
+        beans.stream()
+            .sorted(Comparator.comparing(StartupTimeline.TimelineEvent::getDuration).reversed())
+            .limit(topBeans)
+            .forEach(bean -> report.append(String.format("    %-53s %8d ms%n", beanName(bean.getStartupStep()),
+                bean.getDuration().toMillis())));
+        return report.toString();
+    }
+
+    private static String beanName(StartupStep step) {
+        for (StartupStep.Tag tag : step.getTags()) {
+            if ("beanName".equals(tag.getKey())) {
+                return tag.getValue();
+            }
+        }
+        return "?";
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.config;
+
+import com.example.controller.FramedCborHttpMessageConverter;
+import com.example.controller.MessageSizeInterceptor;
+import com.example.ratelimit.RateLimitInterceptor;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Spring MVC configuration for the API.
+ * Registers the interceptors that run in front of SocialMediaController, and the framed CBOR encoding for list
+ * responses. Plain CBOR (Accept: application/cbor) comes from Spring MVC's own converter, which is registered
+ * whenever jackson-dataformat-cbor is on the classpath; JSON stays the default for any other Accept header.
+ */
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    @Autowired
+    private RateLimitInterceptor rateLimitInterceptor;
+
+    @Autowired
+    private MessageSizeInterceptor messageSizeInterceptor;
+
+    @Autowired
+    private Jackson2ObjectMapperBuilder objectMapperBuilder;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // POST /messages/lookup is a read with a list of IDs as its body, not a message write.
+        // The size check comes first so an oversized request is refused without spending a rate-limit token.
+        registry.addInterceptor(messageSizeInterceptor).addPathPatterns("/messages", "/messages/**")
+            .excludePathPatterns("/messages/lookup");
+        registry.addInterceptor(rateLimitInterceptor).addPathPatterns("/messages", "/messages/**")
+            .excludePathPatterns("/messages/lookup");
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // Boot's builder carries the spring.jackson.* settings; only the factory is swapped for CBOR
+        converters.add(new FramedCborHttpMessageConverter(objectMapperBuilder.factory(new CBORFactory()).build()));
+    }
+}
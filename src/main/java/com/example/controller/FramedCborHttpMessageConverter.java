@@ -0,0 +1,87 @@
+package com.example.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+
+/**
+ * Writes list responses as a sequence of frames, one per element, for clients that Accept application/x-cbor-frames.
+ * Each frame is a 4-byte big-endian length followed by that many bytes of one CBOR-encoded element; the stream ends
+ * after the last frame. A client can decode and hand on each element as soon as its frame has arrived, instead of
+ * parsing the whole array first. Only collections are written this way; everything else falls through to the other
+ * converters, and nothing is read. The mapper is handed in, so elements get the same Jackson settings as JSON.
+ */
+public class FramedCborHttpMessageConverter extends AbstractHttpMessageConverter<Collection<?>> {
+    public static final MediaType FRAMED_CBOR = new MediaType("application", "x-cbor-frames");
+
+    private final ObjectMapper cbor;
+
+    /**
+     * @param cbor The mapper that encodes each element; it must write CBOR
+     */
+    public FramedCborHttpMessageConverter(ObjectMapper cbor) {
+        super(FRAMED_CBOR);
+        this.cbor = cbor;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return Collection.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected Collection<?> readInternal(Class<? extends Collection<?>> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Framed CBOR request bodies are not supported", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(Collection<?> elements, HttpOutputMessage outputMessage) throws IOException {
+        OutputStream out = outputMessage.getBody();
+        byte[] length = new byte[4];
+        // One generator, frame buffer and serializer provider for the whole list; going through ObjectWriter per element
+        // would set up a new provider each time, which costs more than encoding a message
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(256);
+        SerializerProvider provider = cbor.getSerializerProviderInstance();
+        Class<?> lastType = null;
+        JsonSerializer<Object> serializer = null;
+        try (JsonGenerator generator = cbor.getFactory().createGenerator(frame)) {
+            for (Object element : elements) {
+                frame.reset();
+                if (element == null) {
+                    generator.writeNull();
+                } else {
+                    if (element.getClass() != lastType) {
+                        lastType = element.getClass();
+                        serializer = provider.findTypedValueSerializer(lastType, true, null);
+                    }
+                    serializer.serialize(element, generator, provider);
+                }
+                generator.flush();
+                int size = frame.size();
+                length[0] = (byte) (size >>> 24);
+                length[1] = (byte) (size >>> 16);
+                length[2] = (byte) (size >>> 8);
+                length[3] = (byte) size;
+                out.write(length);
+                frame.writeTo(out);
+            }
+        }
+        out.flush();
+    }
+}
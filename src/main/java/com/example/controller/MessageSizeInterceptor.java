@@ -0,0 +1,30 @@
+package com.example.controller;
+
+import com.example.exception.InvalidMessageException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Rejects message writes whose declared body is larger than any valid message could be, before the body is read
+ * or bound. Message text is at most 255 characters, so messages.max-body-bytes leaves room for JSON escaping and the
+ * other fields. Requests without a Content-Length are left to the usual validation.
+ */
+@Component
+public class MessageSizeInterceptor implements HandlerInterceptor {
+
+    @Value("${messages.max-body-bytes:4096}")
+    private long maxBodyBytes;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        String method = request.getMethod();
+        if (("POST".equals(method) || "PATCH".equals(method)) && request.getContentLengthLong() > maxBodyBytes) {
+            throw new InvalidMessageException("Invalid message data");
+        }
+        return true;
+    }
+}
@@ -1,17 +1,34 @@
 package com.example.controller;
 
+import com.example.accountimport.AccountImporter;
+import com.example.accountimport.AccountRecordReader;
+import com.example.changelog.ChangeLog;
+import com.example.dto.AccountStats;
+import com.example.dto.AccountSummary;
+import com.example.dto.ChangePage;
+import com.example.dto.ImportReport;
+import com.example.dto.MessageFields;
 import com.example.entity.Account;
 import com.example.entity.Message;
 import com.example.exception.InvalidAccountException;
+import com.example.exception.InvalidChangeOffsetException;
 import com.example.exception.InvalidCredentialsException;
 import com.example.exception.InvalidMessageException;
 import com.example.exception.UsernameAlreadyExistsException;
+import com.example.exception.VersionMismatchException;
 import com.example.service.AccountService;
+import com.example.service.MessageCounterService;
 import com.example.service.MessageService;
+import com.example.service.UsernameIndex;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 import java.time.Instant;
@@ -24,12 +41,26 @@ import java.time.Instant;
  */
 @RestController
 public class SocialMediaController {
+    public static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
     @Autowired
     private AccountService accountService;
     
     @Autowired
     private MessageService messageService;
     
+    @Autowired
+    private MessageCounterService messageCounterService;
+
+    @Autowired
+    private UsernameIndex usernameIndex;
+
+    @Autowired
+    private AccountImporter accountImporter;
+
+    @Autowired
+    private ChangeLog changeLog;
+    
     // Account-related endpoints
     /**
      * Registers a new user account.
@@ -54,6 +85,25 @@ public class SocialMediaController {
         return registeredAccount;
     }
     
+    /**
+     * Imports accounts in bulk from a text/csv (username,password per line) or application/x-ndjson upload.
+     * The body is streamed, so uploads of any size are accepted; lines that fail validation or name an existing
+     * username are skipped and reported.
+     * 
+     * @param contentType The upload's media type, which selects the format
+     * @param body The upload
+     * @return The number of lines read, imported and rejected, with the rejected lines and why
+     * @throws IOException if the upload cannot be read
+     */
+    @PostMapping(value = "/accounts/import", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<ImportReport> importAccounts(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                                       InputStream body) throws IOException {
+        AccountRecordReader.Format format = contentType.isCompatibleWith(MediaType.valueOf("text/csv"))
+            ? AccountRecordReader.Format.CSV : AccountRecordReader.Format.NDJSON;
+        return ResponseEntity.ok(accountImporter.importAccounts(body,
+            contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.UTF_8, format));
+    }
+    
   /**
      * Authenticates a user and returns the account information.
      * 
@@ -92,25 +142,96 @@ public class SocialMediaController {
     
     /**
      * Retrieves all messages in the system.
+     * With fields, e.g. fields=messageId,messageText, only those fields are read and returned.
      * 
+     * @param fields Comma-separated message fields to return, optional
      * @return ResponseEntity containing a list of all messages
+     * @throws InvalidMessageException if fields names an unknown field
      */
     @GetMapping("/messages")
-    public ResponseEntity<List<Message>> getAllMessages() {
+    public ResponseEntity<List<?>> getAllMessages(@RequestParam(required = false) String fields) {
+        MessageFields selected = messageFields(fields);
+        if (selected != null) {
+            return ResponseEntity.ok(messageService.getAllMessages(selected));
+        }
         List<Message> messages = messageService.getAllMessages();
         return ResponseEntity.ok(messages);
     }
     
+    /**
+     * Reports how many messages GET /messages would return, from the in-memory counters.
+     * 
+     * @return ResponseEntity with no body and the count in X-Total-Count
+     */
+    @RequestMapping(value = "/messages", method = RequestMethod.HEAD, params = "!ids")
+    public ResponseEntity<Void> countAllMessagesHead() {
+        return ResponseEntity.ok().header(TOTAL_COUNT_HEADER, String.valueOf(messageCounterService.getTotal())).build();
+    }
+    
+    /**
+     * Retrieves the number of messages in the system from the in-memory counters, without reading any rows.
+     * 
+     * @return ResponseEntity containing the message count, also sent in X-Total-Count
+     */
+    @GetMapping("/messages/count")
+    public ResponseEntity<Long> countMessages() {
+        long total = messageCounterService.getTotal();
+        return ResponseEntity.ok().header(TOTAL_COUNT_HEADER, String.valueOf(total)).body(total);
+    }
+    
+    /**
+     * Retrieves several messages by ID in one request, e.g. GET /messages?ids=3,1,2.
+     * 
+     * @param ids The IDs of the messages to retrieve
+     * @param fields Comma-separated message fields to return, optional
+     * @return ResponseEntity containing the messages found, in the order of ids, always 200
+     * @throws InvalidMessageException if too many IDs are requested or fields names an unknown field
+     */
+    @GetMapping(value = "/messages", params = "ids")
+    public ResponseEntity<List<?>> getMessagesByIds(@RequestParam List<Integer> ids,
+                                                    @RequestParam(required = false) String fields) {
+        return ResponseEntity.ok(messagesByIds(ids, messageFields(fields)));
+    }
+    
+    /**
+     * Same as GET /messages?ids=, for ID lists too long for a URL. The body is a JSON array of IDs.
+     * 
+     * @param ids The IDs of the messages to retrieve
+     * @param fields Comma-separated message fields to return, optional
+     * @return ResponseEntity containing the messages found, in the order of ids, always 200
+     * @throws InvalidMessageException if too many IDs are requested or fields names an unknown field
+     */
+    @PostMapping("/messages/lookup")
+    public ResponseEntity<List<?>> lookupMessages(@RequestBody List<Integer> ids,
+                                                  @RequestParam(required = false) String fields) {
+        return ResponseEntity.ok(messagesByIds(ids, messageFields(fields)));
+    }
+
+    private List<?> messagesByIds(List<Integer> ids, MessageFields fields) {
+        return fields != null ? messageService.getMessagesByIds(ids, fields) : messageService.getMessagesByIds(ids);
+    }
+    
     /**
      * Retrieves a specific message by its ID.
+     * The message's version is returned as its ETag, for use in If-Match on a later edit.
+     * With fields only those fields are returned, and no ETag since the version is not read.
      * 
      * @param messageId The ID of the message to retrieve
+     * @param fields Comma-separated message fields to return, optional
      * @return ResponseEntity containing the message , always 200
+     * @throws InvalidMessageException if fields names an unknown field
      */
     @GetMapping("/messages/{messageId}")
-    public ResponseEntity<Message> getMessageById(@PathVariable Integer messageId) {
-        return messageService.getMessageById(messageId)
-            .map(ResponseEntity::ok)
+    public ResponseEntity<Object> getMessageById(@PathVariable Integer messageId,
+                                                 @RequestParam(required = false) String fields) {
+        MessageFields selected = messageFields(fields);
+        if (selected != null) {
+            return messageService.getMessageById(messageId, selected)
+                .<ResponseEntity<Object>>map(ResponseEntity::ok)
+                .orElse(ResponseEntity.ok().build());
+        }
+        return messageService.getVersionedMessage(messageId)
+            .map(versioned -> ResponseEntity.ok().eTag(eTag(versioned.getVersion())).<Object>body(versioned.getMessage()))
             .orElse(ResponseEntity.ok().build());
     }
     
@@ -131,33 +252,159 @@ public class SocialMediaController {
     
     /**
      * Updates the text of an existing message.
+     * With an If-Match header the edit only applies if the message is still at that ETag; "*" matches any version.
      * 
      * @param messageId The ID of the message to update
      * @param updates the new message text
-     * @return ResponseEntity containing the number of rows updated
+     * @param ifMatch The ETag the client last saw, optional
+     * @return ResponseEntity containing the number of rows updated, with the message's new ETag
      * @throws InvalidMessageException if message text is missing or update fails
+     * @throws VersionMismatchException if the message is no longer at the If-Match version
      */
     @PatchMapping("/messages/{messageId}")
-    public ResponseEntity<Integer> updateMessage(@PathVariable Integer messageId, @RequestBody Message updates) {
+    public ResponseEntity<Integer> updateMessage(@PathVariable Integer messageId, @RequestBody Message updates,
+                                                 @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         
         if (updates.getMessageText() == null) {
             throw new InvalidMessageException("Message text is required");
         }
         
-        return messageService.updateMessageText(messageId, updates.getMessageText())
-            .map(ResponseEntity::ok)
+        return messageService.updateMessageText(messageId, updates.getMessageText(), expectedVersion(ifMatch))
+            .map(version -> ResponseEntity.ok().eTag(eTag(version)).body(1))
             .orElseThrow(() -> new InvalidMessageException("Failed to update message"));
     }
+
+    private static MessageFields messageFields(String fields) {
+        try {
+            return MessageFields.parse(fields);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidMessageException("Invalid fields parameter");
+        }
+    }
+
+    private static String eTag(long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Reads the version out of an If-Match value such as "3" or W/"3". Null means any version.
+     */
+    private static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            tag = tag.substring(1, tag.length() - 1);
+        }
+        try {
+            return Long.parseLong(tag);
+        } catch (NumberFormatException e) {
+            // Not an ETag this server hands out, so it cannot match the current one
+            throw new VersionMismatchException("Message has been modified");
+        }
+    }
     
     /**
      * Retrieves all messages posted by a specific account.
      * 
      * @param accountId The ID of the account whose messages to retrieve
+     * @param fields Comma-separated message fields to return, optional
      * @return ResponseEntity containing list of messages posted by the specified account
+     * @throws InvalidMessageException if fields names an unknown field
      */
     @GetMapping("/accounts/{accountId}/messages")
-    public ResponseEntity<List<Message>> getMessagesByAccount(@PathVariable Integer accountId) {
+    public ResponseEntity<List<?>> getMessagesByAccount(@PathVariable Integer accountId,
+                                                        @RequestParam(required = false) String fields) {
+        MessageFields selected = messageFields(fields);
+        if (selected != null) {
+            return ResponseEntity.ok(messageService.getMessagesByAccount(accountId, selected));
+        }
         List<Message> messages = messageService.getMessagesByAccount(accountId);
         return ResponseEntity.ok(messages);
     }
+    
+    /**
+     * Reports how many messages GET /accounts/{accountId}/messages would return, from the in-memory counters.
+     * 
+     * @param accountId The ID of the account
+     * @return ResponseEntity with no body and the count in X-Total-Count (0 for an unknown account)
+     */
+    @RequestMapping(value = "/accounts/{accountId}/messages", method = RequestMethod.HEAD)
+    public ResponseEntity<Void> countMessagesByAccountHead(@PathVariable Integer accountId) {
+        long count = messageCounterService.getStats(accountId).getMessageCount();
+        return ResponseEntity.ok().header(TOTAL_COUNT_HEADER, String.valueOf(count)).build();
+    }
+    
+    /**
+     * Deletes all messages posted by a specific account.
+     * 
+     * @param accountId The ID of the account whose messages to delete
+     * @return ResponseEntity containing the number of messages deleted, always 200
+     */
+    @DeleteMapping("/accounts/{accountId}/messages")
+    public ResponseEntity<Integer> deleteMessagesByAccount(@PathVariable Integer accountId) {
+        return ResponseEntity.ok(messageService.deleteMessagesByAccount(accountId));
+    }
+    
+    /**
+     * Retrieves the message count and last post time of an account from the in-memory counters.
+     * 
+     * @param accountId The ID of the account
+     * @return ResponseEntity containing the account's stats, always 200 (zero count if it never posted)
+     */
+    @GetMapping("/accounts/{accountId}/stats")
+    public ResponseEntity<AccountStats> getAccountStats(@PathVariable Integer accountId) {
+        return ResponseEntity.ok(messageCounterService.getStats(accountId));
+    }
+    
+    /**
+     * Retrieves the accounts with the most messages from the in-memory counters.
+     * 
+     * @param limit The maximum number of accounts to return (default 10)
+     * @return ResponseEntity containing the top posters, highest message count first
+     */
+    @GetMapping("/accounts/top-posters")
+    public ResponseEntity<List<AccountStats>> getTopPosters(@RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(messageCounterService.getTopPosters(Math.min(limit, 1000)));
+    }
+    
+    /**
+     * Finds accounts by the start of their username, ignoring case, from the in-memory username index.
+     * 
+     * @param prefix The start of the username
+     * @param limit The maximum number of accounts to return (default 10)
+     * @return ResponseEntity containing the matching accounts ordered by username, always 200 (empty for a blank prefix)
+     */
+    @GetMapping("/accounts/search")
+    public ResponseEntity<List<AccountSummary>> searchAccounts(@RequestParam(defaultValue = "") String prefix,
+                                                               @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(usernameIndex.search(prefix, Math.min(limit, 1000)));
+    }
+
+    // Change log endpoints
+    /**
+     * Reads the change log from an offset, for consumers following the data incrementally.
+     * A consumer starts at 0 (or a stored offset) and passes each page's nextOffset back as from; with waitMs the
+     * request is held until a new change arrives, so a caught-up consumer can long-poll.
+     *
+     * @param from The offset to read from
+     * @param limit The maximum number of changes to return (default 100, at most 1000)
+     * @param waitMs How long to wait for a change when there is none yet (default 0, at most 5000)
+     * @return ResponseEntity containing the changes and the next offset, or 404 if the change log is off
+     * @throws InvalidChangeOffsetException if from is not the offset of a change
+     */
+    @GetMapping("/changes")
+    public ResponseEntity<ChangePage> getChanges(@RequestParam(defaultValue = "0") long from,
+                                                 @RequestParam(defaultValue = "100") int limit,
+                                                 @RequestParam(defaultValue = "0") long waitMs) {
+        if (!changeLog.isEnabled()) {
+            return ResponseEntity.notFound().build();
+        }
+        // A waiting request holds a servlet thread, so the wait is kept short and consumers simply poll again
+        return ResponseEntity.ok(changeLog.read(from, Math.max(1, Math.min(limit, 1000)), Math.min(waitMs, 5000)));
+    }
 }
@@ -0,0 +1,144 @@
+package com.example.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resizes the Hikari pool from observed connection wait times.
+ * Every interval it compares the mean time spent waiting for a connection and the number of waiting threads
+ * against the target, and grows the pool when callers queue. Growth is skipped when the mean time a connection
+ * is held has itself jumped, because then the database is the bottleneck and more connections would only add load.
+ * The pool shrinks by one after several quiet intervals with idle connections. The size always stays within the configured bounds.
+ * Only active when datasource.adaptive.enabled=true; the standard hikaricp.* metrics are published either way.
+ */
+@Component
+@ConditionalOnProperty(name = "datasource.adaptive.enabled", havingValue = "true")
+public class AdaptivePoolSizer {
+    private static final Logger log = LoggerFactory.getLogger(AdaptivePoolSizer.class);
+    private static final int QUIET_INTERVALS_BEFORE_SHRINK = 3;
+
+    private final HikariDataSource dataSource;
+    private final MeterRegistry meterRegistry;
+    private final int minSize;
+    private final int maxSize;
+    private final int step;
+    private final double targetAcquireMillis;
+    private final double usageSpikeFactor;
+
+    private long lastAcquireCount;
+    private double lastAcquireTotalMillis;
+    private long lastUsageCount;
+    private double lastUsageTotalMillis;
+    private double baselineUsageMillis = Double.NaN;
+    private int quietIntervals;
+
+    public AdaptivePoolSizer(DataSource dataSource, MeterRegistry meterRegistry,
+                             @Value("${datasource.adaptive.min-size:4}") int minSize,
+                             @Value("${datasource.adaptive.max-size:32}") int maxSize,
+                             @Value("${datasource.adaptive.step:2}") int step,
+                             @Value("${datasource.adaptive.target-acquire-ms:2}") double targetAcquireMillis,
+                             @Value("${datasource.adaptive.usage-spike-factor:3}") double usageSpikeFactor) throws SQLException {
+        this.dataSource = dataSource.unwrap(HikariDataSource.class);
+        this.meterRegistry = meterRegistry;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.step = step;
+        this.targetAcquireMillis = targetAcquireMillis;
+        this.usageSpikeFactor = usageSpikeFactor;
+        Gauge.builder("hikaricp.adaptive.max.size", this.dataSource, HikariDataSource::getMaximumPoolSize)
+            .tag("pool", String.valueOf(this.dataSource.getPoolName()))
+            .description("Maximum pool size chosen by the adaptive sizer")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Samples the pool and applies one resize decision.
+     */
+    @Scheduled(fixedDelayString = "${datasource.adaptive.interval-ms:5000}")
+    public void resize() {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        if (pool == null) {
+            return; // pool not started yet
+        }
+        Timer acquire = meterRegistry.find("hikaricp.connections.acquire").tag("pool", dataSource.getPoolName()).timer();
+        Timer usage = meterRegistry.find("hikaricp.connections.usage").tag("pool", dataSource.getPoolName()).timer();
+        double acquireMillis = acquire == null ? 0.0 : intervalMean(acquire, true);
+        double usageMillis = usage == null ? 0.0 : intervalMean(usage, false);
+
+        int current = dataSource.getMaximumPoolSize();
+        int next = nextPoolSize(current, acquireMillis, pool.getThreadsAwaitingConnection(), pool.getIdleConnections(), usageMillis);
+        if (next != current) {
+            log.info("Resizing pool {} from {} to {} (acquire {} ms, usage {} ms, waiting {})",
+                dataSource.getPoolName(), current, next, String.format("%.2f", acquireMillis),
+                String.format("%.2f", usageMillis), pool.getThreadsAwaitingConnection());
+            if (dataSource.getMinimumIdle() > next) {
+                dataSource.setMinimumIdle(next);
+            }
+            dataSource.setMaximumPoolSize(next);
+        }
+    }
+
+    /**
+     * Decides the next maximum pool size from one interval's observations.
+     *
+     * @param current The current maximum pool size
+     * @param acquireMillis The mean time callers waited for a connection during the interval
+     * @param waiting The number of threads waiting for a connection right now
+     * @param idle The number of idle connections right now
+     * @param usageMillis The mean time a connection was held during the interval
+     * @return The maximum pool size to use next, within [min-size, max-size]
+     */
+    public int nextPoolSize(int current, double acquireMillis, int waiting, int idle, double usageMillis) {
+        boolean databaseSlowing = !Double.isNaN(baselineUsageMillis) && baselineUsageMillis > 0
+            && usageMillis > baselineUsageMillis * usageSpikeFactor;
+        if (usageMillis > 0 && !databaseSlowing) {
+            // Slow moving average, so a single burst does not reset the baseline
+            baselineUsageMillis = Double.isNaN(baselineUsageMillis) ? usageMillis : baselineUsageMillis * 0.9 + usageMillis * 0.1;
+        }
+
+        int next = current;
+        if ((acquireMillis > targetAcquireMillis || waiting > 0) && !databaseSlowing) {
+            quietIntervals = 0;
+            next = current + step;
+        } else if (acquireMillis < targetAcquireMillis / 4 && waiting == 0 && idle > 1) {
+            if (++quietIntervals >= QUIET_INTERVALS_BEFORE_SHRINK) {
+                quietIntervals = 0;
+                next = current - 1;
+            }
+        } else {
+            quietIntervals = 0;
+        }
+        return Math.max(minSize, Math.min(maxSize, next));
+    }
+
+    /**
+     * Computes the mean of a timer over the samples recorded since the previous call.
+     */
+    private double intervalMean(Timer timer, boolean isAcquire) {
+        long count = timer.count();
+        double totalMillis = timer.totalTime(TimeUnit.MILLISECONDS);
+        long deltaCount = count - (isAcquire ? lastAcquireCount : lastUsageCount);
+        double deltaMillis = totalMillis - (isAcquire ? lastAcquireTotalMillis : lastUsageTotalMillis);
+        if (isAcquire) {
+            lastAcquireCount = count;
+            lastAcquireTotalMillis = totalMillis;
+        } else {
+            lastUsageCount = count;
+            lastUsageTotalMillis = totalMillis;
+        }
+        return deltaCount > 0 ? deltaMillis / deltaCount : 0.0;
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.datasource;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Attaches the number of SQL statements and the total database time of each request to the response
+ * (X-Query-Count and X-Query-Time-Ms headers) and to the http.server.queries / http.server.db.time metrics.
+ * Logs a warning when a request runs more statements than querycount.budget, which is how N+1 regressions show up.
+ */
+@Component
+@ConditionalOnProperty(name = "querycount.enabled", havingValue = "true", matchIfMissing = true)
+public class QueryCountFilter extends OncePerRequestFilter {
+    public static final String QUERY_COUNT_HEADER = "X-Query-Count";
+    public static final String QUERY_TIME_HEADER = "X-Query-Time-Ms";
+    private static final Logger log = LoggerFactory.getLogger(QueryCountFilter.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${querycount.budget:5}")
+    private int budget;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        QueryStats stats = QueryStats.begin();
+        StampingResponse stamping = new StampingResponse(response, stats);
+        try {
+            chain.doFilter(request, stamping);
+        } finally {
+            QueryStats.end();
+            stamping.stamp();
+            record(request, stats);
+        }
+    }
+
+    private void record(HttpServletRequest request, QueryStats stats) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern == null ? "UNKNOWN" : pattern.toString();
+        DistributionSummary.builder("http.server.queries")
+            .tag("method", request.getMethod())
+            .tag("uri", uri)
+            .description("SQL statements executed per request")
+            .register(meterRegistry)
+            .record(stats.getCount());
+        Timer.builder("http.server.db.time")
+            .tag("method", request.getMethod())
+            .tag("uri", uri)
+            .description("Time spent executing SQL per request")
+            .register(meterRegistry)
+            .record(stats.getNanos(), TimeUnit.NANOSECONDS);
+        if (stats.getCount() > budget) {
+            log.warn("{} {} executed {} SQL statements (budget {}), possible N+1", request.getMethod(), uri,
+                stats.getCount(), budget);
+        }
+    }
+
+    /**
+     * Adds the query headers just before the response is committed, when all statements for the request have run.
+     */
+    private static final class StampingResponse extends HttpServletResponseWrapper {
+        private final QueryStats stats;
+        private boolean stamped;
+
+        StampingResponse(HttpServletResponse response, QueryStats stats) {
+            super(response);
+            this.stats = stats;
+        }
+
+        void stamp() {
+            if (!stamped && !isCommitted()) {
+                stamped = true;
+                setHeader(QUERY_COUNT_HEADER, Integer.toString(stats.getCount()));
+                setHeader(QUERY_TIME_HEADER, String.format(Locale.ROOT, "%.3f", stats.getNanos() / 1_000_000.0));
+            }
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            stamp();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            stamp();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            stamp();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            stamp();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            stamp();
+            super.sendError(sc);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * Statement count and time spent in the database for the request running on the current thread.
+ * A request opens a scope with begin() and closes it with end(); statements executed outside
+ * a scope (startup scripts, background jobs) are not attributed to anything.
+ * Work a request hands to a pool thread, such as a query on every shard, is counted into the request's scope by
+ * running it through runIn; a scope can therefore be recorded into from several threads at once.
+ */
+public final class QueryStats {
+    private static final ThreadLocal<QueryStats> CURRENT = new ThreadLocal<>();
+
+    private int count;
+    private long nanos;
+
+    private QueryStats() {
+    }
+
+    /**
+     * Starts counting for the current thread, replacing any previous scope.
+     *
+     * @return The stats object that will collect this thread's statements
+     */
+    public static QueryStats begin() {
+        QueryStats stats = new QueryStats();
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    /**
+     * Stops counting for the current thread.
+     */
+    public static void end() {
+        CURRENT.remove();
+    }
+
+    /**
+     * @return The current thread's scope, or null if it has none
+     */
+    public static QueryStats current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Runs work on the current thread with its statements counted into another thread's scope.
+     *
+     * @param scope The scope to count into, normally captured from the request thread; null counts nothing
+     * @param work The work to run
+     * @return What work returned
+     */
+    public static <T> T runIn(QueryStats scope, Supplier<T> work) {
+        QueryStats previous = CURRENT.get();
+        if (scope == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(scope);
+        }
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Records one executed statement against the current scope, if there is one.
+     *
+     * @param elapsedNanos The time the statement took to execute
+     */
+    static void record(long elapsedNanos) {
+        QueryStats stats = CURRENT.get();
+        if (stats != null) {
+            stats.add(elapsedNanos);
+        }
+    }
+
+    private synchronized void add(long elapsedNanos) {
+        count++;
+        nanos += elapsedNanos;
+    }
+
+    /**
+     * @return The number of statements executed in this scope so far
+     */
+    public synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * @return The total time spent executing statements in this scope, in nanoseconds
+     */
+    public synchronized long getNanos() {
+        return nanos;
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.datasource;
+
+/**
+ * Per-thread permission to serve read-only transactions from the replica.
+ * Threads start without it, so scheduled jobs, startup work and write requests always use the primary;
+ * ReadYourWritesFilter grants it to GET and HEAD requests from clients with no write the replica has not yet seen.
+ */
+public final class ReadRouting {
+    private static final ThreadLocal<Boolean> REPLICA_ALLOWED = new ThreadLocal<>();
+
+    private ReadRouting() {
+    }
+
+    static void allowReplica() {
+        REPLICA_ALLOWED.set(Boolean.TRUE);
+    }
+
+    static void clear() {
+        REPLICA_ALLOWED.remove();
+    }
+
+    /**
+     * @return True if read-only transactions on this thread may go to the replica
+     */
+    public static boolean isReplicaAllowed() {
+        return REPLICA_ALLOWED.get() != null;
+    }
+}
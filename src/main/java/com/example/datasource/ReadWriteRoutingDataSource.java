@@ -0,0 +1,51 @@
+package com.example.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Sends read-only transactions to the replica and everything else to the primary.
+ * A read goes to the replica only when the thread is allowed to (see ReadRouting) and the replica's lag is within
+ * datasource.routing.max-lag-ms; otherwise it falls back to the primary. The decision is made when a connection is
+ * first used, so this must sit behind a LazyConnectionDataSourceProxy: transaction managers fetch the connection
+ * before the read-only flag of the new transaction is visible.
+ * Each decision is counted in the datasource.routing metric, tagged by target.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+    static final String PRIMARY = "primary";
+    static final String REPLICA = "replica";
+
+    private final ReplicaFeeder feeder;
+    private final long maxLagMillis;
+    private final Counter primaryRoutes;
+    private final Counter replicaRoutes;
+
+    public ReadWriteRoutingDataSource(DataSource primary, ReplicaFeeder feeder, long maxLagMillis,
+                                      MeterRegistry meterRegistry) {
+        this.feeder = feeder;
+        this.maxLagMillis = maxLagMillis;
+        this.primaryRoutes = Counter.builder("datasource.routing").tag("target", PRIMARY)
+            .description("Connections routed to each datasource").register(meterRegistry);
+        this.replicaRoutes = Counter.builder("datasource.routing").tag("target", REPLICA)
+            .description("Connections routed to each datasource").register(meterRegistry);
+        setTargetDataSources(Map.of(PRIMARY, primary, REPLICA, feeder.getReplica()));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly() && ReadRouting.isReplicaAllowed()
+                && feeder.getLagMillis() <= maxLagMillis) {
+            replicaRoutes.increment();
+            return REPLICA;
+        }
+        primaryRoutes.increment();
+        return PRIMARY;
+    }
+}
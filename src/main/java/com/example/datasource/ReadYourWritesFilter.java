@@ -0,0 +1,83 @@
+package com.example.datasource;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides per request whether its reads may use the replica.
+ * Only reads qualify: GET, HEAD and POST /messages/lookup, which carries its IDs in a body. Every read inside a
+ * write request sees the primary. A client that has written is pinned to the primary until the replica has synced
+ * past its last write (read-your-writes). The pin is set before the write runs, since the response can reach the
+ * client, and its next read arrive, before the handler has returned here.
+ * Clients are identified by the X-Client-Id header, or by remote address when it is absent.
+ * Write times older than the lag limit are dropped opportunistically: by then the replica has either caught up
+ * or is too far behind to be used by anyone.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+    public static final String CLIENT_ID_HEADER = "X-Client-Id";
+    private static final String LOOKUP_PATH = "/messages/lookup";
+
+    private final ReplicaFeeder feeder;
+    private final long maxLagMillis;
+    private final ConcurrentHashMap<String, Long> lastWrites = new ConcurrentHashMap<>();
+    private final AtomicLong nextSweep;
+
+    public ReadYourWritesFilter(ReplicaFeeder feeder, long maxLagMillis) {
+        this.feeder = feeder;
+        this.maxLagMillis = maxLagMillis;
+        this.nextSweep = new AtomicLong(System.currentTimeMillis() + maxLagMillis);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String client = clientOf(request);
+        boolean read = isRead(request);
+        if (read) {
+            Long lastWrite = lastWrites.get(client);
+            if (lastWrite == null || lastWrite < feeder.getSyncedAsOf()) {
+                ReadRouting.allowReplica();
+            }
+        } else {
+            // Never older than any sync, so the client reads the primary until the real time is stamped below
+            lastWrites.put(client, Long.MAX_VALUE);
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReadRouting.clear();
+            if (!read) {
+                // Stamped after the handler returns, so after its transactions have committed
+                long now = System.currentTimeMillis();
+                lastWrites.put(client, now);
+                sweepIfDue(now);
+            }
+        }
+    }
+
+    private static boolean isRead(HttpServletRequest request) {
+        String method = request.getMethod();
+        return "GET".equals(method) || "HEAD".equals(method)
+            || "POST".equals(method) && LOOKUP_PATH.equals(request.getServletPath());
+    }
+
+    private static String clientOf(HttpServletRequest request) {
+        String clientId = request.getHeader(CLIENT_ID_HEADER);
+        return clientId != null ? clientId : request.getRemoteAddr();
+    }
+
+    private void sweepIfDue(long now) {
+        long deadline = nextSweep.get();
+        if (now < deadline || !nextSweep.compareAndSet(deadline, now + maxLagMillis)) {
+            return;
+        }
+        lastWrites.values().removeIf(written -> now - written > maxLagMillis);
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.datasource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Feeds the read replica, a second in-memory H2 database standing in for a real replica, from the primary.
+ * The replica reaches the primary's tables through H2 linked tables and copies them every
+ * datasource.replica.sync-interval-ms in one transaction: rows gone from the primary are deleted, the rest are merged.
+ * Readers therefore always see a whole sync, never half of one. This is a full copy per sync, which is fine for a
+ * stand-in but not for large tables.
+ * The replica is as fresh as the start of the last completed sync, which is what getSyncedAsOf reports.
+ */
+public class ReplicaFeeder {
+    private static final Logger log = LoggerFactory.getLogger(ReplicaFeeder.class);
+    // table, key column, extra index
+    private static final String[][] TABLES = {
+        {"ACCOUNT", "ACCOUNTID", "USERNAME"},
+        {"MESSAGE", "MESSAGEID", "POSTEDBY"}
+    };
+
+    private final DataSource replica;
+    private final String primaryUrl;
+    private final String primaryUsername;
+    private final String primaryPassword;
+    private volatile long syncedAsOf;
+    private boolean linked;
+
+    public ReplicaFeeder(DataSource replica, String primaryUrl, String primaryUsername, String primaryPassword,
+                         MeterRegistry meterRegistry) {
+        this.replica = replica;
+        this.primaryUrl = primaryUrl;
+        this.primaryUsername = primaryUsername;
+        this.primaryPassword = primaryPassword;
+        Gauge.builder("datasource.replica.lag", this, feeder -> feeder.syncedAsOf == 0 ? Double.NaN : feeder.getLagMillis())
+            .baseUnit("milliseconds")
+            .description("Age of the data in the read replica")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Copies the primary's current contents into the replica.
+     *
+     * @throws SQLException if either database cannot be reached
+     */
+    public synchronized void sync() throws SQLException {
+        long start = System.currentTimeMillis();
+        try (Connection connection = replica.getConnection(); Statement statement = connection.createStatement()) {
+            if (!linked) {
+                link(statement);
+                linked = true;
+            }
+            connection.setAutoCommit(false);
+            try {
+                for (String[] table : TABLES) {
+                    statement.executeUpdate("DELETE FROM " + table[0] + " WHERE " + table[1]
+                        + " NOT IN (SELECT " + table[1] + " FROM PRIMARY_" + table[0] + ")");
+                    statement.executeUpdate("MERGE INTO " + table[0] + " KEY(" + table[1] + ") SELECT * FROM PRIMARY_" + table[0]);
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+        syncedAsOf = start;
+    }
+
+    /**
+     * Syncs on the configured interval. A failed sync only makes the replica older, which routing already handles.
+     */
+    @Scheduled(fixedDelayString = "${datasource.replica.sync-interval-ms:1000}")
+    public void scheduledSync() {
+        try {
+            sync();
+        } catch (SQLException e) {
+            log.warn("Replica sync failed, reads fall back to the primary once the lag limit is passed", e);
+        }
+    }
+
+    /**
+     * @return The epoch millisecond as of which the replica holds every committed write, or 0 before the first sync
+     */
+    public long getSyncedAsOf() {
+        return syncedAsOf;
+    }
+
+    /**
+     * @return How far the replica is behind the primary, Long.MAX_VALUE before the first sync
+     */
+    public long getLagMillis() {
+        long synced = syncedAsOf;
+        return synced == 0 ? Long.MAX_VALUE : System.currentTimeMillis() - synced;
+    }
+
+    public DataSource getReplica() {
+        return replica;
+    }
+
+    /**
+     * Links the primary's tables into the replica and creates local copies with the same columns.
+     */
+    private void link(Statement statement) throws SQLException {
+        for (String[] table : TABLES) {
+            statement.execute("CREATE LINKED TABLE IF NOT EXISTS PRIMARY_" + table[0] + "('org.h2.Driver', "
+                + literal(primaryUrl) + ", " + literal(primaryUsername) + ", " + literal(primaryPassword) + ", '"
+                + table[0] + "') READONLY");
+            statement.execute("CREATE TABLE IF NOT EXISTS " + table[0] + " AS SELECT * FROM PRIMARY_" + table[0] + " WITH NO DATA");
+            statement.execute("CREATE UNIQUE INDEX IF NOT EXISTS " + table[0] + "_KEY ON " + table[0] + "(" + table[1] + ")");
+            statement.execute("CREATE INDEX IF NOT EXISTS " + table[0] + "_" + table[2] + " ON " + table[0] + "(" + table[2] + ")");
+        }
+    }
+
+    private static String literal(String value) {
+        return value == null ? "''" : "'" + value.replace("'", "''") + "'";
+    }
+}
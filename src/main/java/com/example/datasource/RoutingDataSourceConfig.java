@@ -0,0 +1,73 @@
+package com.example.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * Replaces the auto-configured DataSource with a primary pool and a read-replica pool behind a ReadWriteRoutingDataSource.
+ * The primary is built from spring.datasource.* exactly as Spring Boot would build it; the replica from datasource.replica.*.
+ * Neither pool is a bean of its own, so the single dataSource bean is the one that gets instrumented and injected,
+ * and both pools are closed when this configuration is destroyed, after everything that uses them.
+ * Only active when datasource.routing.enabled=true.
+ */
+@Configuration
+@ConditionalOnProperty(name = "datasource.routing.enabled", havingValue = "true")
+public class RoutingDataSourceConfig implements DisposableBean {
+    private HikariDataSource primary;
+    private HikariDataSource replica;
+
+    @Bean
+    public ReplicaFeeder replicaFeeder(DataSourceProperties properties, Environment environment, MeterRegistry meterRegistry,
+                                      @Value("${datasource.replica.url:jdbc:h2:mem:replica}") String url,
+                                      @Value("${datasource.replica.username:sa}") String username,
+                                      @Value("${datasource.replica.password:}") String password) {
+        replica = new HikariDataSource();
+        replica.setPoolName("SocialMediaReplicaPool");
+        replica.setJdbcUrl(url);
+        replica.setUsername(username);
+        replica.setPassword(password);
+        Binder.get(environment).bind("datasource.replica.hikari", Bindable.ofInstance(replica));
+        replica.setMetricRegistry(meterRegistry);
+        return new ReplicaFeeder(replica, properties.determineUrl(), properties.determineUsername(),
+            properties.determinePassword(), meterRegistry);
+    }
+
+    @Bean
+    public DataSource dataSource(DataSourceProperties properties, Environment environment, MeterRegistry meterRegistry,
+                                 ReplicaFeeder replicaFeeder,
+                                 @Value("${datasource.routing.max-lag-ms:5000}") long maxLagMillis) {
+        primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        primary.setMetricRegistry(meterRegistry);
+        return new LazyConnectionDataSourceProxy(
+            new ReadWriteRoutingDataSource(primary, replicaFeeder, maxLagMillis, meterRegistry));
+    }
+
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter(ReplicaFeeder replicaFeeder,
+                                                     @Value("${datasource.routing.max-lag-ms:5000}") long maxLagMillis) {
+        return new ReadYourWritesFilter(replicaFeeder, maxLagMillis);
+    }
+
+    @Override
+    public void destroy() {
+        if (replica != null) {
+            replica.close();
+        }
+        if (primary != null) {
+            primary.close();
+        }
+    }
+}
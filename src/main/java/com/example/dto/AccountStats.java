@@ -0,0 +1,57 @@
+package com.example.dto;
+
+/**
+ * Message statistics for one account, served from the in-memory counters.
+ */
+public class AccountStats {
+    private Integer accountId;
+    private long messageCount;
+    private Long lastPostedEpoch;
+
+    public AccountStats() {
+    }
+
+    /**
+     * @param accountId The ID of the account
+     * @param messageCount The number of messages the account currently has
+     * @param lastPostedEpoch The epoch time of the account's latest post, or null if it never posted
+     */
+    public AccountStats(Integer accountId, long messageCount, Long lastPostedEpoch) {
+        this.accountId = accountId;
+        this.messageCount = messageCount;
+        this.lastPostedEpoch = lastPostedEpoch;
+    }
+
+    public Integer getAccountId() {
+        return accountId;
+    }
+
+    public void setAccountId(Integer accountId) {
+        this.accountId = accountId;
+    }
+
+    public long getMessageCount() {
+        return messageCount;
+    }
+
+    public void setMessageCount(long messageCount) {
+        this.messageCount = messageCount;
+    }
+
+    public Long getLastPostedEpoch() {
+        return lastPostedEpoch;
+    }
+
+    public void setLastPostedEpoch(Long lastPostedEpoch) {
+        this.lastPostedEpoch = lastPostedEpoch;
+    }
+
+    @Override
+    public String toString() {
+        return "AccountStats{" +
+                "accountId=" + accountId +
+                ", messageCount=" + messageCount +
+                ", lastPostedEpoch=" + lastPostedEpoch +
+                '}';
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.dto;
+
+/**
+ * The public part of an account, as returned by username search.
+ */
+public class AccountSummary {
+    private Integer accountId;
+    private String username;
+
+    public AccountSummary() {
+    }
+
+    /**
+     * @param accountId The ID of the account
+     * @param username The account's username
+     */
+    public AccountSummary(Integer accountId, String username) {
+        this.accountId = accountId;
+        this.username = username;
+    }
+
+    public Integer getAccountId() {
+        return accountId;
+    }
+
+    public void setAccountId(Integer accountId) {
+        this.accountId = accountId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+}
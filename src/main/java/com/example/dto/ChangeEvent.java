@@ -0,0 +1,154 @@
+package com.example.dto;
+
+import com.example.entity.Message;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One entry of the change log: a committed create, update or delete of a message or an account.
+ * Only the fields that apply to the type are set. Passwords are never recorded.
+ * An update carries the message's new version, so a consumer that sees two updates of one message out of order
+ * can keep the higher version.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ChangeEvent {
+    public enum Type {
+        ACCOUNT_CREATED,
+        MESSAGE_CREATED,
+        MESSAGE_UPDATED,
+        MESSAGE_DELETED,
+        // Every message of accountId was deleted
+        ACCOUNT_MESSAGES_DELETED
+    }
+
+    private Long offset;
+    private Type type;
+    private long time;
+    private Integer accountId;
+    private String username;
+    private Integer messageId;
+    private String messageText;
+    private Long timePostedEpoch;
+    private Long version;
+
+    public ChangeEvent() {
+    }
+
+    private ChangeEvent(Type type, Integer accountId) {
+        this.type = type;
+        this.time = System.currentTimeMillis();
+        this.accountId = accountId;
+    }
+
+    public static ChangeEvent accountCreated(Integer accountId, String username) {
+        ChangeEvent event = new ChangeEvent(Type.ACCOUNT_CREATED, accountId);
+        event.username = username;
+        return event;
+    }
+
+    public static ChangeEvent messageCreated(Message message) {
+        ChangeEvent event = new ChangeEvent(Type.MESSAGE_CREATED, message.getPostedBy());
+        event.messageId = message.getMessageId();
+        event.messageText = message.getMessageText();
+        event.timePostedEpoch = message.getTimePostedEpoch();
+        return event;
+    }
+
+    public static ChangeEvent messageUpdated(Integer messageId, Integer postedBy, String messageText, long version) {
+        ChangeEvent event = new ChangeEvent(Type.MESSAGE_UPDATED, postedBy);
+        event.messageId = messageId;
+        event.messageText = messageText;
+        event.version = version;
+        return event;
+    }
+
+    public static ChangeEvent messageDeleted(Integer messageId, Integer postedBy) {
+        ChangeEvent event = new ChangeEvent(Type.MESSAGE_DELETED, postedBy);
+        event.messageId = messageId;
+        return event;
+    }
+
+    public static ChangeEvent accountMessagesDeleted(Integer accountId) {
+        return new ChangeEvent(Type.ACCOUNT_MESSAGES_DELETED, accountId);
+    }
+
+    /**
+     * @return The event's position in the log; pass it as from to read again from this event. Null until read back.
+     */
+    public Long getOffset() {
+        return offset;
+    }
+
+    public void setOffset(Long offset) {
+        this.offset = offset;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    /**
+     * @return When the change was recorded, in epoch milliseconds
+     */
+    public long getTime() {
+        return time;
+    }
+
+    public void setTime(long time) {
+        this.time = time;
+    }
+
+    /**
+     * @return The account created, or the poster of the message changed
+     */
+    public Integer getAccountId() {
+        return accountId;
+    }
+
+    public void setAccountId(Integer accountId) {
+        this.accountId = accountId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public Integer getMessageId() {
+        return messageId;
+    }
+
+    public void setMessageId(Integer messageId) {
+        this.messageId = messageId;
+    }
+
+    public String getMessageText() {
+        return messageText;
+    }
+
+    public void setMessageText(String messageText) {
+        this.messageText = messageText;
+    }
+
+    public Long getTimePostedEpoch() {
+        return timePostedEpoch;
+    }
+
+    public void setTimePostedEpoch(Long timePostedEpoch) {
+        this.timePostedEpoch = timePostedEpoch;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.dto;
+
+import java.util.List;
+
+/**
+ * A run of change log events and where to continue reading.
+ */
+public class ChangePage {
+    private final List<ChangeEvent> events;
+    private final long nextOffset;
+    private final long endOffset;
+
+    public ChangePage(List<ChangeEvent> events, long nextOffset, long endOffset) {
+        this.events = events;
+        this.nextOffset = nextOffset;
+        this.endOffset = endOffset;
+    }
+
+    public List<ChangeEvent> getEvents() {
+        return events;
+    }
+
+    /**
+     * @return The offset to pass as from on the next read
+     */
+    public long getNextOffset() {
+        return nextOffset;
+    }
+
+    /**
+     * @return The end of the durable log when this page was read; nextOffset == endOffset means the reader is caught up
+     */
+    public long getEndOffset() {
+        return endOffset;
+    }
+}
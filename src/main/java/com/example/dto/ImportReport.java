@@ -0,0 +1,85 @@
+package com.example.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk account import: line counts and the first errors, each tied to its line in the file.
+ */
+public class ImportReport {
+    private long lines;
+    private long imported;
+    private long failed;
+    private List<LineError> errors = new ArrayList<>();
+
+    public long getLines() {
+        return lines;
+    }
+
+    public void setLines(long lines) {
+        this.lines = lines;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public void setImported(long imported) {
+        this.imported = imported;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+
+    /**
+     * @return Up to accounts.import.max-reported-errors errors in line order; failed holds the full count
+     */
+    public List<LineError> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<LineError> errors) {
+        this.errors = errors;
+    }
+
+    /**
+     * One rejected line.
+     */
+    public static class LineError {
+        private long line;
+        private String error;
+
+        public LineError() {
+        }
+
+        /**
+         * @param line The 1-based line number in the uploaded file
+         * @param error Why the line was not imported
+         */
+        public LineError(long line, String error) {
+            this.line = line;
+            this.error = error;
+        }
+
+        public long getLine() {
+            return line;
+        }
+
+        public void setLine(long line) {
+            this.line = line;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public void setError(String error) {
+            this.error = error;
+        }
+    }
+}
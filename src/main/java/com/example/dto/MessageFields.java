@@ -0,0 +1,100 @@
+package com.example.dto;
+
+import com.example.entity.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * The message fields a client asked for with fields=, e.g. fields=messageId,timePostedEpoch.
+ * Fields are kept in the entity's declaration order whatever order they were requested in. Only the four Message
+ * properties are accepted, so the names can go into a query as they are.
+ */
+public final class MessageFields {
+    private static final String[] NAMES = {"messageId", "postedBy", "messageText", "timePostedEpoch"};
+    private static final List<Function<Message, Object>> GETTERS = List.of(
+        Message::getMessageId, Message::getPostedBy, Message::getMessageText, Message::getTimePostedEpoch);
+
+    private final String[] names;
+    private final int[] properties;
+
+    private MessageFields(String[] names, int[] properties) {
+        this.names = names;
+        this.properties = properties;
+    }
+
+    /**
+     * @param fields A comma-separated list of Message property names
+     * @return The parsed field list, or null if fields is null (no narrowing asked for)
+     * @throws IllegalArgumentException if a name is not a Message property or the list is empty
+     */
+    public static MessageFields parse(String fields) {
+        if (fields == null) {
+            return null;
+        }
+        boolean[] requested = new boolean[NAMES.length];
+        for (String field : fields.split(",")) {
+            int property = indexOf(field.trim());
+            if (property < 0) {
+                throw new IllegalArgumentException("Unknown message field " + field);
+            }
+            requested[property] = true;
+        }
+        List<Integer> selected = new ArrayList<>();
+        for (int i = 0; i < NAMES.length; i++) {
+            if (requested[i]) {
+                selected.add(i);
+            }
+        }
+        if (selected.isEmpty()) {
+            throw new IllegalArgumentException("No message fields requested");
+        }
+        String[] names = new String[selected.size()];
+        int[] properties = new int[selected.size()];
+        for (int i = 0; i < names.length; i++) {
+            properties[i] = selected.get(i);
+            names[i] = NAMES[properties[i]];
+        }
+        return new MessageFields(names, properties);
+    }
+
+    /**
+     * @return The number of requested fields
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * @param index Position among the requested fields
+     * @return The property name at that position
+     */
+    public String name(int index) {
+        return names[index];
+    }
+
+    /**
+     * Narrows a full message down to the requested fields.
+     *
+     * @param message The message
+     * @return The message's values for the requested fields
+     */
+    public SparseMessage of(Message message) {
+        Object[] row = new Object[properties.length + 1];
+        row[0] = message.getMessageId();
+        for (int i = 0; i < properties.length; i++) {
+            row[i + 1] = GETTERS.get(properties[i]).apply(message);
+        }
+        return new SparseMessage(this, row);
+    }
+
+    private static int indexOf(String name) {
+        for (int i = 0; i < NAMES.length; i++) {
+            if (NAMES[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.io.IOException;
+
+/**
+ * A message narrowed to the fields a client asked for: one value per requested field, plus the message ID, which is
+ * always kept for ordering and de-duplication but only written out when it was requested.
+ * Serialized as an object with exactly the requested fields, so a null value is written as null rather than dropped.
+ */
+@JsonSerialize(using = SparseMessage.Serializer.class)
+public final class SparseMessage {
+    private final MessageFields fields;
+    // The message ID, then one value per requested field
+    private final Object[] row;
+
+    /**
+     * @param fields The requested fields
+     * @param row The message ID followed by the message's values in the order of fields, as selected by the query
+     */
+    public SparseMessage(MessageFields fields, Object[] row) {
+        this.fields = fields;
+        this.row = row;
+    }
+
+    public Integer getMessageId() {
+        return (Integer) row[0];
+    }
+
+    public static final class Serializer extends JsonSerializer<SparseMessage> {
+        @Override
+        public void serialize(SparseMessage message, JsonGenerator generator, SerializerProvider provider)
+                throws IOException {
+            generator.writeStartObject(message, message.fields.size());
+            for (int i = 0; i < message.fields.size(); i++) {
+                Object value = message.row[i + 1];
+                generator.writeFieldName(message.fields.name(i));
+                if (value == null) {
+                    generator.writeNull();
+                } else if (value instanceof Integer) {
+                    generator.writeNumber((Integer) value);
+                } else if (value instanceof Long) {
+                    generator.writeNumber((Long) value);
+                } else {
+                    generator.writeString(value.toString());
+                }
+            }
+            generator.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.dto;
+
+import com.example.entity.Message;
+
+/**
+ * A message and the version of its row, which is sent as the message's ETag.
+ */
+public class VersionedMessage {
+    private final Message message;
+    private final long version;
+
+    public VersionedMessage(Message message, long version) {
+        this.message = message;
+        this.version = version;
+    }
+
+    public Message getMessage() {
+        return message;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
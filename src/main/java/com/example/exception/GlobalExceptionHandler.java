@@ -1,21 +1,48 @@
 package com.example.exception;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.UncheckedIOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Global exception handler for the application.
  * Centralizes exception handling across all controllers.
  * Provides consistent error response format for different types of exceptions.
+ * The domain exceptions carry a fixed set of messages, so their bodies are serialized once per media type, status and
+ * message and the bytes reused; rejecting a bad request then allocates no map and runs no serializer.
+ * Those bodies follow the Accept header like any other response: CBOR for a client that prefers application/cbor,
+ * JSON otherwise. The Accept header is only parsed when it mentions CBOR at all.
  */
 @ControllerAdvice
 public class GlobalExceptionHandler {
+    // Bounds the body cache in case a message ever carries request data
+    private static final int MAX_CACHED_BODIES = 64;
+
+    private final ObjectMapper objectMapper;
+    private final ObjectMapper cborMapper;
+    private final ConcurrentHashMap<String, byte[]> bodies = new ConcurrentHashMap<>();
+
+    public GlobalExceptionHandler(ObjectMapper objectMapper, Jackson2ObjectMapperBuilder objectMapperBuilder) {
+        this.objectMapper = objectMapper;
+        this.cborMapper = objectMapperBuilder.factory(new CBORFactory()).build();
+    }
 
     /**
      * Handles Spring's ResponseStatusException.
@@ -41,12 +68,8 @@ public class GlobalExceptionHandler {
      * @return ResponseEntity with error details and CONFLICT status
      */
     @ExceptionHandler(UsernameAlreadyExistsException.class)
-    public ResponseEntity<Map<String, String>> handleUsernameAlreadyExists(UsernameAlreadyExistsException ex) {
-        Map<String, String> errorResponse = new HashMap<>();
-        errorResponse.put("status", HttpStatus.CONFLICT.toString());
-        errorResponse.put("message", ex.getMessage());
-        
-        return ResponseEntity.status(HttpStatus.CONFLICT).body(errorResponse);
+    public ResponseEntity<byte[]> handleUsernameAlreadyExists(UsernameAlreadyExistsException ex) {
+        return error(HttpStatus.CONFLICT, ex.getMessage());
     }
     
     /**
@@ -57,12 +80,8 @@ public class GlobalExceptionHandler {
      * @return ResponseEntity with error details and UNAUTHORIZED status
      */
     @ExceptionHandler(InvalidCredentialsException.class)
-    public ResponseEntity<Map<String, String>> handleInvalidCredentials(InvalidCredentialsException ex) {
-        Map<String, String> errorResponse = new HashMap<>();
-        errorResponse.put("status", HttpStatus.UNAUTHORIZED.toString());
-        errorResponse.put("message", ex.getMessage());
-        
-        return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(errorResponse);
+    public ResponseEntity<byte[]> handleInvalidCredentials(InvalidCredentialsException ex) {
+        return error(HttpStatus.UNAUTHORIZED, ex.getMessage());
     }
     
     /**
@@ -73,12 +92,8 @@ public class GlobalExceptionHandler {
      * @return ResponseEntity with error details and BAD_REQUEST status
      */
     @ExceptionHandler(InvalidMessageException.class)
-    public ResponseEntity<Map<String, String>> handleInvalidMessage(InvalidMessageException ex) {
-        Map<String, String> errorResponse = new HashMap<>();
-        errorResponse.put("status", HttpStatus.BAD_REQUEST.toString());
-        errorResponse.put("message", ex.getMessage());
-        
-        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+    public ResponseEntity<byte[]> handleInvalidMessage(InvalidMessageException ex) {
+        return error(HttpStatus.BAD_REQUEST, ex.getMessage());
     }
     
     /**
@@ -89,14 +104,62 @@ public class GlobalExceptionHandler {
      * @return ResponseEntity with error details and BAD_REQUEST status
      */
     @ExceptionHandler(InvalidAccountException.class)
-    public ResponseEntity<Map<String, String>> handleInvalidAccount(InvalidAccountException ex) {
-        Map<String, String> errorResponse = new HashMap<>();
-        errorResponse.put("status", HttpStatus.BAD_REQUEST.toString());
-        errorResponse.put("message", ex.getMessage());
-        
-        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+    public ResponseEntity<byte[]> handleInvalidAccount(InvalidAccountException ex) {
+        return error(HttpStatus.BAD_REQUEST, ex.getMessage());
     }
     
+    /**
+     * Handles change log reads from an offset that is not the start of an event.
+     * Returns HTTP 400 Bad Request with error details.
+     *
+     * @param ex The InvalidChangeOffsetException that was thrown
+     * @return ResponseEntity with error details and BAD_REQUEST status
+     */
+    @ExceptionHandler(InvalidChangeOffsetException.class)
+    public ResponseEntity<byte[]> handleInvalidChangeOffset(InvalidChangeOffsetException ex) {
+        return error(HttpStatus.BAD_REQUEST, ex.getMessage());
+    }
+
+    /**
+     * Handles edits made against an outdated version.
+     * Returns HTTP 412 Precondition Failed with error details.
+     *
+     * @param ex The VersionMismatchException that was thrown
+     * @return ResponseEntity with error details and PRECONDITION_FAILED status
+     */
+    @ExceptionHandler(VersionMismatchException.class)
+    public ResponseEntity<byte[]> handleVersionMismatch(VersionMismatchException ex) {
+        return error(HttpStatus.PRECONDITION_FAILED, ex.getMessage());
+    }
+
+    /**
+     * Handles edits that lost every retry to concurrent edits.
+     * Returns HTTP 409 Conflict with error details.
+     *
+     * @param ex The UpdateConflictException that was thrown
+     * @return ResponseEntity with error details and CONFLICT status
+     */
+    @ExceptionHandler(UpdateConflictException.class)
+    public ResponseEntity<byte[]> handleUpdateConflict(UpdateConflictException ex) {
+        return error(HttpStatus.CONFLICT, ex.getMessage());
+    }
+
+    /**
+     * Handles rate limit exceptions.
+     * Returns HTTP 429 Too Many Requests with a Retry-After header and error details.
+     *
+     * @param ex The RateLimitExceededException that was thrown
+     * @return ResponseEntity with error details and TOO_MANY_REQUESTS status
+     */
+    @ExceptionHandler(RateLimitExceededException.class)
+    public ResponseEntity<byte[]> handleRateLimitExceeded(RateLimitExceededException ex) {
+        MediaType type = negotiate();
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+            .contentType(type)
+            .header(HttpHeaders.RETRY_AFTER, Long.toString(ex.getRetryAfterSeconds()))
+            .body(body(type, HttpStatus.TOO_MANY_REQUESTS, ex.getMessage()));
+    }
+
     /**
      * Fallback handler for any unhandled exceptions.
      * Returns HTTP 500 Internal Server Error with error details.
@@ -113,4 +176,61 @@ public class GlobalExceptionHandler {
         
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
     }
-} 
\ No newline at end of file
+
+    /**
+     * Builds an error response with the same body the map-based handlers produce, in the negotiated media type.
+     */
+    private ResponseEntity<byte[]> error(HttpStatus status, String message) {
+        MediaType type = negotiate();
+        return ResponseEntity.status(status).contentType(type).body(body(type, status, message));
+    }
+
+    /**
+     * @return application/cbor if the request's Accept header ranks it above JSON, application/json otherwise
+     */
+    private static MediaType negotiate() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        String accept = attributes instanceof ServletRequestAttributes
+            ? ((ServletRequestAttributes) attributes).getRequest().getHeader(HttpHeaders.ACCEPT) : null;
+        if (accept == null || !accept.contains("cbor")) {
+            return MediaType.APPLICATION_JSON;
+        }
+        List<MediaType> accepted = MediaType.parseMediaTypes(accept);
+        MediaType.sortBySpecificityAndQuality(accepted);
+        for (MediaType type : accepted) {
+            if (type.includes(MediaType.APPLICATION_JSON)) {
+                return MediaType.APPLICATION_JSON;
+            }
+            if (type.includes(MediaType.APPLICATION_CBOR)) {
+                return MediaType.APPLICATION_CBOR;
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+
+    /**
+     * @return The serialized error body, from the cache after the first time a media type, status and message are seen
+     */
+    private byte[] body(MediaType type, HttpStatus status, String message) {
+        String key = type.getSubtype() + ":" + status.value() + ":" + message;
+        byte[] body = bodies.get(key);
+        if (body == null) {
+            body = serialize(type.equals(MediaType.APPLICATION_CBOR) ? cborMapper : objectMapper, status, message);
+            if (bodies.size() < MAX_CACHED_BODIES) {
+                bodies.putIfAbsent(key, body);
+            }
+        }
+        return body;
+    }
+
+    private static byte[] serialize(ObjectMapper mapper, HttpStatus status, String message) {
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("status", status.toString());
+        errorResponse.put("message", message);
+        try {
+            return mapper.writeValueAsBytes(errorResponse);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -7,6 +7,7 @@ import org.springframework.web.bind.annotation.ResponseStatus;
  * Exception thrown when an account fails validation or cannot be processed.
  * Returns HTTP 400 Bad Request when this exception is thrown.
  * Used for invalid account data during registration or other account operations.
+ * Stackless, like the other validation exceptions.
  */
 @ResponseStatus(HttpStatus.BAD_REQUEST)
 public class InvalidAccountException extends RuntimeException {
@@ -16,6 +17,6 @@ public class InvalidAccountException extends RuntimeException {
      * @param message The error message explaining why the account is invalid
      */
     public InvalidAccountException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 } 
\ No newline at end of file
@@ -0,0 +1,21 @@
+package com.example.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Exception thrown when a change log read starts at an offset that is not the start of an event.
+ * Returns HTTP 400 Bad Request when this exception is thrown.
+ * Stackless; offsets come from a previous read's nextOffset or an event's offset.
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidChangeOffsetException extends RuntimeException {
+    /**
+     * Constructs a new InvalidChangeOffsetException with the specified error message.
+     * 
+     * @param message The error message explaining why the offset was rejected
+     */
+    public InvalidChangeOffsetException(String message) {
+        super(message, null, false, false);
+    }
+}
@@ -7,6 +7,7 @@ import org.springframework.web.bind.annotation.ResponseStatus;
  * Exception thrown when authentication fails due to invalid credentials.
  * Returns HTTP 401 Unauthorized when this exception is thrown.
  * Used during login attempts with incorrect username/password combinations.
+ * Stackless: a failed login is routine, not a fault worth a trace.
  */
 @ResponseStatus(HttpStatus.UNAUTHORIZED)
 public class InvalidCredentialsException extends RuntimeException {
@@ -16,6 +17,6 @@ public class InvalidCredentialsException extends RuntimeException {
      * @param message The error message explaining the authentication failure
      */
     public InvalidCredentialsException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 } 
\ No newline at end of file
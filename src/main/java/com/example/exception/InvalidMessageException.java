@@ -7,6 +7,7 @@ import org.springframework.web.bind.annotation.ResponseStatus;
  * Exception thrown when a message fails validation or cannot be processed.
  * Returns HTTP 400 Bad Request when this exception is thrown.
  * Used for invalid message content, failed updates, or other message-related errors.
+ * Created without a stack trace, since floods of invalid posts make this the busiest error path.
  */
 @ResponseStatus(HttpStatus.BAD_REQUEST)
 public class InvalidMessageException extends RuntimeException {
@@ -16,6 +17,6 @@ public class InvalidMessageException extends RuntimeException {
      * @param message The error message explaining why the message is invalid
      */
     public InvalidMessageException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 } 
\ No newline at end of file
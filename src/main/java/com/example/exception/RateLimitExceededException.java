@@ -0,0 +1,33 @@
+package com.example.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Exception thrown when a client or account has used up its write allowance.
+ * Returns HTTP 429 Too Many Requests when this exception is thrown.
+ * Carries the number of seconds the caller should wait, which is sent back as the Retry-After header.
+ * Carries no stack trace, since it is thrown for every rejected write.
+ */
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class RateLimitExceededException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    /**
+     * Constructs a new RateLimitExceededException with the specified error message and wait time.
+     *
+     * @param message The error message explaining which limit was hit
+     * @param retryAfterSeconds The number of seconds until the next request would be accepted
+     */
+    public RateLimitExceededException(String message, long retryAfterSeconds) {
+        super(message, null, false, false);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * @return The number of seconds until the next request would be accepted
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
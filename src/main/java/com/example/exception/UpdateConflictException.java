@@ -0,0 +1,21 @@
+package com.example.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Exception thrown when an edit kept losing the race against concurrent edits of the same message
+ * and ran out of server-side retries.
+ * Returns HTTP 409 Conflict when this exception is thrown. Stackless, since it is a load condition, not a bug.
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class UpdateConflictException extends RuntimeException {
+    /**
+     * Constructs a new UpdateConflictException with the specified error message.
+     * 
+     * @param message The error message explaining the conflict
+     */
+    public UpdateConflictException(String message) {
+        super(message, null, false, false);
+    }
+}
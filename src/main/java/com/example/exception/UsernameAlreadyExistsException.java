@@ -7,6 +7,7 @@ import org.springframework.web.bind.annotation.ResponseStatus;
  * Exception thrown when attempting to register an account with a username that already exists.
  * Returns HTTP 409 Conflict when this exception is thrown.
  * Used during account registration to prevent duplicate usernames.
+ * Stackless, as the conflict is only reported to the client and never logged.
  */
 @ResponseStatus(HttpStatus.CONFLICT)
 public class UsernameAlreadyExistsException extends RuntimeException {
@@ -16,6 +17,6 @@ public class UsernameAlreadyExistsException extends RuntimeException {
      * @param message The error message explaining the username conflict
      */
     public UsernameAlreadyExistsException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 } 
\ No newline at end of file
@@ -0,0 +1,21 @@
+package com.example.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Exception thrown when an edit names a version of the message (If-Match) that is no longer current.
+ * Returns HTTP 412 Precondition Failed when this exception is thrown.
+ * Stackless; the client is expected to re-read the message and decide again.
+ */
+@ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+public class VersionMismatchException extends RuntimeException {
+    /**
+     * Constructs a new VersionMismatchException with the specified error message.
+     * 
+     * @param message The error message explaining the mismatch
+     */
+    public VersionMismatchException(String message) {
+        super(message, null, false, false);
+    }
+}
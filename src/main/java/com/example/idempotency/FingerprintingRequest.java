@@ -0,0 +1,106 @@
+package com.example.idempotency;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Hashes a request body as it is read, so a stored response can be tied to the body that produced it without
+ * holding the body in memory; a streamed import is hashed just like a small JSON post.
+ */
+class FingerprintingRequest extends HttpServletRequestWrapper {
+    private final MessageDigest digest;
+    private ServletInputStream input;
+    private BufferedReader reader;
+
+    FingerprintingRequest(HttpServletRequest request) {
+        super(request);
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public ServletInputStream getInputStream() throws IOException {
+        if (input == null) {
+            input = new HashingInputStream(super.getInputStream());
+        }
+        return input;
+    }
+
+    @Override
+    public BufferedReader getReader() throws IOException {
+        if (reader == null) {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding == null ? StandardCharsets.ISO_8859_1 : Charset.forName(encoding);
+            reader = new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+        return reader;
+    }
+
+    /**
+     * Reads whatever the handler left of the body and returns the hash of all of it.
+     *
+     * @return The SHA-256 of the request body
+     * @throws IOException if the rest of the body cannot be read
+     */
+    byte[] finish() throws IOException {
+        ServletInputStream in = getInputStream();
+        byte[] buffer = new byte[8192];
+        while (in.read(buffer) >= 0) {
+            // hashed as it is read
+        }
+        return digest.digest();
+    }
+
+    private final class HashingInputStream extends ServletInputStream {
+        private final ServletInputStream delegate;
+
+        HashingInputStream(ServletInputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = delegate.read();
+            if (b >= 0) {
+                digest.update((byte) b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = delegate.read(b, off, len);
+            if (n > 0) {
+                digest.update(b, off, n);
+            }
+            return n;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return delegate.isFinished();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            delegate.setReadListener(readListener);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.idempotency;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Makes POSTs to idempotency.paths safe to retry. A request carrying an Idempotency-Key header runs once;
+ * its status and body are kept in an IdempotencyStore for idempotency.ttl-seconds, and a retry with the same key
+ * gets them back (marked Idempotent-Replayed: true) without reaching the controller, the rate limiter or the database.
+ * A retry that arrives while the first request is still running waits for it.
+ * Server errors and 429 responses are not stored, so those requests can be retried for real.
+ * Keys are scoped to the path, so the same key on two endpoints means two requests. The stored response keeps a hash
+ * of the request body, and reusing a key with a different body is refused with 422 rather than answered with the
+ * response to the other body. When the store is full of requests still running, a new key is refused with 503 rather
+ * than evicting a claim whose retry would then run the request again.
+ */
+@Component
+@ConditionalOnProperty(name = "idempotency.enabled", havingValue = "true", matchIfMissing = true)
+public class IdempotencyFilter extends OncePerRequestFilter {
+    public static final String KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+    // Marks a wait that timed out, as opposed to null for an abandoned claim
+    private static final IdempotencyStore.StoredResponse IN_PROGRESS =
+        new IdempotencyStore.StoredResponse(0, null, null, null);
+
+    private final IdempotencyStore store;
+    private final List<String> paths;
+    private final long inFlightWaitMillis;
+    private final Counter replays;
+
+    public IdempotencyFilter(MeterRegistry meterRegistry,
+                             @Value("${idempotency.paths:/messages,/register,/accounts/import}") List<String> paths,
+                             @Value("${idempotency.max-entries:100000}") int maxEntries,
+                             @Value("${idempotency.ttl-seconds:300}") long ttlSeconds,
+                             @Value("${idempotency.in-flight-wait-ms:10000}") long inFlightWaitMillis) {
+        this.store = new IdempotencyStore(maxEntries, TimeUnit.SECONDS.toNanos(ttlSeconds));
+        this.paths = List.copyOf(paths);
+        this.inFlightWaitMillis = inFlightWaitMillis;
+        this.replays = Counter.builder("idempotency.replays")
+            .description("Requests answered from a stored response instead of running again")
+            .register(meterRegistry);
+        Gauge.builder("idempotency.store.size", store, IdempotencyStore::size)
+            .description("Idempotency keys currently remembered")
+            .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod()) || request.getHeader(KEY_HEADER) == null
+            || !paths.contains(request.getRequestURI());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String header = request.getHeader(KEY_HEADER);
+        if (header.isEmpty() || header.length() > MAX_KEY_LENGTH) {
+            reject(response, HttpStatus.BAD_REQUEST, "Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters");
+            return;
+        }
+        String key = request.getRequestURI() + ' ' + header;
+        while (true) {
+            IdempotencyStore.Entry mine = store.claim(key);
+            if (mine == IdempotencyStore.FULL) {
+                response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+                reject(response, HttpStatus.SERVICE_UNAVAILABLE, "Too many requests with an Idempotency-Key are in progress");
+                return;
+            }
+            if (mine != null) {
+                run(request, response, chain, mine);
+                return;
+            }
+            IdempotencyStore.Entry existing = store.get(key);
+            if (existing == null) {
+                continue; // expired or abandoned in the meantime
+            }
+            IdempotencyStore.StoredResponse stored = await(existing);
+            if (stored == IN_PROGRESS) {
+                reject(response, HttpStatus.CONFLICT, "A request with this Idempotency-Key is still in progress");
+                return;
+            }
+            if (stored != null) {
+                if (!MessageDigest.isEqual(stored.getRequestHash(), new FingerprintingRequest(request).finish())) {
+                    reject(response, HttpStatus.UNPROCESSABLE_ENTITY,
+                        "Idempotency-Key was already used with a different request body");
+                    return;
+                }
+                replay(response, stored);
+                return;
+            }
+        }
+    }
+
+    private void run(HttpServletRequest request, HttpServletResponse response, FilterChain chain,
+                     IdempotencyStore.Entry entry) throws ServletException, IOException {
+        FingerprintingRequest fingerprinting = new FingerprintingRequest(request);
+        ContentCachingResponseWrapper capturing = new ContentCachingResponseWrapper(response);
+        boolean stored = false;
+        try {
+            chain.doFilter(fingerprinting, capturing);
+            int status = capturing.getStatus();
+            if (status < 500 && status != HttpStatus.TOO_MANY_REQUESTS.value()) {
+                store.complete(entry, new IdempotencyStore.StoredResponse(status, capturing.getContentType(),
+                    capturing.getContentAsByteArray(), fingerprinting.finish()));
+                stored = true;
+            }
+        } finally {
+            if (!stored) {
+                store.abandon(entry);
+            }
+            capturing.copyBodyToResponse();
+        }
+    }
+
+    private IdempotencyStore.StoredResponse await(IdempotencyStore.Entry entry) throws IOException {
+        try {
+            return entry.getResult().get(inFlightWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return IN_PROGRESS;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the original request", e);
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    private void replay(HttpServletResponse response, IdempotencyStore.StoredResponse stored) throws IOException {
+        replays.increment();
+        response.setStatus(stored.getStatus());
+        if (stored.getContentType() != null) {
+            response.setContentType(stored.getContentType());
+        }
+        response.setHeader(REPLAYED_HEADER, "true");
+        response.setContentLength(stored.getBody().length);
+        response.getOutputStream().write(stored.getBody());
+    }
+
+    private static void reject(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        byte[] body = ("{\"message\":\"" + message + "\",\"status\":\"" + status + "\"}").getBytes(StandardCharsets.UTF_8);
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.idempotency;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Recent idempotency keys and the responses they produced, bounded both by age and by count.
+ * Every entry lives for the same time-to-live, so insertion order is expiry order: a FIFO queue of entries
+ * is trimmed from its head on every claim, both of expired entries and of the oldest ones while the store is over
+ * capacity. A key is claimed before its request runs, so concurrent retries of a request still in progress find the
+ * claim and wait for its result instead of running it again. An abandoned claim is only marked dead in the queue and
+ * skipped when it reaches the head, so abandoning never scans the queue.
+ * A claim whose request is still running is never evicted, whatever its age or the store's size: a retry must find it.
+ * Trimming stops at such a head, and while that leaves the store at capacity new claims are refused with FULL.
+ */
+public class IdempotencyStore {
+    /**
+     * Returned by claim when the store is at capacity and its oldest entry is a request still running.
+     */
+    public static final Entry FULL = new Entry(null, 0);
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Entry> order = new ConcurrentLinkedQueue<>();
+    private final int maxEntries;
+    private final long ttlNanos;
+
+    public IdempotencyStore(int maxEntries, long ttlNanos) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlNanos;
+    }
+
+    /**
+     * A response captured for replay, with the hash of the request body that produced it.
+     */
+    public static final class StoredResponse {
+        private final int status;
+        private final String contentType;
+        private final byte[] body;
+        private final byte[] requestHash;
+
+        public StoredResponse(int status, String contentType, byte[] body, byte[] requestHash) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+            this.requestHash = requestHash;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public byte[] getRequestHash() {
+            return requestHash;
+        }
+    }
+
+    /**
+     * A claimed key. Its result completes with the stored response, or with null if the claim was abandoned.
+     */
+    public static final class Entry {
+        final String key;
+        final long createdAtNanos;
+        final CompletableFuture<StoredResponse> result = new CompletableFuture<>();
+        volatile boolean dead;
+
+        Entry(String key, long createdAtNanos) {
+            this.key = key;
+            this.createdAtNanos = createdAtNanos;
+        }
+
+        public CompletableFuture<StoredResponse> getResult() {
+            return result;
+        }
+    }
+
+    /**
+     * Claims a key for the caller, who must then complete or abandon it.
+     *
+     * @param key The scoped idempotency key
+     * @return The new entry, null if the key is already claimed, or FULL if there is no room for another claim
+     */
+    public Entry claim(String key) {
+        long now = System.nanoTime();
+        trim(now);
+        if (entries.size() >= maxEntries && !entries.containsKey(key)) {
+            return FULL;
+        }
+        Entry mine = new Entry(key, now);
+        if (entries.putIfAbsent(key, mine) != null) {
+            return null;
+        }
+        order.add(mine);
+        return mine;
+    }
+
+    /**
+     * @param key The scoped idempotency key
+     * @return The live entry for the key, finished or still running, or null if there is none
+     */
+    public Entry get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.result.isDone() && System.nanoTime() - entry.createdAtNanos > ttlNanos) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Stores the response of a claimed key and releases everyone waiting for it.
+     */
+    public void complete(Entry entry, StoredResponse response) {
+        entry.result.complete(response);
+    }
+
+    /**
+     * Drops a claim whose response must not be replayed, such as a server error, so the next retry runs afresh.
+     */
+    public void abandon(Entry entry) {
+        entry.dead = true;
+        entries.remove(entry.key, entry);
+        entry.result.complete(null);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void trim(long now) {
+        Entry head;
+        while ((head = order.peek()) != null) {
+            if (!head.dead) {
+                if (!head.result.isDone()
+                        || now - head.createdAtNanos <= ttlNanos && entries.size() < maxEntries) {
+                    return;
+                }
+            }
+            if (order.remove(head) && !head.dead) {
+                entries.remove(head.key, head);
+            }
+        }
+    }
+}
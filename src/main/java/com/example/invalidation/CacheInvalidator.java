@@ -0,0 +1,227 @@
+package com.example.invalidation;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Keeps node-local caches consistent across nodes.
+ * Services report what they changed; the keys are queued and a sender thread publishes them on the InvalidationBus,
+ * collecting everything recorded within invalidation.batch-window-ms (up to invalidation.max-batch distinct keys)
+ * into one batch. Keys reported together by one write are queued as one entry, so they always leave in the same
+ * batch however short the window; the window only decides how many writes share a batch. Batches from other nodes
+ * are handed to the handlers that services register, and the time from the oldest key being recorded to it being
+ * applied here is recorded as the cache.invalidation.propagation timer.
+ * Without an InvalidationBus bean (invalidation.enabled=false) every call returns immediately.
+ */
+@Component
+public class CacheInvalidator {
+    private static final Logger log = LoggerFactory.getLogger(CacheInvalidator.class);
+
+    private final InvalidationBus bus;
+    private final long nodeId = ThreadLocalRandom.current().nextLong();
+    private final long batchWindowNanos;
+    private final int maxBatch;
+    private final LinkedBlockingQueue<Pending> pending = new LinkedBlockingQueue<>();
+    private final List<Consumer<InvalidationKey>> handlers = new CopyOnWriteArrayList<>();
+    private final Timer propagation;
+    private final Counter sentBatches;
+    private final Counter sentKeys;
+    private final Counter receivedBatches;
+    private final Counter receivedKeys;
+    private Thread sender;
+    private volatile boolean running;
+
+    public CacheInvalidator(ObjectProvider<InvalidationBus> bus, MeterRegistry meterRegistry,
+                            @Value("${invalidation.batch-window-ms:2}") long batchWindowMillis,
+                            @Value("${invalidation.max-batch:256}") int maxBatch) {
+        this.bus = bus.getIfAvailable();
+        this.batchWindowNanos = TimeUnit.MILLISECONDS.toNanos(batchWindowMillis);
+        this.maxBatch = Math.min(Math.max(maxBatch, 1), InvalidationBatch.MAX_KEYS);
+        this.propagation = Timer.builder("cache.invalidation.propagation")
+            .description("Time from a cache key changing on another node to its invalidation being applied here")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        this.sentBatches = counter(meterRegistry, "cache.invalidation.batches", "sent");
+        this.sentKeys = counter(meterRegistry, "cache.invalidation.keys", "sent");
+        this.receivedBatches = counter(meterRegistry, "cache.invalidation.batches", "received");
+        this.receivedKeys = counter(meterRegistry, "cache.invalidation.keys", "received");
+    }
+
+    @PostConstruct
+    public void start() {
+        if (bus == null) {
+            return;
+        }
+        bus.subscribe(this::apply);
+        running = true;
+        sender = new Thread(this::sendLoop, "invalidation-sender");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    /**
+     * Publishes what is still queued and stops the sender.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (sender == null) {
+            return;
+        }
+        running = false;
+        sender.interrupt();
+        sender.join(1000);
+    }
+
+    public boolean isEnabled() {
+        return bus != null;
+    }
+
+    /**
+     * Registers a handler for invalidations coming from other nodes. Handlers run on the bus's receiving thread
+     * and must be quick.
+     */
+    public void onInvalidation(Consumer<InvalidationKey> handler) {
+        handlers.add(handler);
+    }
+
+    /**
+     * Reports that a message changed or disappeared.
+     */
+    public void invalidateMessage(Integer messageId) {
+        if (messageId != null) {
+            invalidate(List.of(InvalidationKey.message(messageId)));
+        }
+    }
+
+    /**
+     * Reports that an account, its message list or its stats changed.
+     */
+    public void invalidateAccount(Integer accountId) {
+        if (accountId != null) {
+            invalidate(List.of(InvalidationKey.account(accountId)));
+        }
+    }
+
+    /**
+     * Reports several keys changed by one write. They are published in the same batch unless there are more than
+     * invalidation.max-batch of them.
+     */
+    public void invalidate(Collection<InvalidationKey> keys) {
+        if (bus != null && !keys.isEmpty()) {
+            pending.offer(new Pending(List.copyOf(keys), System.currentTimeMillis()));
+        }
+    }
+
+    private void sendLoop() {
+        while (running) {
+            Pending first;
+            try {
+                first = pending.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+            Set<InvalidationKey> keys = new LinkedHashSet<>(first.keys);
+            long deadline = System.nanoTime() + batchWindowNanos;
+            try {
+                while (keys.size() < maxBatch) {
+                    Pending next = pending.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    keys.addAll(next.keys);
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            }
+            publishAll(first.recordedAtMillis, keys);
+        }
+        // Whatever was recorded before shutdown still goes out, without waiting for a window
+        Pending rest;
+        while ((rest = pending.poll()) != null) {
+            Set<InvalidationKey> keys = new LinkedHashSet<>(rest.keys);
+            long recordedAt = rest.recordedAtMillis;
+            while (keys.size() < maxBatch && (rest = pending.poll()) != null) {
+                keys.addAll(rest.keys);
+            }
+            publishAll(recordedAt, keys);
+        }
+    }
+
+    /**
+     * Publishes the keys in batches of at most invalidation.max-batch; only a write reporting more keys than that, or
+     * the last write to join a full batch, is split across batches.
+     */
+    private void publishAll(long recordedAtMillis, Set<InvalidationKey> keys) {
+        if (keys.size() <= maxBatch) {
+            publish(recordedAtMillis, keys);
+            return;
+        }
+        Set<InvalidationKey> batch = new LinkedHashSet<>();
+        for (InvalidationKey key : keys) {
+            batch.add(key);
+            if (batch.size() == maxBatch) {
+                publish(recordedAtMillis, batch);
+                batch = new LinkedHashSet<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            publish(recordedAtMillis, batch);
+        }
+    }
+
+    private void publish(long recordedAtMillis, Set<InvalidationKey> keys) {
+        try {
+            bus.publish(new InvalidationBatch(nodeId, recordedAtMillis, keys));
+            sentBatches.increment();
+            sentKeys.increment(keys.size());
+        } catch (RuntimeException e) {
+            log.warn("Could not publish {} invalidations", keys.size(), e);
+        }
+    }
+
+    private void apply(InvalidationBatch batch) {
+        if (batch.getOriginNode() == nodeId) {
+            return;
+        }
+        for (InvalidationKey key : batch.getKeys()) {
+            for (Consumer<InvalidationKey> handler : handlers) {
+                handler.accept(key);
+            }
+        }
+        receivedBatches.increment();
+        receivedKeys.increment(batch.getKeys().size());
+        propagation.record(Math.max(0, System.currentTimeMillis() - batch.getCreatedAtMillis()), TimeUnit.MILLISECONDS);
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String name, String direction) {
+        return Counter.builder(name).tag("direction", direction).register(meterRegistry);
+    }
+
+    private static final class Pending {
+        final List<InvalidationKey> keys;
+        final long recordedAtMillis;
+
+        Pending(List<InvalidationKey> keys, long recordedAtMillis) {
+            this.keys = keys;
+            this.recordedAtMillis = recordedAtMillis;
+        }
+    }
+}
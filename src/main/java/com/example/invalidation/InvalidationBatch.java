@@ -0,0 +1,86 @@
+package com.example.invalidation;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A batch of invalidations published by one node.
+ *
+ * Wire format (big-endian), 5 bytes per key:
+ * <pre>
+ * int magic, long originNode, long createdAtMillis, unsigned short keyCount, keyCount * (byte kind, int id)
+ * </pre>
+ * createdAtMillis is when the oldest key in the batch was recorded, so receivers can measure end-to-end propagation.
+ */
+public final class InvalidationBatch {
+    static final int MAGIC = 0x494E5642; // "INVB"
+    static final int HEADER_LENGTH = 4 + 8 + 8 + 2;
+    static final int KEY_LENGTH = 5;
+    /** The most keys one batch can carry and still fit in a single UDP datagram. */
+    public static final int MAX_KEYS = (65507 - HEADER_LENGTH) / KEY_LENGTH;
+
+    private final long originNode;
+    private final long createdAtMillis;
+    private final List<InvalidationKey> keys;
+
+    public InvalidationBatch(long originNode, long createdAtMillis, Collection<InvalidationKey> keys) {
+        if (keys.size() > MAX_KEYS) {
+            throw new IllegalArgumentException("At most " + MAX_KEYS + " keys per batch, got " + keys.size());
+        }
+        this.originNode = originNode;
+        this.createdAtMillis = createdAtMillis;
+        this.keys = List.copyOf(keys);
+    }
+
+    public long getOriginNode() {
+        return originNode;
+    }
+
+    public long getCreatedAtMillis() {
+        return createdAtMillis;
+    }
+
+    public List<InvalidationKey> getKeys() {
+        return keys;
+    }
+
+    public byte[] encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + keys.size() * KEY_LENGTH)
+            .putInt(MAGIC).putLong(originNode).putLong(createdAtMillis).putShort((short) keys.size());
+        for (InvalidationKey key : keys) {
+            buffer.put((byte) key.getKind().ordinal()).putInt(key.getId());
+        }
+        return buffer.array();
+    }
+
+    /**
+     * @param buffer The encoded batch
+     * @return The decoded batch
+     * @throws IllegalArgumentException if the bytes are not an invalidation batch
+     */
+    public static InvalidationBatch decode(ByteBuffer buffer) {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IllegalArgumentException("Not an invalidation batch");
+            }
+            long originNode = buffer.getLong();
+            long createdAtMillis = buffer.getLong();
+            int count = Short.toUnsignedInt(buffer.getShort());
+            InvalidationKey.Kind[] kinds = InvalidationKey.Kind.values();
+            List<InvalidationKey> keys = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int kind = buffer.get();
+                if (kind < 0 || kind >= kinds.length) {
+                    throw new IllegalArgumentException("Unknown invalidation kind " + kind);
+                }
+                keys.add(new InvalidationKey(kinds[kind], buffer.getInt()));
+            }
+            return new InvalidationBatch(originNode, createdAtMillis, keys);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated invalidation batch", e);
+        }
+    }
+}
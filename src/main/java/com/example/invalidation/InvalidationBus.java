@@ -0,0 +1,24 @@
+package com.example.invalidation;
+
+import java.io.Closeable;
+import java.util.function.Consumer;
+
+/**
+ * Carries invalidation batches between the nodes of a deployment.
+ * Delivery is best effort: a lost batch leaves another node's caches stale until that node's next periodic
+ * reconcile or the next write to the same keys. Implementations may also deliver a node's own batches back to it;
+ * CacheInvalidator ignores those.
+ * Provide an InvalidationBus bean to plug in another transport; UdpInvalidationBus is the built-in one.
+ */
+public interface InvalidationBus extends Closeable {
+
+    /**
+     * Sends a batch to every other node. Must not block for long, since it runs on the publishing thread.
+     */
+    void publish(InvalidationBatch batch);
+
+    /**
+     * Registers a listener for batches from other nodes. Listeners run on the bus's receiving thread.
+     */
+    void subscribe(Consumer<InvalidationBatch> listener);
+}
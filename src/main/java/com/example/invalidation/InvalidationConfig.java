@@ -0,0 +1,41 @@
+package com.example.invalidation;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates the UDP invalidation bus from invalidation.udp.* unless another InvalidationBus bean is defined.
+ * Only active when invalidation.enabled=true.
+ */
+@Configuration
+@ConditionalOnProperty(name = "invalidation.enabled", havingValue = "true")
+public class InvalidationConfig {
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean(InvalidationBus.class)
+    public UdpInvalidationBus udpInvalidationBus(@Value("${invalidation.udp.bind-address:127.0.0.1}") String bindAddress,
+                                                 @Value("${invalidation.udp.port:7300}") int port,
+                                                 @Value("${invalidation.udp.peers:}") List<String> peers) throws SocketException {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (String peer : peers) {
+            if (peer.isBlank()) {
+                continue;
+            }
+            int colon = peer.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("invalidation.udp.peers entries must be host:port, got " + peer);
+            }
+            addresses.add(new InetSocketAddress(peer.substring(0, colon).trim(),
+                Integer.parseInt(peer.substring(colon + 1).trim())));
+        }
+        return new UdpInvalidationBus(new InetSocketAddress(bindAddress, port), addresses);
+    }
+}
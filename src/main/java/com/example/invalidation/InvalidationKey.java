@@ -0,0 +1,57 @@
+package com.example.invalidation;
+
+import java.util.Objects;
+
+/**
+ * One cached thing that changed: a message by its ID, or everything cached about an account
+ * (its message list and its stats) by the account ID.
+ */
+public final class InvalidationKey {
+    public enum Kind { MESSAGE, ACCOUNT }
+
+    private final Kind kind;
+    private final int id;
+
+    public InvalidationKey(Kind kind, int id) {
+        this.kind = kind;
+        this.id = id;
+    }
+
+    public static InvalidationKey message(int messageId) {
+        return new InvalidationKey(Kind.MESSAGE, messageId);
+    }
+
+    public static InvalidationKey account(int accountId) {
+        return new InvalidationKey(Kind.ACCOUNT, accountId);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof InvalidationKey)) {
+            return false;
+        }
+        InvalidationKey other = (InvalidationKey) obj;
+        return kind == other.kind && id == other.id;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(kind, id);
+    }
+
+    @Override
+    public String toString() {
+        return kind + ":" + id;
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.invalidation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Sends every batch as one UDP datagram to a fixed list of peers and listens for theirs on its own socket.
+ * Meant for a handful of nodes on one host or network, and for tests, where every node is on the loopback interface.
+ */
+public class UdpInvalidationBus implements InvalidationBus {
+    private static final Logger log = LoggerFactory.getLogger(UdpInvalidationBus.class);
+
+    private final DatagramSocket socket;
+    private final List<InetSocketAddress> peers;
+    private final List<Consumer<InvalidationBatch>> listeners = new CopyOnWriteArrayList<>();
+    private final Thread receiver;
+    private volatile boolean closed;
+
+    /**
+     * @param bindAddress The local address and port to listen on
+     * @param peers The other nodes' listening addresses
+     * @throws SocketException if the socket cannot be bound
+     */
+    public UdpInvalidationBus(InetSocketAddress bindAddress, List<InetSocketAddress> peers) throws SocketException {
+        this.socket = new DatagramSocket(bindAddress);
+        this.peers = List.copyOf(peers);
+        this.receiver = new Thread(this::receive, "invalidation-receiver");
+        this.receiver.setDaemon(true);
+        this.receiver.start();
+    }
+
+    @Override
+    public void publish(InvalidationBatch batch) {
+        byte[] data = batch.encode();
+        for (InetSocketAddress peer : peers) {
+            try {
+                socket.send(new DatagramPacket(data, data.length, peer));
+            } catch (IOException e) {
+                if (!closed) {
+                    log.warn("Could not send {} invalidations to {}", batch.getKeys().size(), peer, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<InvalidationBatch> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @return The port this node listens on
+     */
+    public int getLocalPort() {
+        return socket.getLocalPort();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        socket.close();
+    }
+
+    private void receive() {
+        byte[] buffer = new byte[65535];
+        while (!closed) {
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            try {
+                socket.receive(packet);
+            } catch (IOException e) {
+                if (!closed) {
+                    log.warn("Invalidation receiver failed, stopping", e);
+                }
+                return;
+            }
+            InvalidationBatch batch;
+            try {
+                batch = InvalidationBatch.decode(ByteBuffer.wrap(packet.getData(), packet.getOffset(), packet.getLength()));
+            } catch (IllegalArgumentException e) {
+                log.debug("Ignoring datagram from {}: {}", packet.getSocketAddress(), e.getMessage());
+                continue;
+            }
+            for (Consumer<InvalidationBatch> listener : listeners) {
+                try {
+                    listener.accept(batch);
+                } catch (RuntimeException e) {
+                    log.warn("Invalidation listener failed", e);
+                }
+            }
+        }
+    }
+}
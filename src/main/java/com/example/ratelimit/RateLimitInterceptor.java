@@ -0,0 +1,28 @@
+package com.example.ratelimit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Enforces the per-client limit on message writes before the request body is bound.
+ * Only POST and PATCH requests are limited; reads pass straight through.
+ */
+@Component
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    @Autowired
+    private RateLimitService rateLimitService;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        String method = request.getMethod();
+        if ("POST".equals(method) || "PATCH".equals(method)) {
+            rateLimitService.checkClient(request.getRemoteAddr());
+        }
+        return true;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.ratelimit;
+
+import com.example.exception.RateLimitExceededException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies the per-account and per-client write limits.
+ * Each check takes one token from the matching bucket and throws RateLimitExceededException when it is empty.
+ */
+@Service
+public class RateLimitService {
+    private final boolean enabled;
+    private final TokenBucketRateLimiter accountLimiter;
+    private final TokenBucketRateLimiter clientLimiter;
+
+    public RateLimitService(@Value("${ratelimit.enabled:true}") boolean enabled,
+                            @Value("${ratelimit.account.capacity:20}") int accountCapacity,
+                            @Value("${ratelimit.account.refill-per-second:10}") double accountRefill,
+                            @Value("${ratelimit.ip.capacity:100}") int ipCapacity,
+                            @Value("${ratelimit.ip.refill-per-second:50}") double ipRefill,
+                            @Value("${ratelimit.idle-eviction-seconds:60}") long idleEvictionSeconds) {
+        this.enabled = enabled;
+        this.accountLimiter = new TokenBucketRateLimiter(accountCapacity, accountRefill, idleEvictionSeconds);
+        this.clientLimiter = new TokenBucketRateLimiter(ipCapacity, ipRefill, idleEvictionSeconds);
+    }
+
+    /**
+     * Takes one token from the bucket of the given account.
+     *
+     * @param accountId The ID of the account performing the write
+     * @throws RateLimitExceededException if the account has no tokens left
+     */
+    public void checkAccount(Integer accountId) {
+        if (enabled && accountId != null) {
+            check(accountLimiter, "account:" + accountId, "Too many writes for this account");
+        }
+    }
+
+    /**
+     * Takes one token from the bucket of the given client address.
+     *
+     * @param remoteAddress The address the request came from
+     * @throws RateLimitExceededException if the client has no tokens left
+     */
+    public void checkClient(String remoteAddress) {
+        if (enabled && remoteAddress != null) {
+            check(clientLimiter, remoteAddress, "Too many writes from this client");
+        }
+    }
+
+    private static void check(TokenBucketRateLimiter limiter, String key, String message) {
+        long waitNanos = limiter.tryAcquire(key);
+        if (waitNanos > 0) {
+            long retryAfter = Math.max(1L, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+            throw new RateLimitExceededException(message, retryAfter);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.ratelimit;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket keyed by an arbitrary string (account id, client address, ...).
+ * Each bucket is a single AtomicLong holding its "theoretical arrival time" (the GCRA form of a
+ * token bucket), so taking a token is one read and one compare-and-set with no allocation on the hot path.
+ * Buckets live in a ConcurrentHashMap, which stripes its locking per bin, and buckets that have been
+ * idle long enough to be full again are evicted opportunistically by whichever caller passes the sweep deadline.
+ */
+public class TokenBucketRateLimiter {
+    private final long emissionIntervalNanos;
+    private final long burstNanos;
+    private final long idleEvictionNanos;
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong nextSweep;
+
+    /**
+     * Creates a limiter in which every key gets its own bucket.
+     *
+     * @param capacity The maximum number of tokens a bucket can hold (the allowed burst)
+     * @param refillPerSecond The number of tokens added to a bucket per second
+     * @param idleEvictionSeconds How long a full bucket may sit unused before it is dropped from the map
+     */
+    public TokenBucketRateLimiter(int capacity, double refillPerSecond, long idleEvictionSeconds) {
+        if (capacity < 1 || refillPerSecond <= 0) {
+            throw new IllegalArgumentException("capacity must be >= 1 and refillPerSecond must be > 0");
+        }
+        this.emissionIntervalNanos = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / refillPerSecond));
+        this.burstNanos = emissionIntervalNanos * capacity;
+        this.idleEvictionNanos = TimeUnit.SECONDS.toNanos(idleEvictionSeconds);
+        this.nextSweep = new AtomicLong(System.nanoTime() + idleEvictionNanos);
+    }
+
+    /**
+     * Attempts to take one token from the bucket of the given key.
+     *
+     * @param key The key identifying the bucket
+     * @return 0 if a token was taken, otherwise the number of nanoseconds until one becomes available
+     */
+    public long tryAcquire(String key) {
+        long now = System.nanoTime();
+        AtomicLong arrival = buckets.get(key);
+        if (arrival == null) {
+            arrival = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        }
+        for (;;) {
+            long current = arrival.get();
+            long next = (current - now > 0 ? current : now) + emissionIntervalNanos;
+            long overdraft = next - now - burstNanos;
+            if (overdraft > 0) {
+                return overdraft;
+            }
+            if (arrival.compareAndSet(current, next)) {
+                sweepIfDue(now);
+                return 0L;
+            }
+        }
+    }
+
+    /**
+     * @return The number of buckets currently tracked
+     */
+    public int size() {
+        return buckets.size();
+    }
+
+    /**
+     * Drops buckets that have been full for longer than the idle eviction period.
+     * A full bucket is indistinguishable from a new one, so removing it does not change any caller's allowance.
+     */
+    private void sweepIfDue(long now) {
+        long deadline = nextSweep.get();
+        if (now - deadline < 0 || !nextSweep.compareAndSet(deadline, now + idleEvictionNanos)) {
+            return;
+        }
+        buckets.entrySet().removeIf(entry -> now - entry.getValue().get() > idleEvictionNanos);
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.repository;
+
+/**
+ * Projection of an account's ID and username, without the password, used to load the username index.
+ */
+public interface AccountName {
+    Integer getAccountId();
+
+    String getUsername();
+}
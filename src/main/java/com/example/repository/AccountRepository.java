@@ -1,9 +1,15 @@
 package com.example.repository;
 
+import com.example.config.AccountCacheConfig;
 import com.example.entity.Account;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.List;
+
 /**
  * Repository interface for Account entity operations.
  * Provides CRUD operations for Account entities and custom query methods.
@@ -11,10 +17,29 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface AccountRepository extends JpaRepository<Account, Integer> {
     /**
-     * Finds an account by its username.
+     * Finds an account by its username. Results, including "not found", are kept in the account-by-username query
+     * region until the account table changes.
      * 
      * @param username The username to search for
      * @return The account with the matching username, or null if not found
      */
+    @QueryHints({@QueryHint(name = org.hibernate.annotations.QueryHints.CACHEABLE, value = "true"),
+        @QueryHint(name = org.hibernate.annotations.QueryHints.CACHE_REGION, value = AccountCacheConfig.USERNAME_REGION)})
     Account findByUsername(String username);
+
+    /**
+     * Lists every account's ID and username, for building the in-memory username index.
+     *
+     * @return One entry per account, in no particular order
+     */
+    @Query("SELECT a.accountId AS accountId, a.username AS username FROM Account a")
+    List<AccountName> findAllNames();
+
+    /**
+     * Counts the accounts and sums their IDs in one pass.
+     *
+     * @return The totals; the highest ID and the sum are null when there are no accounts
+     */
+    @Query("SELECT COUNT(a) AS accounts, MAX(a.accountId) AS maxAccountId, SUM(a.accountId) AS accountIdSum FROM Account a")
+    AccountTotals findTotals();
 } 
@@ -0,0 +1,13 @@
+package com.example.repository;
+
+/**
+ * Count, highest ID and sum of the IDs of the stored accounts, used to check that a copy of the account list (such as
+ * the change log's) still matches the table.
+ */
+public interface AccountTotals {
+    long getAccounts();
+
+    Integer getMaxAccountId();
+
+    Long getAccountIdSum();
+}
@@ -0,0 +1,33 @@
+package com.example.repository;
+
+import com.example.dto.MessageFields;
+import com.example.dto.SparseMessage;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Message queries that select only the columns a client asked for, rather than whole entities.
+ * Implemented by MessageFieldsRepositoryImpl and mixed into MessageRepository.
+ */
+public interface MessageFieldsRepository {
+    /**
+     * @param fields The columns to select
+     * @return Every message, narrowed to fields
+     */
+    List<SparseMessage> findAllFields(MessageFields fields);
+
+    /**
+     * @param fields The columns to select
+     * @param accountId The ID of the poster
+     * @return The account's messages, narrowed to fields
+     */
+    List<SparseMessage> findFieldsByPostedBy(MessageFields fields, Integer accountId);
+
+    /**
+     * @param fields The columns to select
+     * @param messageIds The IDs of the messages
+     * @return The messages found, narrowed to fields, in no particular order
+     */
+    List<SparseMessage> findFieldsByIds(MessageFields fields, Collection<Integer> messageIds);
+}
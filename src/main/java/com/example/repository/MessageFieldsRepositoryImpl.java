@@ -0,0 +1,58 @@
+package com.example.repository;
+
+import com.example.dto.MessageFields;
+import com.example.dto.SparseMessage;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Builds a JPQL select list from the requested fields. The message ID is always selected first, since callers
+ * merge shards and tiers by it; the field names come from MessageFields' fixed set, never from the request as is.
+ * Results are read as Object[] rows, so no entity is loaded into the persistence context.
+ */
+public class MessageFieldsRepositoryImpl implements MessageFieldsRepository {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<SparseMessage> findAllFields(MessageFields fields) {
+        return rows(fields, query(fields, ""));
+    }
+
+    @Override
+    public List<SparseMessage> findFieldsByPostedBy(MessageFields fields, Integer accountId) {
+        TypedQuery<Object[]> query = query(fields, " WHERE m.postedBy = :accountId");
+        query.setParameter("accountId", accountId);
+        return rows(fields, query);
+    }
+
+    @Override
+    public List<SparseMessage> findFieldsByIds(MessageFields fields, Collection<Integer> messageIds) {
+        TypedQuery<Object[]> query = query(fields, " WHERE m.messageId IN :messageIds");
+        query.setParameter("messageIds", messageIds);
+        return rows(fields, query);
+    }
+
+    private TypedQuery<Object[]> query(MessageFields fields, String where) {
+        StringBuilder jpql = new StringBuilder("SELECT m.messageId");
+        for (int i = 0; i < fields.size(); i++) {
+            jpql.append(", m.").append(fields.name(i));
+        }
+        jpql.append(" FROM Message m").append(where);
+        return entityManager.createQuery(jpql.toString(), Object[].class);
+    }
+
+    private static List<SparseMessage> rows(MessageFields fields, TypedQuery<Object[]> query) {
+        List<Object[]> rows = query.getResultList();
+        List<SparseMessage> messages = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            messages.add(new SparseMessage(fields, row));
+        }
+        return messages;
+    }
+}
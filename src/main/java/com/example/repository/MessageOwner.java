@@ -0,0 +1,10 @@
+package com.example.repository;
+
+/**
+ * Projection of a message's ID and poster, all a purge needs to keep the counters and caches in step.
+ */
+public interface MessageOwner {
+    Integer getMessageId();
+
+    Integer getPostedBy();
+}
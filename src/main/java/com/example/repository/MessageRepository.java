@@ -2,15 +2,20 @@ package com.example.repository;
 
 import com.example.entity.Message;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Repository interface for Message entity operations.
  * Provides CRUD operations for Message entities and custom query methods.
  */
 @Repository
-public interface MessageRepository extends JpaRepository<Message, Integer> {
+public interface MessageRepository extends JpaRepository<Message, Integer>, MessageFieldsRepository {
     /**
      * Retrieves all messages posted by a specific account.
      * 
@@ -18,4 +23,125 @@ public interface MessageRepository extends JpaRepository<Message, Integer> {
      * @return A list of messages posted by the specified account
      */
     List<Message> findByPostedBy(Integer accountId);
-} 
+
+    /**
+     * Deletes up to chunkSize messages posted by a specific account in a single statement.
+     * Runs in its own short transaction so a large purge never holds locks for long.
+     * The IDs of the deleted rows are read back from the same statement.
+     *
+     * @param accountId The ID of the account whose messages to delete
+     * @param chunkSize The maximum number of rows to delete
+     * @return The IDs of the deleted rows
+     */
+    @Transactional
+    @Query(value = "SELECT messageId FROM OLD TABLE (DELETE FROM message WHERE messageId IN "
+        + "(SELECT messageId FROM message WHERE postedBy = :accountId ORDER BY messageId LIMIT :chunkSize))",
+        nativeQuery = true)
+    List<Integer> deleteChunkByPostedBy(@Param("accountId") Integer accountId, @Param("chunkSize") int chunkSize);
+
+    /**
+     * Counts messages and finds the latest post time for every account that has posted.
+     * 
+     * @return One row per posting account
+     */
+    @Query("SELECT m.postedBy AS postedBy, COUNT(m) AS messageCount, MAX(m.timePostedEpoch) AS lastPostedEpoch "
+        + "FROM Message m GROUP BY m.postedBy")
+    List<PostingStats> aggregateByPostedBy();
+
+    /**
+     * Counts one account's messages and finds its latest post time.
+     *
+     * @param accountId The ID of the account
+     * @return One row, or none if the account has no messages
+     */
+    @Query("SELECT m.postedBy AS postedBy, COUNT(m) AS messageCount, MAX(m.timePostedEpoch) AS lastPostedEpoch "
+        + "FROM Message m WHERE m.postedBy = :accountId GROUP BY m.postedBy")
+    List<PostingStats> aggregateForPostedBy(@Param("accountId") Integer accountId);
+
+    /**
+     * Retrieves the oldest-by-ID messages posted before a cutoff with their versions, for archiving.
+     *
+     * @param cutoffEpoch Only messages posted strictly before this epoch second are returned
+     * @param limit The batch size
+     * @return Up to limit message rows, in messageId order
+     */
+    @Query(value = "SELECT messageId AS \"messageId\", postedBy AS \"postedBy\", messageText AS \"messageText\", "
+        + "timePostedEpoch AS \"timePostedEpoch\", version AS \"version\" FROM message "
+        + "WHERE timePostedEpoch < :cutoffEpoch ORDER BY messageId LIMIT :limit", nativeQuery = true)
+    List<MessageWithVersion> findWithVersionPostedBefore(@Param("cutoffEpoch") long cutoffEpoch, @Param("limit") int limit);
+
+    /**
+     * Deletes up to chunkSize of the oldest messages posted before a cutoff in a single statement, for retention.
+     * The inner query walks the timePostedEpoch index in order and stops at chunkSize rows; the deleted rows are read
+     * back from the same statement, so a row deleted concurrently by someone else is never reported twice.
+     *
+     * @param cutoffEpoch Only messages posted strictly before this epoch second are deleted
+     * @param chunkSize The maximum number of rows to delete
+     * @return The deleted rows
+     */
+    @Transactional
+    @Query(value = "SELECT messageId AS \"messageId\", postedBy AS \"postedBy\" FROM OLD TABLE (DELETE FROM message "
+        + "WHERE messageId IN (SELECT messageId FROM message WHERE timePostedEpoch < :cutoffEpoch "
+        + "ORDER BY timePostedEpoch LIMIT :chunkSize))", nativeQuery = true)
+    List<MessageOwner> deleteChunkPostedBefore(@Param("cutoffEpoch") long cutoffEpoch, @Param("chunkSize") int chunkSize);
+
+    /**
+     * Deletes the given messages in a single statement.
+     *
+     * @param messageIds The IDs of the messages to delete
+     * @return The number of rows deleted
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM Message m WHERE m.messageId IN :messageIds")
+    int deleteByMessageIdIn(@Param("messageIds") List<Integer> messageIds);
+
+    /**
+     * Inserts a message with an explicit ID and version, bypassing the ID generator.
+     * Used to move an archived message back into the table under its original ID.
+     *
+     * @return The number of rows inserted
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO message (messageId, postedBy, messageText, timePostedEpoch, version) "
+        + "VALUES (:messageId, :postedBy, :messageText, :timePostedEpoch, :version)", nativeQuery = true)
+    int insertWithId(@Param("messageId") Integer messageId, @Param("postedBy") Integer postedBy,
+                     @Param("messageText") String messageText, @Param("timePostedEpoch") Long timePostedEpoch,
+                     @Param("version") long version);
+
+    /**
+     * Retrieves a message together with its version.
+     *
+     * @param messageId The ID of the message
+     * @return The message row, or empty if it is not in the table
+     */
+    @Query(value = "SELECT messageId AS \"messageId\", postedBy AS \"postedBy\", messageText AS \"messageText\", "
+        + "timePostedEpoch AS \"timePostedEpoch\", version AS \"version\" FROM message WHERE messageId = :messageId",
+        nativeQuery = true)
+    Optional<MessageWithVersion> findWithVersionById(@Param("messageId") Integer messageId);
+
+    /**
+     * Same as findWithVersionById, but locks the row until the surrounding transaction ends.
+     * Only used when messages.update.locking=pessimistic.
+     */
+    @Query(value = "SELECT messageId AS \"messageId\", postedBy AS \"postedBy\", messageText AS \"messageText\", "
+        + "timePostedEpoch AS \"timePostedEpoch\", version AS \"version\" FROM message WHERE messageId = :messageId "
+        + "FOR UPDATE", nativeQuery = true)
+    Optional<MessageWithVersion> findWithVersionByIdForUpdate(@Param("messageId") Integer messageId);
+
+    /**
+     * Replaces a message's text if its version is still the expected one, and moves it to the next version.
+     *
+     * @param messageId The ID of the message
+     * @param messageText The new text
+     * @param version The version the caller read
+     * @return 1 if the message was updated, 0 if it is gone or another edit got there first
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE message SET messageText = :messageText, version = version + 1 "
+        + "WHERE messageId = :messageId AND version = :version", nativeQuery = true)
+    int updateTextIfVersion(@Param("messageId") Integer messageId, @Param("messageText") String messageText,
+                            @Param("version") long version);
+}
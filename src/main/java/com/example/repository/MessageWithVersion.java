@@ -0,0 +1,17 @@
+package com.example.repository;
+
+/**
+ * A message row together with its version column, which the Message entity does not map.
+ * The version starts at 0 and goes up by one with every edit.
+ */
+public interface MessageWithVersion {
+    Integer getMessageId();
+
+    Integer getPostedBy();
+
+    String getMessageText();
+
+    Long getTimePostedEpoch();
+
+    Long getVersion();
+}
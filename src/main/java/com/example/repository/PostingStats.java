@@ -0,0 +1,12 @@
+package com.example.repository;
+
+/**
+ * Projection of the per-account message aggregate used to reconcile the in-memory counters.
+ */
+public interface PostingStats {
+    Integer getPostedBy();
+
+    Long getMessageCount();
+
+    Long getLastPostedEpoch();
+}
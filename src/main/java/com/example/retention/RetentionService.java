@@ -0,0 +1,112 @@
+package com.example.retention;
+
+import com.example.service.MessageService;
+import com.example.sharding.MessageShards;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enforces a retention window: messages posted more than retention.max-age-days ago are removed from both tiers.
+ * Archived messages sit in cold segments that each cover one archive.bucket-days time bucket, so an expired bucket is
+ * dropped by deleting its files. Rows still in the message table are deleted oldest first in chunks of
+ * retention.chunk-size, each in its own short transaction, with a pause of retention.chunk-pause-ms between chunks so
+ * live requests get the table in between.
+ * Publishes messages.retention.purged (per tier) and the messages.retention.chunk timer; each pass logs its rows per
+ * second. Only active when retention.enabled=true.
+ */
+@Service
+@ConditionalOnProperty(name = "retention.enabled", havingValue = "true")
+public class RetentionService {
+    private static final Logger log = LoggerFactory.getLogger(RetentionService.class);
+
+    private final MessageService messageService;
+    private final MessageShards messageShards;
+    private final long maxAgeSeconds;
+    private final int chunkSize;
+    private final long chunkPauseMillis;
+    private final Counter hotPurged;
+    private final Counter coldPurged;
+    private final Timer chunkTimer;
+
+    public RetentionService(MessageService messageService, MessageShards messageShards, MeterRegistry meterRegistry,
+                            @Value("${retention.max-age-days:365}") long maxAgeDays,
+                            @Value("${retention.chunk-size:1000}") int chunkSize,
+                            @Value("${retention.chunk-pause-ms:10}") long chunkPauseMillis) {
+        this.messageService = messageService;
+        this.messageShards = messageShards;
+        this.maxAgeSeconds = maxAgeDays * 24 * 60 * 60;
+        this.chunkSize = chunkSize;
+        this.chunkPauseMillis = chunkPauseMillis;
+        this.hotPurged = meterRegistry.counter("messages.retention.purged", "tier", "hot");
+        this.coldPurged = meterRegistry.counter("messages.retention.purged", "tier", "cold");
+        this.chunkTimer = meterRegistry.timer("messages.retention.chunk");
+    }
+
+    @Scheduled(initialDelayString = "${retention.interval-ms:3600000}", fixedDelayString = "${retention.interval-ms:3600000}")
+    public void enforce() {
+        try {
+            purge();
+        } catch (IOException e) {
+            log.error("Retention stopped, expired cold segments are kept until the next run", e);
+        }
+    }
+
+    /**
+     * Removes every message older than the retention window.
+     *
+     * @return The number of messages removed from both tiers
+     * @throws IOException if an expired segment cannot be deleted
+     */
+    public synchronized long purge() throws IOException {
+        long cutoff = Instant.now().getEpochSecond() - maxAgeSeconds;
+        long start = System.nanoTime();
+        long dropped = messageService.purgeColdSegments(cutoff);
+        coldPurged.increment(dropped);
+
+        long deleted = 0;
+        for (int shard = 0; shard < messageShards.getShardCount(); shard++) {
+            int purged;
+            do {
+                long chunkStart = System.nanoTime();
+                purged = messageService.purgeChunk(shard, cutoff, chunkSize);
+                chunkTimer.record(System.nanoTime() - chunkStart, TimeUnit.NANOSECONDS);
+                hotPurged.increment(purged);
+                deleted += purged;
+            } while (purged == chunkSize && pause());
+        }
+
+        long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        if (dropped + deleted > 0) {
+            log.info("Retention removed {} archived and {} hot messages posted before {} in {} ms ({} rows/s)",
+                dropped, deleted, Instant.ofEpochSecond(cutoff), elapsedMillis, (dropped + deleted) * 1000 / elapsedMillis);
+        }
+        return dropped + deleted;
+    }
+
+    /**
+     * @return False if the thread was interrupted, which ends the pass
+     */
+    private boolean pause() {
+        if (chunkPauseMillis <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(chunkPauseMillis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -1,9 +1,19 @@
 package com.example.service;
 
+import com.example.changelog.ChangeLog;
+import com.example.config.AccountCacheConfig;
+import com.example.dto.ChangeEvent;
 import com.example.entity.Account;
+import com.example.invalidation.CacheInvalidator;
+import com.example.invalidation.InvalidationKey;
 import com.example.repository.AccountRepository;
+import org.hibernate.Cache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
 import java.util.Optional;
 
 @Service
@@ -11,6 +21,33 @@ public class AccountService {
     
     @Autowired
     private AccountRepository accountRepository;
+
+    @Autowired
+    private CacheInvalidator cacheInvalidator;
+
+    @Autowired
+    private UsernameIndex usernameIndex;
+
+    @Autowired
+    private ChangeLog changeLog;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /**
+     * Drops this node's cached copy of an account another node wrote, along with every cached username lookup,
+     * since one of them may say the account's name is free.
+     */
+    @PostConstruct
+    public void registerInvalidationHandler() {
+        cacheInvalidator.onInvalidation(key -> {
+            if (key.getKind() == InvalidationKey.Kind.ACCOUNT) {
+                Cache cache = entityManagerFactory.getCache().unwrap(Cache.class);
+                cache.evictEntityData(Account.class, key.getId());
+                cache.evictQueryRegion(AccountCacheConfig.USERNAME_REGION);
+            }
+        });
+    }
     
     /**
      * Registers a new user account after validating the input data.
@@ -39,7 +76,11 @@ public class AccountService {
             return account;
         }
         
-        return accountRepository.save(account);
+        Account saved = accountRepository.save(account);
+        usernameIndex.add(saved.getAccountId(), saved.getUsername());
+        cacheInvalidator.invalidateAccount(saved.getAccountId());
+        changeLog.append(ChangeEvent.accountCreated(saved.getAccountId(), saved.getUsername()));
+        return saved;
     }
     
     /**
@@ -48,6 +89,7 @@ public class AccountService {
      * @param account The login credentials (username and password)
      * @return Optional containing the authenticated account if credentials are valid, empty otherwise
      */
+    @Transactional(readOnly = true)
     public Optional<Account> login(Account account) {
         Optional<Account> existingAccount = Optional.ofNullable(accountRepository.findByUsername(account.getUsername()));
         
@@ -60,6 +102,7 @@ public class AccountService {
      * @param accountId The ID of the account to retrieve
      * @return Optional containing the account with the specified ID, or empty if not found
      */
+    @Transactional(readOnly = true)
     public Optional<Account> getAccountById(Integer accountId) {
         return accountRepository.findById(accountId);
     }
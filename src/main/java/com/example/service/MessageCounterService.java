@@ -0,0 +1,238 @@
+package com.example.service;
+
+import com.example.archive.ColdStore;
+import com.example.dto.AccountStats;
+import com.example.invalidation.CacheInvalidator;
+import com.example.invalidation.InvalidationKey;
+import com.example.repository.MessageRepository;
+import com.example.repository.PostingStats;
+import com.example.sharding.MessageShards;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-account message counters kept in memory so stats never scan the message table.
+ * MessageService bumps them on every create and delete; each account's total is a LongAdder,
+ * so concurrent posters for the same account do not contend on one cache line.
+ * The counters are loaded from one GROUP BY query at startup and reconciled with the database periodically;
+ * archived messages are counted from the cold tier's segment indexes, and with sharding enabled the query runs on every shard.
+ * When another node reports that an account changed, that account's counter is marked stale and reloaded from the
+ * database in the background every messages.stats.stale-reload-interval-ms, so no read ever waits on a query.
+ * A running total over all accounts is kept next to the per-account counters, so counting every message is one read
+ * of a LongAdder rather than a COUNT over the table and the cold tier.
+ */
+@Service
+public class MessageCounterService implements SmartInitializingSingleton {
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private ColdStore coldStore;
+
+    @Autowired
+    private MessageShards messageShards;
+
+    @Autowired
+    private CacheInvalidator cacheInvalidator;
+
+    private final ConcurrentHashMap<Integer, Counter> counters = new ConcurrentHashMap<>();
+    private final LongAdder total = new LongAdder();
+    // Accounts changed by another node since their counter was last loaded
+    private final Set<Integer> stale = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Loads the counters before the web server starts accepting requests.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        cacheInvalidator.onInvalidation(key -> {
+            if (key.getKind() == InvalidationKey.Kind.ACCOUNT) {
+                stale.add(key.getId());
+            }
+        });
+        reconcile();
+    }
+
+    /**
+     * Records a new message for an account.
+     *
+     * @param accountId The ID of the poster
+     * @param timePostedEpoch The epoch time of the post
+     */
+    public void recordPost(Integer accountId, Long timePostedEpoch) {
+        Counter counter = counterFor(accountId);
+        counter.total.increment();
+        total.increment();
+        if (timePostedEpoch != null) {
+            counter.lastPosted.accumulateAndGet(timePostedEpoch, Math::max);
+        }
+    }
+
+    /**
+     * Records deleted messages for an account. The last post time is left as is until the next reconcile.
+     *
+     * @param accountId The ID of the poster
+     * @param deleted The number of messages removed
+     */
+    public void recordDelete(Integer accountId, long deleted) {
+        if (deleted > 0) {
+            counterFor(accountId).total.add(-deleted);
+            total.add(-deleted);
+        }
+    }
+
+    /**
+     * @param accountId The ID of the account
+     * @return The account's message count and last post time; zero and null if it has never posted
+     */
+    public AccountStats getStats(Integer accountId) {
+        Counter counter = counters.get(accountId);
+        if (counter == null) {
+            return new AccountStats(accountId, 0L, null);
+        }
+        return counter.toStats(accountId);
+    }
+
+    /**
+     * @return The number of messages across all accounts, archived ones included
+     */
+    public long getTotal() {
+        return total.sum();
+    }
+
+    /**
+     * Selects the accounts with the most messages using a bounded heap over the counters.
+     *
+     * @param limit The maximum number of accounts to return
+     * @return Up to limit accounts, highest message count first
+     */
+    public List<AccountStats> getTopPosters(int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        Comparator<AccountStats> byCount = Comparator.comparingLong(AccountStats::getMessageCount)
+            .thenComparing(AccountStats::getAccountId, Comparator.reverseOrder());
+        PriorityQueue<AccountStats> heap = new PriorityQueue<>(limit + 1, byCount);
+        counters.forEach((accountId, counter) -> {
+            AccountStats stats = counter.toStats(accountId);
+            if (stats.getMessageCount() <= 0) {
+                return;
+            }
+            heap.offer(stats);
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        });
+        List<AccountStats> top = new ArrayList<>(heap);
+        top.sort(byCount.reversed());
+        return top;
+    }
+
+    /**
+     * Brings the counters back in line with the database.
+     * An account whose counter moves while the aggregate query runs is skipped this round,
+     * since the query result may or may not include that write. The running total is corrected every round: writes
+     * recorded while the query ran are taken to be in its result, so they are subtracted from the difference instead
+     * of being counted twice. Only a write that commits after the query has read past it is left for the next round.
+     */
+    @Scheduled(initialDelayString = "${messages.stats.reconcile-interval-ms:60000}",
+        fixedDelayString = "${messages.stats.reconcile-interval-ms:60000}")
+    public void reconcile() {
+        Map<Integer, Long> before = new HashMap<>();
+        counters.forEach((accountId, counter) -> before.put(accountId, counter.total.sum()));
+        long totalBefore = total.sum();
+
+        // postedBy -> {messageCount, lastPostedEpoch}
+        Map<Integer, long[]> actual = coldStore.accountTotals();
+        List<PostingStats> hotStats = new ArrayList<>();
+        messageShards.onEveryShard(messageRepository::aggregateByPostedBy).forEach(hotStats::addAll);
+        for (PostingStats stats : hotStats) {
+            long[] hot = {stats.getMessageCount(),
+                stats.getLastPostedEpoch() == null ? Long.MIN_VALUE : stats.getLastPostedEpoch()};
+            actual.merge(stats.getPostedBy(), hot, (a, b) -> new long[] {a[0] + b[0], Math.max(a[1], b[1])});
+        }
+
+        long actualTotal = 0;
+        for (long[] stats : actual.values()) {
+            actualTotal += stats[0];
+        }
+        long recordedDuringQuery = total.sum() - totalBefore;
+        total.add(actualTotal - totalBefore - recordedDuringQuery);
+
+        actual.forEach((accountId, stats) -> {
+            Counter counter = counterFor(accountId);
+            long seen = before.getOrDefault(accountId, 0L);
+            if (counter.total.sum() == seen) {
+                counter.total.add(stats[0] - seen);
+                counter.lastPosted.set(stats[1]);
+            }
+        });
+        before.forEach((accountId, seen) -> {
+            Counter counter = counters.get(accountId);
+            if (!actual.containsKey(accountId) && counter != null && counter.total.sum() == seen) {
+                counters.remove(accountId, counter);
+            }
+        });
+    }
+
+    /**
+     * Replaces one account's counter with a fresh count from the database. A post or delete made on this node while
+     * the query runs may be missed; the next reconcile corrects it.
+     */
+    private void reload(Integer accountId) {
+        long[] actual = coldStore.accountTotal(accountId);
+        for (PostingStats stats : messageShards.onShardOf(accountId, () -> messageRepository.aggregateForPostedBy(accountId))) {
+            actual = new long[] {actual[0] + stats.getMessageCount(), Math.max(actual[1],
+                stats.getLastPostedEpoch() == null ? Long.MIN_VALUE : stats.getLastPostedEpoch())};
+        }
+        Counter previous;
+        if (actual[0] == 0) {
+            previous = counters.remove(accountId);
+        } else {
+            Counter counter = new Counter();
+            counter.total.add(actual[0]);
+            counter.lastPosted.set(actual[1]);
+            previous = counters.put(accountId, counter);
+        }
+        total.add(actual[0] - (previous == null ? 0 : previous.total.sum()));
+    }
+
+    /**
+     * Reloads the counters of the accounts other nodes have changed since the last run.
+     */
+    @Scheduled(fixedDelayString = "${messages.stats.stale-reload-interval-ms:250}")
+    public void reloadStale() {
+        stale.forEach(accountId -> {
+            if (stale.remove(accountId)) {
+                reload(accountId);
+            }
+        });
+    }
+
+    private Counter counterFor(Integer accountId) {
+        return counters.computeIfAbsent(accountId, id -> new Counter());
+    }
+
+    private static final class Counter {
+        final LongAdder total = new LongAdder();
+        final AtomicLong lastPosted = new AtomicLong(Long.MIN_VALUE);
+
+        AccountStats toStats(Integer accountId) {
+            long last = lastPosted.get();
+            return new AccountStats(accountId, total.sum(), last == Long.MIN_VALUE ? null : last);
+        }
+    }
+}
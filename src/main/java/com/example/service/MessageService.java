@@ -1,13 +1,48 @@
 package com.example.service;
 
+import com.example.archive.ColdStore;
+import com.example.changelog.ChangeLog;
+import com.example.datasource.ReadRouting;
+import com.example.dto.ChangeEvent;
+import com.example.dto.MessageFields;
+import com.example.dto.SparseMessage;
+import com.example.dto.VersionedMessage;
 import com.example.entity.Account;
 import com.example.entity.Message;
+import com.example.exception.InvalidMessageException;
+import com.example.exception.UpdateConflictException;
+import com.example.exception.VersionMismatchException;
+import com.example.invalidation.CacheInvalidator;
+import com.example.invalidation.InvalidationKey;
+import com.example.ratelimit.RateLimitService;
+import com.example.repository.MessageOwner;
 import com.example.repository.MessageRepository;
+import com.example.repository.MessageWithVersion;
+import com.example.sharding.MessageShards;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.time.Instant;
 
 @Service
@@ -18,6 +53,70 @@ public class MessageService {
     @Autowired
     private AccountService accountService;
 
+    @Autowired
+    private RateLimitService rateLimitService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private MessageCounterService messageCounterService;
+
+    @Autowired
+    private ColdStore coldStore;
+
+    @Autowired
+    private MessageShards messageShards;
+
+    @Autowired
+    private CacheInvalidator cacheInvalidator;
+
+    @Autowired
+    private ChangeLog changeLog;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${messages.bulk-delete.chunk-size:1000}")
+    private int bulkDeleteChunkSize;
+
+    @Value("${messages.multi-get.max-ids:1000}")
+    private int multiGetMaxIds;
+
+    @Value("${messages.update.max-retries:10}")
+    private int updateMaxRetries;
+
+    // Upper bound of the random pause before the first retry; doubles with each further retry
+    @Value("${messages.update.retry-backoff-ms:1}")
+    private long updateRetryBackoffMillis;
+
+    // optimistic: compare-and-set on the version column; pessimistic: SELECT ... FOR UPDATE, then write
+    @Value("${messages.update.locking:optimistic}")
+    private String updateLocking;
+
+    // Concurrent reads of the same hot key share one repository call. A read that may go to the replica never shares
+    // a load with one pinned to the primary, which must see the caller's own writes.
+    private final SingleFlight<Integer, Optional<VersionedMessage>> messageFlights =
+        new SingleFlight<>(ReadRouting::isReplicaAllowed);
+    private final SingleFlight<Integer, List<Message>> accountFlights = new SingleFlight<>(ReadRouting::isReplicaAllowed);
+
+    /**
+     * Publishes the single-flight counters alongside the other application metrics, and detaches in-flight loads
+     * of keys that another node has changed.
+     */
+    @PostConstruct
+    public void registerMetrics() {
+        messageFlights.bindTo(meterRegistry, "messageId");
+        accountFlights.bindTo(meterRegistry, "accountId");
+        cacheInvalidator.onInvalidation(key -> {
+            if (key.getKind() == InvalidationKey.Kind.MESSAGE) {
+                messageFlights.forget(key.getId());
+            } else {
+                accountFlights.forget(key.getId());
+            }
+        });
+    }
+
      /**
      * Creates a new message after validating the input data.
      * Validates message text (not empty, max 255 chars) and verifies the poster exists.
@@ -25,6 +124,7 @@ public class MessageService {
      * 
      * @param message The message to create
      * @return Optional containing the created message with generated ID, or empty if validation fails
+     * @throws com.example.exception.RateLimitExceededException if the poster has exceeded its write limit
      */
     public Optional<Message> createMessage(Message message) {
         // Validate message text
@@ -44,81 +144,534 @@ public class MessageService {
         if (existingAccount.isEmpty()) {
             return Optional.empty();
         }
+        rateLimitService.checkAccount(postedById);
         
         // Set current time if not provided
         if (message.getTimePostedEpoch() == null) {
             message.setTimePostedEpoch(Instant.now().getEpochSecond());
         }
         
-        return Optional.of(messageRepository.save(message));
+        Message saved = changeLog.inOrder(postedById, () -> {
+            Message created = messageShards.onShardOf(postedById, () -> messageRepository.save(message));
+            changeLog.append(ChangeEvent.messageCreated(created));
+            return created;
+        });
+        accountFlights.forget(postedById);
+        messageCounterService.recordPost(postedById, saved.getTimePostedEpoch());
+        cacheInvalidator.invalidateAccount(postedById);
+        return Optional.of(saved);
     }
     
     /**
-     * Retrieves all messages in the system.
+     * Retrieves all messages in the system, from the hot table and the cold tier.
+     * With sharding enabled every shard is queried in parallel and the results are merged in messageId order.
      * 
      * @return A list of all messages
      */
+    @Transactional(readOnly = true)
     public List<Message> getAllMessages() {
-        return messageRepository.findAll();
+        return withColdMessages(fromEveryShard(messageRepository::findAll, Message::getMessageId),
+            Message::getMessageId, coldStore::findAll, Function.identity());
+    }
+
+    /**
+     * Same as getAllMessages, but only the requested fields are selected and returned.
+     *
+     * @param fields The fields to return; the message ID is always read
+     * @return A list of all messages, holding only the requested fields
+     */
+    @Transactional(readOnly = true)
+    public List<SparseMessage> getAllMessages(MessageFields fields) {
+        return withColdMessages(fromEveryShard(() -> messageRepository.findAllFields(fields), SparseMessage::getMessageId),
+            SparseMessage::getMessageId, coldStore::findAll, fields::of);
     }
     
     /**
      * Retrieves a specific message by its ID.
+     * Concurrent lookups of the same ID are coalesced into one query.
+     * Falls through to the cold tier when the message is not in the hot table.
+     * With sharding enabled the ID is looked up on every shard in parallel.
      * 
      * @param messageId The ID of the message to retrieve
      * @return Optional containing the message with the specified ID, or empty if not found
      */
     public Optional<Message> getMessageById(Integer messageId) {
-        return messageRepository.findById(messageId);
+        return getVersionedMessage(messageId).map(VersionedMessage::getMessage);
+    }
+
+    /**
+     * Retrieves several messages by ID with one IN query (one per shard when sharding is enabled), in the order the
+     * IDs were given. Repeated IDs are returned once, at their first position, and IDs that match no message are
+     * left out. IDs not in the hot table are looked up in the cold tier.
+     *
+     * @param messageIds The IDs of the messages to retrieve
+     * @return The messages found, in request order
+     * @throws com.example.exception.InvalidMessageException if more than messages.multi-get.max-ids IDs are requested
+     */
+    @Transactional(readOnly = true)
+    public List<Message> getMessagesByIds(List<Integer> messageIds) {
+        return byIds(messageIds, messageRepository::findAllById, Message::getMessageId, Function.identity());
+    }
+
+    /**
+     * Same as getMessagesByIds, but only the requested fields are selected and returned.
+     *
+     * @param messageIds The IDs of the messages to retrieve
+     * @param fields The fields to return; the message ID is always read
+     * @return The messages found, in request order, holding only the requested fields
+     * @throws com.example.exception.InvalidMessageException if more than messages.multi-get.max-ids IDs are requested
+     */
+    @Transactional(readOnly = true)
+    public List<SparseMessage> getMessagesByIds(List<Integer> messageIds, MessageFields fields) {
+        return byIds(messageIds, ids -> messageRepository.findFieldsByIds(fields, ids), SparseMessage::getMessageId,
+            fields::of);
+    }
+
+    /**
+     * Same as getMessageById, but only the requested fields are selected and returned.
+     *
+     * @param messageId The ID of the message to retrieve
+     * @param fields The fields to return; the message ID is always read
+     * @return Optional containing the message holding only the requested fields, or empty if not found
+     */
+    @Transactional(readOnly = true)
+    public Optional<SparseMessage> getMessageById(Integer messageId, MessageFields fields) {
+        return getMessagesByIds(Collections.singletonList(messageId), fields).stream().findFirst();
+    }
+
+    /**
+     * Retrieves a message together with its current version, the value a client sends back in If-Match.
+     * An archived message reports the version it was archived at.
+     *
+     * @param messageId The ID of the message to retrieve
+     * @return Optional containing the message and its version, or empty if not found
+     */
+    public Optional<VersionedMessage> getVersionedMessage(Integer messageId) {
+        return messageFlights.execute(messageId, () -> readOnly(() -> findHotRow(messageId)
+            .map(row -> toVersioned(row, row.getMessageText(), row.getVersion()))
+            .or(() -> Optional.ofNullable(coldStore.findVersionedById(messageId)))));
     }
     
     /**
-     * Deletes a message by its ID.
+     * Deletes a message by its ID. An archived message is tombstoned in the cold tier.
      * 
      * @param messageId The ID of the message to delete
      * @return true if the message was successfully deleted, false if the message was not found
      */
     public boolean deleteMessage(Integer messageId) {
-        Optional<Message> messageOpt = messageRepository.findById(messageId);
-        if (messageOpt.isPresent()) {
-            messageRepository.deleteById(messageId);
-            return true;
-        }
-        return false;
+        return underTierLock(() -> {
+            Optional<Message> messageOpt = findHotMessage(messageId);
+            if (messageOpt.isPresent()) {
+                Integer postedBy = messageOpt.get().getPostedBy();
+                changeLog.inOrder(postedBy, () -> messageShards.onShardOf(postedBy, () -> {
+                    messageRepository.deleteById(messageId);
+                    changeLog.append(ChangeEvent.messageDeleted(messageId, postedBy));
+                    return null;
+                }));
+            } else {
+                messageOpt = Optional.ofNullable(coldStore.remove(messageId));
+                messageOpt.ifPresent(message -> changeLog.append(ChangeEvent.messageDeleted(messageId, message.getPostedBy())));
+            }
+            messageOpt.ifPresent(message -> {
+                messageFlights.forget(messageId);
+                accountFlights.forget(message.getPostedBy());
+                messageCounterService.recordDelete(message.getPostedBy(), 1);
+                cacheInvalidator.invalidate(
+                    List.of(InvalidationKey.message(messageId), InvalidationKey.account(message.getPostedBy())));
+            });
+            return messageOpt.isPresent();
+        });
     }
     
+    /**
+     * Deletes every message posted by a specific account.
+     * Rows are removed in chunks of messages.bulk-delete.chunk-size, one DELETE statement and one
+     * short transaction per chunk, so purging a large account never locks the table for long.
+     * 
+     * @param accountId The ID of the account whose messages to delete
+     * @return The number of messages deleted
+     */
+    public int deleteMessagesByAccount(Integer accountId) {
+        return underTierLock(() -> changeLog.inOrder(accountId, () -> {
+            int total = 0;
+            List<Integer> deleted;
+            do {
+                deleted = messageShards.onShardOf(accountId,
+                    () -> messageRepository.deleteChunkByPostedBy(accountId, bulkDeleteChunkSize));
+                forgetMessages(deleted);
+                total += deleted.size();
+            } while (deleted.size() == bulkDeleteChunkSize);
+            deleted = coldStore.removeByPostedBy(accountId);
+            forgetMessages(deleted);
+            total += deleted.size();
+            accountFlights.forget(accountId);
+            messageCounterService.recordDelete(accountId, total);
+            cacheInvalidator.invalidateAccount(accountId);
+            if (total > 0) {
+                changeLog.append(ChangeEvent.accountMessagesDeleted(accountId));
+            }
+            return total;
+        }));
+    }
+    
+    /**
+     * Deletes up to chunkSize of the oldest messages posted before a cutoff from one shard, for retention.
+     * One statement in one short transaction; the posters' counters and caches are then updated as for any other
+     * delete.
+     *
+     * @param shard The shard to purge
+     * @param cutoffEpoch Messages posted strictly before this epoch second are deleted
+     * @param chunkSize The maximum number of messages to delete
+     * @return The number of messages deleted
+     */
+    public int purgeChunk(int shard, long cutoffEpoch, int chunkSize) {
+        List<MessageOwner> purged = underTierLock(() -> messageShards.onShard(shard,
+            () -> messageRepository.deleteChunkPostedBefore(cutoffEpoch, chunkSize)));
+        Map<Integer, Long> perAccount = new HashMap<>();
+        List<ChangeEvent> events = new ArrayList<>(purged.size());
+        for (MessageOwner row : purged) {
+            messageFlights.forget(row.getMessageId());
+            cacheInvalidator.invalidateMessage(row.getMessageId());
+            perAccount.merge(row.getPostedBy(), 1L, Long::sum);
+            events.add(ChangeEvent.messageDeleted(row.getMessageId(), row.getPostedBy()));
+        }
+        recordPurge(perAccount);
+        changeLog.appendAll(events);
+        return purged.size();
+    }
+
+    /**
+     * Drops the cold segments whose newest message was posted before a cutoff, for retention.
+     * Each segment goes as a whole: its file is deleted rather than its messages tombstoned one by one.
+     *
+     * @param cutoffEpoch Segments holding only messages posted strictly before this epoch second are dropped
+     * @return The number of archived messages dropped
+     * @throws IOException if a segment cannot be deleted
+     */
+    public long purgeColdSegments(long cutoffEpoch) throws IOException {
+        if (!coldStore.hasSegments()) {
+            return 0;
+        }
+        Map<Integer, Long> perAccount;
+        List<ChangeEvent> events = new ArrayList<>();
+        coldStore.getTierLock().writeLock().lock();
+        try {
+            perAccount = coldStore.dropSegmentsBefore(cutoffEpoch, changeLog.isEnabled()
+                ? message -> events.add(ChangeEvent.messageDeleted(message.getMessageId(), message.getPostedBy()))
+                : null);
+        } finally {
+            coldStore.getTierLock().writeLock().unlock();
+        }
+        recordPurge(perAccount);
+        changeLog.appendAll(events);
+        return perAccount.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    private void forgetMessages(List<Integer> messageIds) {
+        List<InvalidationKey> keys = new ArrayList<>(messageIds.size());
+        for (Integer messageId : messageIds) {
+            messageFlights.forget(messageId);
+            keys.add(InvalidationKey.message(messageId));
+        }
+        cacheInvalidator.invalidate(keys);
+    }
+
+    private void recordPurge(Map<Integer, Long> perAccount) {
+        perAccount.forEach((accountId, purged) -> {
+            accountFlights.forget(accountId);
+            messageCounterService.recordDelete(accountId, purged);
+            cacheInvalidator.invalidateAccount(accountId);
+        });
+    }
+
     /**
      * Updates the text of an existing message.
      * Validates the new message text (not empty, max 255 chars).
+     * The write only applies to the version that was read; when a concurrent edit gets there first the read and write
+     * are retried after a short random pause, up to messages.update.max-retries times. With an expected version
+     * nothing is retried, since the caller asked for exactly that version.
+     * An archived message is moved back into the hot table under its original ID and its cold copy is tombstoned.
      * 
      * @param messageId The ID of the message to update
      * @param newMessageText The new text for the message
-     * @return Optional containing the number of rows updated (1) if successful, or empty if validation fails or message not found
+     * @param expectedVersion The version the caller last saw, or null to update whatever is current
+     * @return Optional containing the message's new version if successful, or empty if validation fails or message not found
+     * @throws com.example.exception.RateLimitExceededException if the message owner has exceeded its write limit
+     * @throws VersionMismatchException if the message is not at expectedVersion
+     * @throws UpdateConflictException if every retry lost to a concurrent edit
      */
-    public Optional<Integer> updateMessageText(Integer messageId, String newMessageText) {
+    public Optional<Long> updateMessageText(Integer messageId, String newMessageText, Long expectedVersion) {
         // Validate new message text
         if (newMessageText == null || newMessageText.trim().isEmpty() || newMessageText.length() > 255) {
             return Optional.empty();
         }
         
-        return messageRepository.findById(messageId)
-            .map(message -> {
-                message.setMessageText(newMessageText);
-                messageRepository.save(message);
-                return 1;
+        // A message never changes owner, so a cached copy is enough to find the account whose order the edit joins
+        Integer owner = changeLog.isEnabled() ? getMessageById(messageId).map(Message::getPostedBy).orElse(null) : null;
+        return underTierLock(() -> owner == null
+            ? updateText(messageId, newMessageText, expectedVersion)
+            : changeLog.inOrder(owner, () -> updateText(messageId, newMessageText, expectedVersion)));
+    }
+
+    private Optional<Long> updateText(Integer messageId, String newMessageText, Long expectedVersion) {
+        return ("pessimistic".equals(updateLocking)
+                ? updateLocked(messageId, newMessageText, expectedVersion)
+                : updateOptimistic(messageId, newMessageText, expectedVersion))
+            .map(updated -> {
+                if (coldStore.hasSegments()) {
+                    coldStore.remove(messageId); // a copy left behind by an interrupted archive run
+                }
+                return updated;
+            })
+            .or(() -> Optional.ofNullable(coldStore.findVersionedById(messageId))
+                .map(archived -> {
+                    Message message = archived.getMessage();
+                    long version = archived.getVersion() + 1;
+                    checkVersion(expectedVersion, archived.getVersion());
+                    rateLimitService.checkAccount(message.getPostedBy());
+                    messageShards.onShardOf(message.getPostedBy(), () -> messageRepository.insertWithId(messageId,
+                        message.getPostedBy(), newMessageText, message.getTimePostedEpoch(), version));
+                    coldStore.remove(messageId);
+                    return new VersionedMessage(message, version);
+                }))
+            .map(updated -> {
+                Integer postedBy = updated.getMessage().getPostedBy();
+                messageFlights.forget(messageId);
+                accountFlights.forget(postedBy);
+                cacheInvalidator.invalidate(List.of(InvalidationKey.message(messageId), InvalidationKey.account(postedBy)));
+                changeLog.append(ChangeEvent.messageUpdated(messageId, postedBy, newMessageText, updated.getVersion()));
+                return updated.getVersion();
             });
     }
-    
+
     /**
      * Retrieves all messages posted by a specific account.
      * Verifies that the account exists before retrieving messages.
+     * Concurrent lookups for the same account are coalesced into one pair of queries.
+     * Archived messages of the account are included.
      * 
      * @param accountId The ID of the account whose messages to retrieve
      * @return A list of messages posted by the specified account, or empty list if account not found
      */
     public List<Message> getMessagesByAccount(Integer accountId) {
-        return accountService.getAccountById(accountId)
-            .map(account -> messageRepository.findByPostedBy(accountId))
-            .orElse(List.of()); // Return empty list if account doesn't exist
+        return accountFlights.execute(accountId, () -> readOnly(() -> accountService.getAccountById(accountId)
+            .map(account -> withColdMessages(
+                messageShards.onShardOf(accountId, () -> messageRepository.findByPostedBy(accountId)),
+                Message::getMessageId, () -> coldStore.findByPostedBy(accountId), Function.identity()))
+            .orElse(List.of()))); // Return empty list if account doesn't exist
+    }
+
+    /**
+     * Same as getMessagesByAccount, but only the requested fields are selected and returned.
+     * Not coalesced with concurrent lookups, since those may ask for other fields.
+     *
+     * @param accountId The ID of the account whose messages to retrieve
+     * @param fields The fields to return; the message ID is always read
+     * @return A list of the account's messages holding only the requested fields, or empty list if account not found
+     */
+    @Transactional(readOnly = true)
+    public List<SparseMessage> getMessagesByAccount(Integer accountId, MessageFields fields) {
+        if (accountService.getAccountById(accountId).isEmpty()) {
+            return List.of();
+        }
+        return withColdMessages(
+            messageShards.onShardOf(accountId, () -> messageRepository.findFieldsByPostedBy(fields, accountId)),
+            SparseMessage::getMessageId, () -> coldStore.findByPostedBy(accountId), fields::of);
+    }
+
+    /**
+     * Reads the row and writes it back only if its version has not moved in between. No lock is held across the two
+     * statements, so edits of a hot message never queue behind each other; a lost race costs one more read and write.
+     */
+    private Optional<VersionedMessage> updateOptimistic(Integer messageId, String newMessageText, Long expectedVersion) {
+        for (int attempt = 0; ; attempt++) {
+            Optional<MessageWithVersion> row = findHotRow(messageId);
+            if (row.isEmpty()) {
+                return Optional.empty();
+            }
+            MessageWithVersion current = row.get();
+            checkVersion(expectedVersion, current.getVersion());
+            if (attempt == 0) {
+                rateLimitService.checkAccount(current.getPostedBy());
+            }
+            int updated = messageShards.onShardOf(current.getPostedBy(),
+                () -> messageRepository.updateTextIfVersion(messageId, newMessageText, current.getVersion()));
+            if (updated == 1) {
+                return Optional.of(toVersioned(current, newMessageText, current.getVersion() + 1));
+            }
+            if (expectedVersion != null) {
+                throw new VersionMismatchException("Message has been modified");
+            }
+            if (attempt >= updateMaxRetries) {
+                meterRegistry.counter("messages.update.conflicts").increment();
+                throw new UpdateConflictException("Message is being modified concurrently");
+            }
+            meterRegistry.counter("messages.update.retries").increment();
+            backOff(attempt);
+        }
+    }
+
+    /**
+     * Sleeps a random time below a bound that doubles per attempt, so edits that collided once do not collide again
+     * in lockstep.
+     */
+    private void backOff(int attempt) {
+        long bound = updateRetryBackoffMillis << Math.min(attempt, 10);
+        if (bound <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(bound + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UpdateConflictException("Message is being modified concurrently");
+        }
+    }
+
+    /**
+     * Locks the row for the length of a transaction, then writes it. Concurrent edits of one message wait for each
+     * other instead of retrying. With sharding enabled the row is located first to find its shard.
+     */
+    private Optional<VersionedMessage> updateLocked(Integer messageId, String newMessageText, Long expectedVersion) {
+        Supplier<Optional<VersionedMessage>> locked = () -> new TransactionTemplate(transactionManager).execute(status ->
+            messageRepository.findWithVersionByIdForUpdate(messageId).map(current -> {
+                checkVersion(expectedVersion, current.getVersion());
+                rateLimitService.checkAccount(current.getPostedBy());
+                messageRepository.updateTextIfVersion(messageId, newMessageText, current.getVersion());
+                return toVersioned(current, newMessageText, current.getVersion() + 1);
+            }));
+        if (!messageShards.isEnabled()) {
+            return locked.get();
+        }
+        return findHotRow(messageId).flatMap(row -> messageShards.onShardOf(row.getPostedBy(), locked));
+    }
+
+    /**
+     * Runs a single-flight load in a read-only transaction of its own. Only the leader opens it, so followers wait
+     * for the result without holding a pooled connection, whether or not the DataSource fetches connections lazily.
+     */
+    private <T> T readOnly(Supplier<T> load) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        return transaction.execute(status -> load.get());
+    }
+
+    private static void checkVersion(Long expectedVersion, long actualVersion) {
+        if (expectedVersion != null && expectedVersion != actualVersion) {
+            throw new VersionMismatchException("Message has been modified");
+        }
+    }
+
+    private static VersionedMessage toVersioned(MessageWithVersion row, String messageText, long version) {
+        return new VersionedMessage(new Message(row.getMessageId(), row.getPostedBy(), messageText,
+            row.getTimePostedEpoch()), version);
+    }
+
+    /**
+     * Looks a message row and its version up in the hot table, on every shard when sharding is enabled.
+     */
+    private Optional<MessageWithVersion> findHotRow(Integer messageId) {
+        if (!messageShards.isEnabled()) {
+            return messageRepository.findWithVersionById(messageId);
+        }
+        return messageShards.onEveryShard(() -> messageRepository.findWithVersionById(messageId)).stream()
+            .flatMap(Optional::stream)
+            .findFirst();
+    }
+
+    /**
+     * Looks a message up in the hot table, on every shard when sharding is enabled since the ID does not say
+     * which shard holds it.
+     */
+    private Optional<Message> findHotMessage(Integer messageId) {
+        if (!messageShards.isEnabled()) {
+            return messageRepository.findById(messageId);
+        }
+        return messageShards.onEveryShard(() -> messageRepository.findById(messageId)).stream()
+            .flatMap(Optional::stream)
+            .findFirst();
+    }
+
+    /**
+     * Runs a hot-table query on every shard and merges the results in messageId order.
+     */
+    private <T> List<T> fromEveryShard(Supplier<List<T>> query, Function<T, Integer> id) {
+        List<List<T>> perShard = messageShards.onEveryShard(query);
+        if (perShard.size() == 1) {
+            return perShard.get(0);
+        }
+        List<T> merged = new ArrayList<>();
+        perShard.forEach(merged::addAll);
+        merged.sort(Comparator.comparing(id));
+        return merged;
+    }
+
+    /**
+     * Looks up distinct IDs with one IN query per shard, then in the cold tier for those not found, in request order.
+     */
+    private <T> List<T> byIds(List<Integer> messageIds, Function<Set<Integer>, List<T>> query, Function<T, Integer> id,
+                              Function<Message, T> fromCold) {
+        Set<Integer> ids = new LinkedHashSet<>(messageIds);
+        ids.remove(null);
+        if (ids.size() > multiGetMaxIds) {
+            throw new InvalidMessageException("Too many message IDs");
+        }
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Integer, T> found = new HashMap<>();
+        for (List<T> shard : messageShards.onEveryShard(() -> query.apply(ids))) {
+            shard.forEach(row -> found.put(id.apply(row), row));
+        }
+        if (found.size() < ids.size() && coldStore.hasSegments()) {
+            Set<Integer> missing = new HashSet<>(ids);
+            missing.removeAll(found.keySet());
+            coldStore.findByIds(missing).forEach((messageId, message) -> found.put(messageId, fromCold.apply(message)));
+        }
+        List<T> rows = new ArrayList<>(ids.size());
+        for (Integer messageId : ids) {
+            T row = found.get(messageId);
+            if (row != null) {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Merges hot rows with their cold-tier counterparts, ordered by messageId. A message present in both tiers
+     * (archived but not yet deleted from the table) is taken from the table.
+     */
+    private <T> List<T> withColdMessages(List<T> hot, Function<T, Integer> id, Supplier<List<Message>> cold,
+                                         Function<Message, T> fromCold) {
+        if (!coldStore.hasSegments()) {
+            return hot;
+        }
+        Set<Integer> hotIds = new HashSet<>();
+        hot.forEach(row -> hotIds.add(id.apply(row)));
+        List<T> merged = new ArrayList<>(hot);
+        for (Message message : cold.get()) {
+            if (!hotIds.contains(message.getMessageId())) {
+                merged.add(fromCold.apply(message));
+            }
+        }
+        merged.sort(Comparator.comparing(id));
+        return merged;
+    }
+
+    /**
+     * Runs a message write under the cold tier's shared lock so it never interleaves with an archive batch.
+     */
+    private <T> T underTierLock(Supplier<T> write) {
+        if (!coldStore.isEnabled()) {
+            return write.get();
+        }
+        Lock lock = coldStore.getTierLock().readLock();
+        lock.lock();
+        try {
+            return write.get();
+        } finally {
+            lock.unlock();
+        }
     }
 }
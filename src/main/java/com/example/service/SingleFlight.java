@@ -0,0 +1,129 @@
+package com.example.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent loads of the same key into a single call.
+ * The first caller for a key runs the loader; callers that arrive while it is still running
+ * wait on the same CompletableFuture and receive its result (or its exception) instead of running the loader again.
+ * Nothing is cached: once the load finishes the key is released and the next caller loads afresh.
+ * Callers can be split into two lanes, for example by where their reads are routed; a caller only ever joins a load
+ * started in its own lane.
+ *
+ * @param <K> The key type
+ * @param <V> The loaded value type
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<K, CompletableFuture<V>> otherLane = new ConcurrentHashMap<>();
+    private final BooleanSupplier inOtherLane;
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Creates a single-flight where every caller is in the same lane.
+     */
+    public SingleFlight() {
+        this(() -> false);
+    }
+
+    /**
+     * @param inOtherLane Tells, on the calling thread, whether the caller is in the second lane
+     */
+    public SingleFlight(BooleanSupplier inOtherLane) {
+        this.inOtherLane = inOtherLane;
+    }
+
+    /**
+     * Returns the result of the loader for the given key, sharing an in-flight load if there is one.
+     *
+     * @param key The key being loaded
+     * @param loader The call to run if no load for this key is in flight
+     * @return The loaded value
+     */
+    public V execute(K key, Supplier<V> loader) {
+        ConcurrentHashMap<K, CompletableFuture<V>> lane = inOtherLane.getAsBoolean() ? otherLane : inFlight;
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> existing = lane.putIfAbsent(key, mine);
+        if (existing != null) {
+            coalesced.increment();
+            return await(existing);
+        }
+        executed.increment();
+        try {
+            V value = loader.get();
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            lane.remove(key, mine);
+        }
+    }
+
+    /**
+     * Detaches any in-flight load of the given key so that later callers start a new one.
+     * Called after a write so that a reader never joins a load that began before the write.
+     *
+     * @param key The key that was modified
+     */
+    public void forget(K key) {
+        inFlight.remove(key);
+        otherLane.remove(key);
+    }
+
+    /**
+     * @return The number of loads actually run
+     */
+    public long executedCount() {
+        return executed.sum();
+    }
+
+    /**
+     * @return The number of callers that joined an in-flight load instead of running their own
+     */
+    public long coalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Registers the executed and coalesced counters with the given registry.
+     *
+     * @param registry The registry to publish to
+     * @param name The value of the "key" tag, identifying which lookup these counters belong to
+     */
+    public void bindTo(MeterRegistry registry, String name) {
+        FunctionCounter.builder("messages.singleflight.executed", this, SingleFlight::executedCount)
+            .tag("key", name)
+            .description("Repository loads run by single-flight")
+            .register(registry);
+        FunctionCounter.builder("messages.singleflight.coalesced", this, SingleFlight::coalescedCount)
+            .tag("key", name)
+            .description("Requests served by joining an in-flight load")
+            .register(registry);
+    }
+
+    private static <V> V await(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.example.service;
+
+import com.example.changelog.ChangeLog;
+import com.example.dto.AccountSummary;
+import com.example.dto.ChangeEvent;
+import com.example.invalidation.CacheInvalidator;
+import com.example.invalidation.InvalidationKey;
+import com.example.repository.AccountName;
+import com.example.repository.AccountRepository;
+import com.example.repository.AccountTotals;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory prefix index over usernames for typeahead search, so a keystroke never reaches the account table.
+ * Entries are kept in one sorted array of keys (the lower-cased username, a NUL, then the username as registered) with
+ * the account IDs in a parallel int array; a prefix search is a binary search followed by a walk over at most
+ * limit entries. New registrations land in a small sorted overflow map and are merged into the arrays once it holds
+ * accounts.search.merge-threshold entries, so registering does not copy the arrays each time.
+ * Searches read an immutable snapshot of the arrays and never lock.
+ * The index is loaded at startup by replaying the change log, or from the account table when the log is off or out
+ * of step. Accounts registered or imported on other nodes are added when their invalidation arrives on the bus: an
+ * account ID the index has not seen yet is looked up and added.
+ */
+@Service
+public class UsernameIndex implements SmartInitializingSingleton {
+    private static final Logger log = LoggerFactory.getLogger(UsernameIndex.class);
+    private static final char SEPARATOR = '\0';
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private ChangeLog changeLog;
+
+    @Autowired
+    private CacheInvalidator cacheInvalidator;
+
+    @Value("${accounts.search.merge-threshold:1024}")
+    private int mergeThreshold;
+
+    private volatile Snapshot snapshot = new Snapshot(new String[0], new int[0]);
+    private final ConcurrentSkipListMap<String, Integer> recent = new ConcurrentSkipListMap<>();
+    private final AtomicInteger recentCount = new AtomicInteger();
+    // Account IDs in the index, so a repeated add or a remote invalidation of a known account costs no lookup
+    private final BitSet knownIds = new BitSet();
+
+    /**
+     * Picks up accounts created on other nodes. Accounts are never renamed, so only IDs not seen before need a lookup.
+     */
+    @PostConstruct
+    public void subscribe() {
+        cacheInvalidator.onInvalidation(key -> {
+            if (key.getKind() == InvalidationKey.Kind.ACCOUNT && !isKnown(key.getId())) {
+                accountRepository.findById(key.getId())
+                    .ifPresent(account -> add(account.getAccountId(), account.getUsername()));
+            }
+        });
+    }
+
+    /**
+     * Loads every username before the web server starts accepting requests, from the change log when it has one.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        List<String> usernames = new ArrayList<>();
+        List<Integer> accountIds = new ArrayList<>();
+        if (!replayChangeLog(usernames, accountIds)) {
+            for (AccountName account : accountRepository.findAllNames()) {
+                usernames.add(account.getUsername());
+                accountIds.add(account.getAccountId());
+            }
+        }
+        String[] keys = new String[usernames.size()];
+        Integer[] order = new Integer[usernames.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = key(usernames.get(i));
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> keys[a].compareTo(keys[b]));
+        String[] sortedKeys = new String[keys.length];
+        int[] ids = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            sortedKeys[i] = keys[order[i]];
+            ids[i] = accountIds.get(order[i]);
+        }
+        synchronized (this) {
+            snapshot = new Snapshot(sortedKeys, ids);
+        }
+        synchronized (knownIds) {
+            accountIds.forEach(knownIds::set);
+        }
+    }
+
+    /**
+     * Collects the accounts from the change log's creation events instead of the account table. The log outlives
+     * the in-memory database, so it is only used when the accounts it names have the same count, highest ID and sum
+     * of IDs as the table's.
+     *
+     * @return False if the log is off, empty or out of step with the table, leaving both lists empty
+     */
+    private boolean replayChangeLog(List<String> usernames, List<Integer> accountIds) {
+        if (!changeLog.isEnabled() || changeLog.getEndOffset() == 0) {
+            return false;
+        }
+        long[] logged = new long[2]; // highest ID, sum of IDs
+        changeLog.replay(changeLog.getStartOffset(), event -> {
+            if (event.getType() == ChangeEvent.Type.ACCOUNT_CREATED) {
+                usernames.add(event.getUsername());
+                accountIds.add(event.getAccountId());
+                logged[0] = Math.max(logged[0], event.getAccountId());
+                logged[1] += event.getAccountId();
+            }
+        });
+        AccountTotals stored = accountRepository.findTotals();
+        long storedMax = stored.getMaxAccountId() == null ? 0 : stored.getMaxAccountId();
+        long storedSum = stored.getAccountIdSum() == null ? 0 : stored.getAccountIdSum();
+        if (usernames.size() == stored.getAccounts() && logged[0] == storedMax && logged[1] == storedSum) {
+            return true;
+        }
+        log.warn("Change log names {} accounts (highest ID {}) but the table holds {} (highest ID {}), "
+            + "loading the username index from the table", usernames.size(), logged[0], stored.getAccounts(), storedMax);
+        usernames.clear();
+        accountIds.clear();
+        return false;
+    }
+
+    /**
+     * Adds a newly registered account.
+     *
+     * @param accountId The ID of the account
+     * @param username The account's username
+     */
+    public void add(Integer accountId, String username) {
+        synchronized (knownIds) {
+            if (knownIds.get(accountId)) {
+                return;
+            }
+            knownIds.set(accountId);
+        }
+        if (recent.put(key(username), accountId) == null && recentCount.incrementAndGet() >= mergeThreshold) {
+            merge();
+        }
+    }
+
+    /**
+     * Finds the accounts whose username starts with a prefix, ignoring case.
+     *
+     * @param prefix The start of the username
+     * @param limit The maximum number of accounts to return
+     * @return Up to limit accounts, ordered by username ignoring case
+     */
+    public List<AccountSummary> search(String prefix, int limit) {
+        if (prefix == null || prefix.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        String from = prefix.toLowerCase(Locale.ROOT);
+        Snapshot current = snapshot;
+        int i = lowerBound(current.keys, from);
+        Iterator<Map.Entry<String, Integer>> pending = recent.tailMap(from).entrySet().iterator();
+        Map.Entry<String, Integer> next = pending.hasNext() ? pending.next() : null;
+        List<AccountSummary> matches = new ArrayList<>(Math.min(limit, 16));
+        while (matches.size() < limit) {
+            String key = i < current.keys.length ? current.keys[i] : null;
+            boolean fromArray = key != null && key.startsWith(from);
+            boolean fromPending = next != null && next.getKey().startsWith(from);
+            if (!fromArray && !fromPending) {
+                break;
+            }
+            int compared = fromArray && fromPending ? key.compareTo(next.getKey()) : (fromArray ? -1 : 1);
+            if (compared <= 0) {
+                matches.add(summary(key, current.ids[i++]));
+                if (compared == 0) {
+                    // Merged into the arrays but not yet dropped from the overflow map
+                    next = pending.hasNext() ? pending.next() : null;
+                }
+            } else {
+                matches.add(summary(next.getKey(), next.getValue()));
+                next = pending.hasNext() ? pending.next() : null;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * @return The number of usernames in the index
+     */
+    public int size() {
+        return snapshot.keys.length + recentCount.get();
+    }
+
+    /**
+     * Folds the overflow map into a new pair of arrays. The new snapshot is published before the merged entries leave
+     * the map, so a concurrent search sees each account at least once and skips the duplicate.
+     */
+    private synchronized void merge() {
+        List<Map.Entry<String, Integer>> pending = new ArrayList<>(recent.entrySet());
+        if (pending.isEmpty()) {
+            return;
+        }
+        Snapshot current = snapshot;
+        String[] keys = new String[current.keys.length + pending.size()];
+        int[] ids = new int[keys.length];
+        int a = 0;
+        int p = 0;
+        int out = 0;
+        while (a < current.keys.length || p < pending.size()) {
+            int compared = a == current.keys.length ? 1 : p == pending.size() ? -1
+                : current.keys[a].compareTo(pending.get(p).getKey());
+            if (compared <= 0) {
+                keys[out] = current.keys[a];
+                ids[out++] = current.ids[a++];
+                if (compared == 0) {
+                    p++;
+                }
+            } else {
+                keys[out] = pending.get(p).getKey();
+                ids[out++] = pending.get(p++).getValue();
+            }
+        }
+        snapshot = new Snapshot(out == keys.length ? keys : Arrays.copyOf(keys, out),
+            out == ids.length ? ids : Arrays.copyOf(ids, out));
+        for (Map.Entry<String, Integer> entry : pending) {
+            if (recent.remove(entry.getKey(), entry.getValue())) {
+                recentCount.decrementAndGet();
+            }
+        }
+    }
+
+    private boolean isKnown(int accountId) {
+        synchronized (knownIds) {
+            return knownIds.get(accountId);
+        }
+    }
+
+    private static int lowerBound(String[] keys, String from) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid].compareTo(from) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static String key(String username) {
+        return username.toLowerCase(Locale.ROOT) + SEPARATOR + username;
+    }
+
+    private static AccountSummary summary(String key, int accountId) {
+        return new AccountSummary(accountId, key.substring(key.indexOf(SEPARATOR) + 1));
+    }
+
+    private static final class Snapshot {
+        final String[] keys;
+        final int[] ids;
+
+        Snapshot(String[] keys, int[] ids) {
+            this.keys = keys;
+            this.ids = ids;
+        }
+    }
+}
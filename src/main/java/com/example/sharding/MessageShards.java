@@ -0,0 +1,159 @@
+package com.example.sharding;
+
+import com.example.datasource.QueryStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Places messages on shards by a hash of postedBy and runs repository calls against one shard or all of them.
+ * A call on another shard than the one the thread is on runs in its own transaction on that shard's connection, so it
+ * can be made from inside a transaction bound to shard 0, or from a request whose open-in-view EntityManager already
+ * holds a connection to it. A call on the thread's own shard runs directly, as does the caller's own part of a call
+ * on every shard while the other shards run in parallel on a small pool: a thread never waits for a second connection
+ * from a pool it already holds one of, so a busy pool cannot deadlock on itself.
+ * With sharding.enabled=false there is a single shard and every call runs directly on the calling thread.
+ */
+@Component
+public class MessageShards {
+    private final boolean enabled;
+    private final int shardCount;
+    private final TransactionTemplate shardTransaction;
+    private final EntityManagerFactory entityManagerFactory;
+    private final ExecutorService scatterPool;
+
+    public MessageShards(@Value("${sharding.enabled:false}") boolean enabled,
+                         @Value("${sharding.shards:4}") int shards,
+                         @Value("${sharding.scatter-threads:16}") int scatterThreads,
+                         PlatformTransactionManager transactionManager, EntityManagerFactory entityManagerFactory) {
+        this.enabled = enabled;
+        this.shardCount = enabled ? shards : 1;
+        this.shardTransaction = new TransactionTemplate(transactionManager);
+        this.shardTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.entityManagerFactory = entityManagerFactory;
+        if (enabled) {
+            AtomicInteger threads = new AtomicInteger();
+            this.scatterPool = Executors.newFixedThreadPool(scatterThreads, task -> {
+                Thread thread = new Thread(task, "shard-scatter-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.scatterPool = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * Account IDs come from one sequence and share a residue modulo the shard count, so they are mixed
+     * (Fibonacci hashing) before taking the modulus.
+     *
+     * @param postedBy The poster
+     * @return The shard holding the poster's messages
+     */
+    public int shardOf(Integer postedBy) {
+        if (shardCount == 1 || postedBy == null) {
+            return 0;
+        }
+        int hash = postedBy * 0x9E3779B9;
+        return Math.floorMod(hash ^ (hash >>> 16), shardCount);
+    }
+
+    /**
+     * Runs work against the shard holding a poster's messages.
+     */
+    public <T> T onShardOf(Integer postedBy, Supplier<T> work) {
+        return onShard(shardOf(postedBy), work);
+    }
+
+    /**
+     * Runs work on the given shard, in a new transaction unless the thread is already on that shard.
+     * An open-in-view EntityManager outside any transaction is set aside meanwhile, since the transaction would
+     * otherwise join it and keep using the connection it holds.
+     */
+    public <T> T onShard(int shard, Supplier<T> work) {
+        if (!enabled || shard == ShardRoutingDataSource.currentShard()) {
+            return work.get();
+        }
+        Object openInView = TransactionSynchronizationManager.isActualTransactionActive() ? null
+            : TransactionSynchronizationManager.unbindResourceIfPossible(entityManagerFactory);
+        Integer previous = ShardRoutingDataSource.select(shard);
+        try {
+            return shardTransaction.execute(status -> work.get());
+        } finally {
+            ShardRoutingDataSource.select(previous);
+            if (openInView != null) {
+                TransactionSynchronizationManager.bindResource(entityManagerFactory, openInView);
+            }
+        }
+    }
+
+    /**
+     * Runs work on every shard in parallel, the calling thread's own shard included.
+     * If any shard fails, the loads of the other shards that have not started yet are cancelled.
+     *
+     * @return One result per shard, in shard order
+     */
+    public <T> List<T> onEveryShard(Supplier<T> work) {
+        if (!enabled) {
+            return List.of(work.get());
+        }
+        int current = ShardRoutingDataSource.currentShard();
+        // The other shards' statements count towards the calling request, as if it had run them itself
+        QueryStats caller = QueryStats.current();
+        List<CompletableFuture<T>> futures = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            int target = shard;
+            futures.add(shard == current ? null : CompletableFuture.supplyAsync(
+                () -> QueryStats.runIn(caller, () -> onShard(target, work)), scatterPool));
+        }
+        List<T> results = new ArrayList<>(shardCount);
+        boolean completed = false;
+        try {
+            T own = work.get();
+            for (CompletableFuture<T> future : futures) {
+                results.add(future == null ? own : future.join());
+            }
+            completed = true;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        } finally {
+            if (!completed) {
+                futures.stream().filter(Objects::nonNull).forEach(future -> future.cancel(false));
+            }
+        }
+        return results;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scatterPool != null) {
+            scatterPool.shutdownNow();
+        }
+    }
+}
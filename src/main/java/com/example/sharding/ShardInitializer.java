@@ -0,0 +1,93 @@
+package com.example.sharding;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Prepares the shards once data.sql has run on shard 0.
+ * Every shard gets its own hibernate_sequence, all stepping by the shard count from different starting points,
+ * so IDs stay unique across shards without any coordination. Messages that data.sql (or anything else) put on
+ * shard 0 are then moved to the shard their poster hashes to.
+ * Only active when sharding.enabled=true.
+ */
+@Component
+@ConditionalOnProperty(name = "sharding.enabled", havingValue = "true")
+@DependsOn("dataSourceScriptDatabaseInitializer")
+public class ShardInitializer {
+    private static final Logger log = LoggerFactory.getLogger(ShardInitializer.class);
+
+    private final ShardRoutingDataSource shards;
+    private final MessageShards messageShards;
+
+    public ShardInitializer(DataSource dataSource, MessageShards messageShards) throws SQLException {
+        this.shards = dataSource.unwrap(ShardRoutingDataSource.class);
+        this.messageShards = messageShards;
+    }
+
+    @PostConstruct
+    public void initialize() throws SQLException {
+        int count = shards.getShardCount();
+        long next;
+        try (Connection connection = shards.getShard(0).getConnection(); Statement statement = connection.createStatement()) {
+            try (ResultSet rows = statement.executeQuery(
+                    "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'HIBERNATE_SEQUENCE'")) {
+                next = rows.next() ? rows.getLong(1) : 1L;
+            }
+            statement.execute("ALTER SEQUENCE hibernate_sequence INCREMENT BY " + count);
+        }
+        for (int shard = 1; shard < count; shard++) {
+            try (Connection connection = shards.getShard(shard).getConnection(); Statement statement = connection.createStatement()) {
+                statement.execute("DROP SEQUENCE IF EXISTS hibernate_sequence");
+                statement.execute("CREATE SEQUENCE hibernate_sequence START WITH " + (next + shard) + " INCREMENT BY " + count);
+            }
+        }
+        log.info("Moved {} messages from shard 0 to their home shards ({} shards)", rebalance(), count);
+    }
+
+    private int rebalance() throws SQLException {
+        List<Object[]> misplaced = new ArrayList<>();
+        try (Connection connection = shards.getShard(0).getConnection(); Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT messageId, postedBy, messageText, timePostedEpoch FROM message")) {
+            while (rows.next()) {
+                Integer postedBy = rows.getObject(2, Integer.class);
+                if (messageShards.shardOf(postedBy) != 0) {
+                    misplaced.add(new Object[] {rows.getInt(1), postedBy, rows.getString(3), rows.getObject(4, Long.class)});
+                }
+            }
+        }
+        for (Object[] row : misplaced) {
+            try (Connection connection = shards.getShard(messageShards.shardOf((Integer) row[1])).getConnection();
+                 PreparedStatement insert = connection.prepareStatement(
+                     "INSERT INTO message (messageId, postedBy, messageText, timePostedEpoch) VALUES (?, ?, ?, ?)")) {
+                insert.setInt(1, (Integer) row[0]);
+                insert.setObject(2, row[1], Types.INTEGER);
+                insert.setString(3, (String) row[2]);
+                insert.setObject(4, row[3], Types.BIGINT);
+                insert.executeUpdate();
+            }
+        }
+        try (Connection connection = shards.getShard(0).getConnection();
+             PreparedStatement delete = connection.prepareStatement("DELETE FROM message WHERE messageId = ?")) {
+            for (Object[] row : misplaced) {
+                delete.setInt(1, (Integer) row[0]);
+                delete.addBatch();
+            }
+            delete.executeBatch();
+        }
+        return misplaced.size();
+    }
+}
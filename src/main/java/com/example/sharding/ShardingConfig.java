@@ -0,0 +1,74 @@
+package com.example.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces the auto-configured DataSource with a ShardRoutingDataSource over sharding.shards databases.
+ * Shard 0 is built from spring.datasource.* and still gets data.sql and the Hibernate schema; the others are built
+ * from sharding.url (a format string taking the shard index) and get a message table without the foreign key,
+ * since accounts only live on shard 0. None of the pools is a bean of its own, so the single dataSource bean is the
+ * one that gets instrumented and injected, and all pools are closed when this configuration is destroyed.
+ * Only active when sharding.enabled=true; it cannot be combined with datasource.routing.enabled.
+ */
+@Configuration
+@ConditionalOnProperty(name = "sharding.enabled", havingValue = "true")
+public class ShardingConfig implements DisposableBean {
+    private final List<HikariDataSource> pools = new ArrayList<>();
+
+    @Bean
+    public DataSource dataSource(DataSourceProperties properties, Environment environment, MeterRegistry meterRegistry,
+                                 @Value("${sharding.shards:4}") int shards,
+                                 @Value("${sharding.url:jdbc:h2:mem:shard%d}") String url,
+                                 @Value("${sharding.username:sa}") String username,
+                                 @Value("${sharding.password:}") String password) throws SQLException {
+        HikariDataSource shardZero = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(shardZero));
+        shardZero.setMetricRegistry(meterRegistry);
+        pools.add(shardZero);
+        for (int shard = 1; shard < shards; shard++) {
+            HikariDataSource pool = new HikariDataSource();
+            pool.setPoolName("SocialMediaShard" + shard);
+            pool.setJdbcUrl(String.format(url, shard));
+            pool.setUsername(username);
+            pool.setPassword(password);
+            Binder.get(environment).bind("sharding.hikari", Bindable.ofInstance(pool));
+            pool.setMetricRegistry(meterRegistry);
+            pools.add(pool);
+            createMessageTable(pool);
+        }
+        return new ShardRoutingDataSource(new ArrayList<>(pools));
+    }
+
+    private static void createMessageTable(DataSource shard) throws SQLException {
+        try (Connection connection = shard.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("create table if not exists message (messageId int primary key, postedBy int, "
+                + "messageText varchar(255), timePostedEpoch bigint, version bigint not null default 0)");
+            statement.execute("create index if not exists message_postedBy on message(postedBy)");
+            statement.execute("create index if not exists message_timePostedEpoch on message(timePostedEpoch)");
+        }
+    }
+
+    @Override
+    public void destroy() {
+        for (int i = pools.size() - 1; i >= 0; i--) {
+            pools.get(i).close();
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package com.example.snapshot;
+
+import com.example.dto.VersionedMessage;
+import com.example.entity.Account;
+import com.example.entity.Message;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary snapshot of the account and message tables.
+ *
+ * Layout (all big-endian):
+ * <pre>
+ * header  : int magic, int version, long nextSequenceValue
+ * records : byte 1, int accountId, string username, string password
+ *           byte 2, int messageId, int postedBy, long timePostedEpoch, long version, byte nulls (1 = postedBy, 2 = time),
+ *           string text
+ *           string = int byteLength (-1 for null), utf-8 bytes
+ * trailer : byte 0, long accountCount, long messageCount, int crc32c of every preceding byte
+ * </pre>
+ * All accounts come before all messages, so a restore can insert in file order without breaking the foreign key.
+ * Message rows keep their version, so an ETag handed out before a snapshot never matches a different edit after the
+ * restore. Snapshots written before versions were kept (format version 1) restore every message at version 0.
+ * Files are written through a large direct buffer to a temporary file, forced to disk and atomically renamed.
+ */
+public final class SnapshotFile {
+    static final int MAGIC = 0x4442534E; // "DBSN"
+    static final int VERSION = 2;
+    private static final int UNVERSIONED = 1;
+    private static final byte ACCOUNT = 1;
+    private static final byte MESSAGE = 2;
+    private static final byte END = 0;
+    private static final int HEADER_LENGTH = 16;
+    private static final int TRAILER_LENGTH = 1 + 8 + 8 + 4;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * Row counts and size of a snapshot.
+     */
+    public static final class Summary {
+        private final long accounts;
+        private final long messages;
+        private final long nextSequenceValue;
+        private final long bytes;
+
+        Summary(long accounts, long messages, long nextSequenceValue, long bytes) {
+            this.accounts = accounts;
+            this.messages = messages;
+            this.nextSequenceValue = nextSequenceValue;
+            this.bytes = bytes;
+        }
+
+        public long getAccounts() {
+            return accounts;
+        }
+
+        public long getMessages() {
+            return messages;
+        }
+
+        public long getNextSequenceValue() {
+            return nextSequenceValue;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+    }
+
+    /**
+     * Streams rows into a new snapshot. Nothing replaces the target until commit() succeeds.
+     */
+    public static final class Writer implements Closeable {
+        private final Path target;
+        private final Path temp;
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final CRC32C crc = new CRC32C();
+        private final long nextSequenceValue;
+        private long accounts;
+        private long messages;
+        private boolean committed;
+
+        public Writer(Path target, long nextSequenceValue) throws IOException {
+            this.target = target;
+            this.temp = target.resolveSibling(target.getFileName() + ".tmp");
+            this.nextSequenceValue = nextSequenceValue;
+            this.channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(nextSequenceValue);
+        }
+
+        public void writeAccount(Account account) throws IOException {
+            if (messages > 0) {
+                throw new IllegalStateException("Accounts must be written before messages");
+            }
+            byte[] username = utf8(account.getUsername());
+            byte[] password = utf8(account.getPassword());
+            ensure(1 + 4 + stringLength(username) + stringLength(password));
+            buffer.put(ACCOUNT).putInt(account.getAccountId());
+            putString(username);
+            putString(password);
+            accounts++;
+        }
+
+        public void writeMessage(Message message, long version) throws IOException {
+            byte[] text = utf8(message.getMessageText());
+            ensure(1 + 4 + 4 + 8 + 8 + 1 + stringLength(text));
+            byte nulls = (byte) ((message.getPostedBy() == null ? 1 : 0) | (message.getTimePostedEpoch() == null ? 2 : 0));
+            buffer.put(MESSAGE)
+                .putInt(message.getMessageId())
+                .putInt(message.getPostedBy() == null ? 0 : message.getPostedBy())
+                .putLong(message.getTimePostedEpoch() == null ? 0L : message.getTimePostedEpoch())
+                .putLong(version)
+                .put(nulls);
+            putString(text);
+            messages++;
+        }
+
+        /**
+         * Writes the trailer, forces the file to disk and moves it over the target.
+         *
+         * @return What was written
+         */
+        public Summary commit() throws IOException {
+            ensure(1 + 8 + 8);
+            buffer.put(END).putLong(accounts).putLong(messages);
+            flush();
+            ByteBuffer checksum = ByteBuffer.allocate(4).putInt((int) crc.getValue());
+            checksum.flip();
+            while (checksum.hasRemaining()) {
+                channel.write(checksum);
+            }
+            channel.force(true);
+            long bytes = channel.size();
+            channel.close();
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            committed = true;
+            return new Summary(accounts, messages, nextSequenceValue, bytes);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                channel.close();
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        private void putString(byte[] value) {
+            if (value == null) {
+                buffer.putInt(-1);
+            } else {
+                buffer.putInt(value.length).put(value);
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Checks the header and checksum of a snapshot without decoding its rows.
+     *
+     * @param path The snapshot file
+     * @return The snapshot's counts
+     * @throws IOException if the file cannot be read or is damaged
+     */
+    public static Summary verify(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_LENGTH + TRAILER_LENGTH) {
+                throw new IOException("Snapshot too short: " + path);
+            }
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            CRC32C crc = new CRC32C();
+            long remaining = size - 4;
+            while (remaining > 0) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), remaining));
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // fill the buffer
+                }
+                buffer.flip();
+                remaining -= buffer.remaining();
+                crc.update(buffer);
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            channel.read(header, 0);
+            header.flip();
+            int magic = header.getInt();
+            int version = header.getInt();
+            if (magic != MAGIC || (version != VERSION && version != UNVERSIONED)) {
+                throw new IOException("Not a database snapshot: " + path);
+            }
+            long nextSequenceValue = header.getLong();
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_LENGTH);
+            channel.read(trailer, size - trailer.capacity());
+            trailer.flip();
+            if (trailer.get() != END) {
+                throw new IOException("Truncated snapshot: " + path);
+            }
+            long accounts = trailer.getLong();
+            long messages = trailer.getLong();
+            if (trailer.getInt() != (int) crc.getValue()) {
+                throw new IOException("Snapshot checksum mismatch: " + path);
+            }
+            return new Summary(accounts, messages, nextSequenceValue, size);
+        }
+    }
+
+    /**
+     * Decodes every row of a snapshot in file order. Call verify first; this method does not check the checksum.
+     *
+     * @param path The snapshot file
+     * @param accounts Receives each account
+     * @param messages Receives each message with its version
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    public static void read(Path path, Consumer<Account> accounts, Consumer<VersionedMessage> messages)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).limit(0);
+            fill(channel, buffer, HEADER_LENGTH);
+            boolean versioned = buffer.getInt(buffer.position() + 4) == VERSION;
+            buffer.position(buffer.position() + HEADER_LENGTH);
+            while (true) {
+                fill(channel, buffer, 1);
+                byte type = buffer.get();
+                if (type == END) {
+                    return;
+                } else if (type == ACCOUNT) {
+                    fill(channel, buffer, 4);
+                    int accountId = buffer.getInt();
+                    String username = readString(channel, buffer);
+                    String password = readString(channel, buffer);
+                    accounts.accept(new Account(accountId, username, password));
+                } else if (type == MESSAGE) {
+                    fill(channel, buffer, 4 + 4 + 8 + (versioned ? 8 : 0) + 1);
+                    int messageId = buffer.getInt();
+                    int postedBy = buffer.getInt();
+                    long timePosted = buffer.getLong();
+                    long version = versioned ? buffer.getLong() : 0L;
+                    byte nulls = buffer.get();
+                    String text = readString(channel, buffer);
+                    messages.accept(new VersionedMessage(new Message(messageId, (nulls & 1) != 0 ? null : postedBy, text,
+                        (nulls & 2) != 0 ? null : timePosted), version));
+                } else {
+                    throw new IOException("Unknown record type " + type + " in " + path);
+                }
+            }
+        }
+    }
+
+    private static String readString(FileChannel channel, ByteBuffer buffer) throws IOException {
+        fill(channel, buffer, 4);
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        fill(channel, buffer, length);
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Makes sure at least the given number of unread bytes are in the buffer, which is kept in read mode.
+     */
+    private static void fill(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Unexpected end of snapshot");
+            }
+        }
+        buffer.flip();
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int stringLength(byte[] value) {
+        return 4 + (value == null ? 0 : value.length);
+    }
+}
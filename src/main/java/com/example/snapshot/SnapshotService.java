@@ -0,0 +1,247 @@
+package com.example.snapshot;
+
+import com.example.entity.Account;
+import com.example.entity.Message;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the in-memory database across restarts by snapshotting the account and message tables to snapshot.file.
+ * A snapshot is taken every snapshot.interval-ms and on shutdown. At startup, after data.sql has created the schema,
+ * an existing snapshot is verified and bulk-loaded with batched inserts in place of the seed rows, and
+ * hibernate_sequence is moved past the restored IDs. The load commits every snapshot.restore.batch-size rows;
+ * a damaged snapshot is logged and ignored, while a failure part way through the load stops startup.
+ * Throughput of both directions is logged and recorded as the db.snapshot timer.
+ * Only active when snapshot.enabled=true.
+ */
+@Service
+@ConditionalOnProperty(name = "snapshot.enabled", havingValue = "true")
+@DependsOn("dataSourceScriptDatabaseInitializer")
+public class SnapshotService {
+    private static final Logger log = LoggerFactory.getLogger(SnapshotService.class);
+
+    private final DataSource dataSource;
+    private final MeterRegistry meterRegistry;
+    private final Path file;
+    private final int batchSize;
+    private final boolean restoreOnStartup;
+
+    public SnapshotService(DataSource dataSource, MeterRegistry meterRegistry,
+                           @Value("${snapshot.file:snapshot/testdb.snap}") String file,
+                           @Value("${snapshot.restore.batch-size:5000}") int batchSize,
+                           @Value("${snapshot.restore-on-startup:true}") boolean restoreOnStartup) {
+        this.dataSource = dataSource;
+        this.meterRegistry = meterRegistry;
+        this.file = Paths.get(file);
+        this.batchSize = batchSize;
+        this.restoreOnStartup = restoreOnStartup;
+    }
+
+    /**
+     * Replaces the seed data with the last snapshot, if there is one.
+     */
+    @PostConstruct
+    public void restoreIfPresent() throws SQLException {
+        if (!restoreOnStartup || !Files.exists(file)) {
+            return;
+        }
+        SnapshotFile.Summary summary;
+        try {
+            summary = SnapshotFile.verify(file);
+        } catch (IOException e) {
+            log.error("Ignoring snapshot {}, starting from data.sql", file, e);
+            return;
+        }
+        restore(summary);
+    }
+
+    /**
+     * Takes a snapshot on the configured interval.
+     */
+    @Scheduled(initialDelayString = "${snapshot.interval-ms:300000}", fixedDelayString = "${snapshot.interval-ms:300000}")
+    public void scheduledSnapshot() {
+        try {
+            snapshot();
+        } catch (IOException | SQLException e) {
+            log.error("Snapshot to {} failed", file, e);
+        }
+    }
+
+    /**
+     * Takes a final snapshot while the connection pool is still open.
+     */
+    @PreDestroy
+    public void snapshotOnShutdown() {
+        scheduledSnapshot();
+    }
+
+    /**
+     * Writes both tables to the snapshot file. Runs in one repeatable-read transaction, so the file is
+     * a consistent point-in-time copy while writes continue.
+     *
+     * @return What was written
+     */
+    public synchronized SnapshotFile.Summary snapshot() throws IOException, SQLException {
+        long start = System.nanoTime();
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        SnapshotFile.Summary summary;
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            connection.setReadOnly(true);
+            try (SnapshotFile.Writer writer = new SnapshotFile.Writer(file, nextSequenceValue(connection));
+                 Statement statement = connection.createStatement()) {
+                statement.setFetchSize(batchSize);
+                try (ResultSet rows = statement.executeQuery(
+                        "SELECT accountId, username, password FROM account ORDER BY accountId")) {
+                    while (rows.next()) {
+                        writer.writeAccount(new Account(rows.getInt(1), rows.getString(2), rows.getString(3)));
+                    }
+                }
+                try (ResultSet rows = statement.executeQuery(
+                        "SELECT messageId, postedBy, messageText, timePostedEpoch, version FROM message ORDER BY messageId")) {
+                    while (rows.next()) {
+                        writer.writeMessage(new Message(rows.getInt(1), rows.getObject(2, Integer.class),
+                            rows.getString(3), rows.getObject(4, Long.class)), rows.getLong(5));
+                    }
+                }
+                summary = writer.commit();
+            } finally {
+                connection.commit();
+            }
+        }
+        report("write", summary, System.nanoTime() - start);
+        return summary;
+    }
+
+    private void restore(SnapshotFile.Summary summary) throws SQLException {
+        long start = System.nanoTime();
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("DELETE FROM message");
+                statement.executeUpdate("DELETE FROM account");
+            }
+            try (PreparedStatement accounts = connection.prepareStatement(
+                    "INSERT INTO account (accountId, username, password) VALUES (?, ?, ?)");
+                 PreparedStatement messages = connection.prepareStatement(
+                    "INSERT INTO message (messageId, postedBy, messageText, timePostedEpoch, version) "
+                        + "VALUES (?, ?, ?, ?, ?)")) {
+                BatchLoader loader = new BatchLoader(connection);
+                SnapshotFile.read(file, account -> loader.add(accounts, () -> {
+                    accounts.setInt(1, account.getAccountId());
+                    accounts.setString(2, account.getUsername());
+                    accounts.setString(3, account.getPassword());
+                }), row -> loader.add(messages, () -> {
+                    Message message = row.getMessage();
+                    messages.setInt(1, message.getMessageId());
+                    messages.setObject(2, message.getPostedBy(), Types.INTEGER);
+                    messages.setString(3, message.getMessageText());
+                    messages.setObject(4, message.getTimePostedEpoch(), Types.BIGINT);
+                    messages.setLong(5, row.getVersion());
+                }));
+                loader.flush();
+            } catch (IOException | UncheckedIOException e) {
+                connection.rollback();
+                throw new IllegalStateException("Could not restore snapshot " + file, e);
+            }
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("ALTER SEQUENCE hibernate_sequence RESTART WITH " + summary.getNextSequenceValue());
+            }
+            connection.commit();
+        }
+        report("restore", summary, System.nanoTime() - start);
+    }
+
+    private static long nextSequenceValue(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery(
+                 "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'HIBERNATE_SEQUENCE'")) {
+            return rows.next() ? rows.getLong(1) : 1L;
+        }
+    }
+
+    private void report(String operation, SnapshotFile.Summary summary, long nanos) {
+        Timer.builder("db.snapshot")
+            .tag("operation", operation)
+            .description("Time to write or restore a database snapshot")
+            .register(meterRegistry)
+            .record(nanos, TimeUnit.NANOSECONDS);
+        double seconds = Math.max(nanos, 1) / 1e9;
+        long rows = summary.getAccounts() + summary.getMessages();
+        log.info("Snapshot {} of {}: {} accounts, {} messages, {} KB in {} ms ({} rows/s, {} MB/s)", operation, file,
+            summary.getAccounts(), summary.getMessages(), summary.getBytes() / 1024, Math.round(seconds * 1000),
+            Math.round(rows / seconds), String.format("%.1f", summary.getBytes() / seconds / (1024 * 1024)));
+    }
+
+    /**
+     * Adds rows to JDBC batches and commits every snapshot.restore.batch-size rows, so the restore never
+     * builds one huge transaction. The pending batch is flushed whenever the target table changes, which keeps
+     * every account inserted before the messages that reference it.
+     * Row callbacks cannot throw SQLException, hence the unchecked wrapping.
+     */
+    private final class BatchLoader {
+        private final Connection connection;
+        private PreparedStatement current;
+        private int pending;
+
+        BatchLoader(Connection connection) {
+            this.connection = connection;
+        }
+
+        void add(PreparedStatement statement, SqlAction bind) {
+            try {
+                if (statement != current) {
+                    flush();
+                    current = statement;
+                }
+                bind.run();
+                statement.addBatch();
+                if (++pending >= batchSize) {
+                    flush();
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException("Could not restore snapshot " + file, e);
+            }
+        }
+
+        void flush() throws SQLException {
+            if (pending > 0) {
+                current.executeBatch();
+                connection.commit();
+                pending = 0;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface SqlAction {
+        void run() throws SQLException;
+    }
+}
@@ -10,8 +10,14 @@ create table message (
     postedBy int,
     messageText varchar(255),
     timePostedEpoch bigint,
+    -- Bumped by every edit; edits only apply to the version they read
+    version bigint not null default 0,
     foreign key (postedBy) references account(accountId)
 );
+-- Retention deletes expired rows oldest first in chunks; keeps each chunk a range scan
+create index message_timePostedEpoch on message(timePostedEpoch);
+-- Id source for new rows (also created by Hibernate when it generates the schema)
+create sequence if not exists hibernate_sequence start with 1 increment by 1;
 
 -- Starting test values with ids of 9999 to avoid test issues
 insert into account values (9999, 'testuser1', 'password');
@@ -19,7 +25,7 @@ insert into account values (9998, 'testuser2', 'password');
 insert into account values (9997, 'testuser3', 'password');
 insert into account values (9996, 'testuser4', 'password');
 
-insert into message values (9999, 9999,'test message 1',1669947792);
-insert into message values (9997, 9997,'test message 2',1669947792);
-insert into message values (9996, 9996,'test message 3',1669947792);
+insert into message (messageId, postedBy, messageText, timePostedEpoch) values (9999, 9999,'test message 1',1669947792);
+insert into message (messageId, postedBy, messageText, timePostedEpoch) values (9997, 9997,'test message 2',1669947792);
+insert into message (messageId, postedBy, messageText, timePostedEpoch) values (9996, 9996,'test message 3',1669947792);
 
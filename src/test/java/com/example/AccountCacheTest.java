@@ -0,0 +1,111 @@
+package com.example;
+
+import static com.example.QueryCountAssertions.assertQueryCount;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class AccountCacheTest {
+	ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    private HttpResponse<String> send(String path, String contentType, String body) throws IOException, InterruptedException {
+        return webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", contentType)
+                .build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> login(String username) throws IOException, InterruptedException {
+        return send("/login", "application/json", "{\"username\":\"" + username + "\",\"password\":\"password\"}");
+    }
+
+    private HttpResponse<String> register(String username) throws IOException, InterruptedException {
+        return send("/register", "application/json", "{\"username\":\"" + username + "\",\"password\":\"password\"}");
+    }
+
+    private double metric(String name, String region, String result) throws IOException, InterruptedException {
+        HttpResponse<String> response = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/actuator/metrics/" + name
+                        + (region == null ? "" : "?tag=region:" + region) + (region == null ? "?" : "&") + "tag=result:" + result))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode(), name);
+        JsonNode measurements = objectMapper.readTree(response.body()).get("measurements");
+        return measurements.get(0).get("value").asDouble();
+    }
+
+    /**
+     * Once an account has been looked up, further logins and posts find it in the cache instead of the account table.
+     */
+    @Test
+    public void repeatedLookupsSkipTheAccountTable() throws IOException, InterruptedException {
+        assertQueryCount(1, login("testuser1"));
+        HttpResponse<String> cached = login("testuser1");
+        Assertions.assertEquals(200, cached.statusCode());
+        assertQueryCount(0, cached);
+
+        String message = "{\"postedBy\":9999,\"messageText\":\"cached\",\"timePostedEpoch\":1669947792}";
+        HttpResponse<String> post = send("/messages", "application/json", message);
+        Assertions.assertEquals(200, post.statusCode());
+        assertQueryCount(2, post);
+
+        Assertions.assertTrue(metric("hibernate.second.level.cache.requests", "account", "hit") >= 2);
+        Assertions.assertEquals(1, metric("hibernate.cache.query.requests", null, "hit"));
+    }
+
+    /**
+     * A cached "no such user" answer is dropped when that user registers, so the new account can log in and its name
+     * cannot be taken twice.
+     */
+    @Test
+    public void registrationInvalidatesUsernameLookups() throws IOException, InterruptedException {
+        Assertions.assertEquals(401, login("latecomer").statusCode());
+        Assertions.assertEquals(401, login("latecomer").statusCode());
+        Assertions.assertEquals(200, register("latecomer").statusCode());
+
+        Assertions.assertEquals(200, login("latecomer").statusCode());
+        Assertions.assertEquals(409, register("latecomer").statusCode());
+    }
+
+    /**
+     * Accounts added by the bulk import, which bypasses Hibernate, are found even after a lookup cached their absence.
+     */
+    @Test
+    public void importInvalidatesUsernameLookups() throws IOException, InterruptedException {
+        Assertions.assertEquals(401, login("imported").statusCode());
+        Assertions.assertEquals(200, send("/accounts/import", "text/csv", "imported,password\n").statusCode());
+
+        Assertions.assertEquals(200, login("imported").statusCode());
+        Assertions.assertEquals(409, register("imported").statusCode());
+    }
+}
@@ -0,0 +1,115 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.dto.ImportReport;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class AccountImportTest {
+	ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Batches of 2 make the uploads below span several batches.
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {"--accounts.import.batch-size=2"};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    private ImportReport upload(String contentType, String body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/import"))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", contentType)
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode(), response.body());
+        return objectMapper.readValue(response.body(), ImportReport.class);
+    }
+
+    private int login(String username, String password) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/login"))
+                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(
+                        java.util.Map.of("username", username, "password", password))))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString()).statusCode();
+    }
+
+    /**
+     * Valid CSV lines are imported and can log in; bad lines and duplicates, whether of existing accounts or of
+     * earlier lines, are reported by line number.
+     */
+    @Test
+    public void importsCsvAndReportsBadLines() throws Exception {
+        String csv = "username,password\n"
+                + "importA,passA1\n"
+                + "\"import,B\",\"pa\"\"ss\"\n"
+                + "testuser1,password\n"
+                + "importC,abc\n"
+                + "\n"
+                + "importA,again1\n"
+                + "importD\n"
+                + "importE,passE1\n";
+        ImportReport report = upload("text/csv", csv);
+        Assertions.assertEquals(7, report.getLines());
+        Assertions.assertEquals(3, report.getImported());
+        Assertions.assertEquals(4, report.getFailed());
+        Assertions.assertEquals(List.of(4L, 5L, 7L, 8L), report.getErrors().stream()
+                .map(ImportReport.LineError::getLine)
+                .collect(Collectors.toList()));
+        Assertions.assertEquals("Username already exists", report.getErrors().get(0).getError());
+
+        Assertions.assertEquals(200, login("importA", "passA1"));
+        Assertions.assertEquals(200, login("import,B", "pa\"ss"));
+        Assertions.assertEquals(200, login("importE", "passE1"));
+        Assertions.assertEquals(401, login("importC", "abc"));
+
+        HttpRequest search = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/search?prefix=import"))
+                .build();
+        String found = webClient.send(search, HttpResponse.BodyHandlers.ofString()).body();
+        Assertions.assertTrue(found.contains("\"importE\""), found);
+    }
+
+    /**
+     * NDJSON uploads are accepted line by line in the same way.
+     */
+    @Test
+    public void importsNdjson() throws Exception {
+        String ndjson = "{\"username\":\"jsonA\",\"password\":\"secret\"}\n"
+                + "not json\n"
+                + "{\"username\":\"jsonB\",\"password\":\"secret\",\"extra\":1}\n";
+        ImportReport report = upload("application/x-ndjson", ndjson);
+        Assertions.assertEquals(3, report.getLines());
+        Assertions.assertEquals(2, report.getImported());
+        Assertions.assertEquals(2L, report.getErrors().get(0).getLine());
+        Assertions.assertEquals(200, login("jsonB", "secret"));
+    }
+}
@@ -0,0 +1,118 @@
+package com.example;
+
+import static com.example.QueryCountAssertions.assertQueryCount;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.dto.AccountStats;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class AccountStatsTest {
+	ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return webClient.send(HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path)).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private void post(int accountId, long timePosted) throws IOException, InterruptedException {
+        String json = "{\"postedBy\":" + accountId + ",\"messageText\": \"stats\",\"timePostedEpoch\": " + timePosted + "}";
+        webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.discarding());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/9999/stats before and after posting and deleting
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: counts loaded from data.sql, then updated without querying the message table
+     */
+    @Test
+    public void accountStatsFollowWrites() throws IOException, InterruptedException {
+        HttpResponse<String> response = get("/accounts/9999/stats");
+        Assertions.assertEquals(200, response.statusCode());
+        assertQueryCount(0, response);
+        AccountStats stats = objectMapper.readValue(response.body(), AccountStats.class);
+        Assertions.assertEquals(1, stats.getMessageCount());
+        Assertions.assertEquals(1669947792L, stats.getLastPostedEpoch());
+
+        post(9999, 1700000000L);
+        stats = objectMapper.readValue(get("/accounts/9999/stats").body(), AccountStats.class);
+        Assertions.assertEquals(2, stats.getMessageCount());
+        Assertions.assertEquals(1700000000L, stats.getLastPostedEpoch());
+
+        webClient.send(HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/messages/9999")).DELETE().build(),
+                HttpResponse.BodyHandlers.discarding());
+        stats = objectMapper.readValue(get("/accounts/9999/stats").body(), AccountStats.class);
+        Assertions.assertEquals(1, stats.getMessageCount());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/9998/stats (account has never posted)
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: zero count and no last post time
+     */
+    @Test
+    public void accountStatsNeverPosted() throws IOException, InterruptedException {
+        AccountStats stats = objectMapper.readValue(get("/accounts/9998/stats").body(), AccountStats.class);
+        Assertions.assertEquals(0, stats.getMessageCount());
+        Assertions.assertNull(stats.getLastPostedEpoch());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/top-posters?limit=2 after account 9998 posts twice
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: 9998 first, then one of the accounts with a single message
+     */
+    @Test
+    public void topPosters() throws IOException, InterruptedException {
+        post(9998, 1700000000L);
+        post(9998, 1700000001L);
+        HttpResponse<String> response = get("/accounts/top-posters?limit=2");
+        Assertions.assertEquals(200, response.statusCode());
+        assertQueryCount(0, response);
+        List<AccountStats> top = objectMapper.readValue(response.body(), new TypeReference<List<AccountStats>>(){});
+        Assertions.assertEquals(2, top.size());
+        Assertions.assertEquals(9998, top.get(0).getAccountId());
+        Assertions.assertEquals(2, top.get(0).getMessageCount());
+        Assertions.assertEquals(1, top.get(1).getMessageCount());
+    }
+}
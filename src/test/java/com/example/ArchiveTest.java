@@ -0,0 +1,135 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.archive.ArchiveService;
+import com.example.dto.AccountStats;
+import com.example.entity.Message;
+import com.example.repository.MessageRepository;
+import com.example.service.MessageCounterService;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class ArchiveTest {
+	ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Path archiveDirectory;
+
+    /**
+     * Before every test, start the app with archiving on and move the (old) seed messages to the cold tier.
+     * @throws Exception
+     */
+    @BeforeEach
+    public void setUp() throws Exception {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        archiveDirectory = Files.createTempDirectory("archive");
+        String[] args = new String[] {"--archive.enabled=true", "--archive.directory=" + archiveDirectory,
+            "--archive.max-age-days=1"};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Assertions.assertEquals(3, app.getBean(ArchiveService.class).archiveOnce());
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    /**
+     * After archiving, the hot table is empty but every read endpoint still returns the seed messages.
+     */
+    @Test
+    public void archivedMessagesAreStillServed() throws IOException, InterruptedException {
+        Assertions.assertEquals(0, app.getBean(MessageRepository.class).count());
+
+        List<Message> all = objectMapper.readValue(get("/messages").body(), new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(List.of(new Message(9996, 9996, "test message 3", 1669947792L),
+            new Message(9997, 9997, "test message 2", 1669947792L),
+            new Message(9999, 9999, "test message 1", 1669947792L)), all);
+
+        Assertions.assertEquals(new Message(9999, 9999, "test message 1", 1669947792L),
+            objectMapper.readValue(get("/messages/9999").body(), Message.class));
+        List<Message> byAccount = objectMapper.readValue(get("/accounts/9997/messages").body(),
+            new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(1, byAccount.size());
+
+        app.getBean(MessageCounterService.class).reconcile();
+        Assertions.assertEquals(1, objectMapper.readValue(get("/accounts/9999/stats").body(), AccountStats.class)
+            .getMessageCount());
+    }
+
+    /**
+     * Deleting an archived message hides it; editing one moves it back to the hot table under the same ID.
+     */
+    @Test
+    public void deleteAndUpdateArchivedMessages() throws IOException, InterruptedException {
+        HttpResponse<String> response = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/9997"))
+                .DELETE()
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals("1", response.body());
+        Assertions.assertEquals("", get("/messages/9997").body());
+
+        response = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/9999"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"messageText\": \"edited\"}"))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals("edited", objectMapper.readValue(get("/messages/9999").body(), Message.class)
+            .getMessageText());
+        Assertions.assertTrue(app.getBean(MessageRepository.class).existsById(9999));
+
+        List<Message> all = objectMapper.readValue(get("/messages").body(), new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(2, all.size());
+
+        // The edited message is old enough to be archived again, into a newer segment, and keeps its version there
+        Assertions.assertEquals(1, app.getBean(ArchiveService.class).archiveOnce());
+        HttpResponse<String> archived = get("/messages/9999");
+        Assertions.assertEquals("edited", objectMapper.readValue(archived.body(), Message.class).getMessageText());
+        Assertions.assertEquals("\"1\"", archived.headers().firstValue("ETag").orElse(""));
+
+        // An ETag from before the first edit must not match once the message has been unarchived again
+        Assertions.assertEquals(412, patch(9999, "stale", "\"0\"").statusCode());
+        response = patch(9999, "edited again", "\"1\"");
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals("\"2\"", response.headers().firstValue("ETag").orElse(""));
+
+        app.getBean(MessageCounterService.class).reconcile();
+        Assertions.assertEquals(0, objectMapper.readValue(get("/accounts/9997/stats").body(), AccountStats.class)
+            .getMessageCount());
+        Assertions.assertEquals(1, objectMapper.readValue(get("/accounts/9999/stats").body(), AccountStats.class)
+            .getMessageCount());
+    }
+
+    private HttpResponse<String> patch(int messageId, String text, String ifMatch) throws IOException, InterruptedException {
+        return webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/" + messageId))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"messageText\": \"" + text + "\"}"))
+                .header("Content-Type", "application/json")
+                .header("If-Match", ifMatch)
+                .build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+        private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return webClient.send(HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path)).build(),
+            HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,182 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.dto.AccountStats;
+import com.example.invalidation.InvalidationBatch;
+import com.example.invalidation.InvalidationKey;
+import com.example.invalidation.UdpInvalidationBus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+public class CacheInvalidationTest {
+	ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    UdpInvalidationBus peer;
+    LinkedBlockingQueue<InvalidationBatch> received = new LinkedBlockingQueue<>();
+
+    /**
+     * The app listens on 7301 and publishes to 7302, where the test plays the other node.
+     */
+    @BeforeEach
+    public void setUp() throws Exception {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        peer = new UdpInvalidationBus(new InetSocketAddress("127.0.0.1", 7302),
+            List.of(new InetSocketAddress("127.0.0.1", 7301)));
+        peer.subscribe(received::add);
+        String[] args = new String[] {"--invalidation.enabled=true", "--invalidation.udp.port=7301",
+            "--invalidation.udp.peers=127.0.0.1:7302"};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+        peer.close();
+    }
+
+    /**
+     * An edit publishes the message and its poster in one batch.
+     */
+    @Test
+    public void writesArePublished() throws Exception {
+        HttpResponse<String> response = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/9999"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"messageText\": \"edited\"}"))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+
+        InvalidationBatch batch = received.poll(2, TimeUnit.SECONDS);
+        Assertions.assertNotNull(batch, "Expected an invalidation batch");
+        Assertions.assertEquals(Set.of(InvalidationKey.message(9999), InvalidationKey.account(9999)),
+            Set.copyOf(batch.getKeys()));
+    }
+
+    /**
+     * An import publishes all accounts of a batch together.
+     */
+    @Test
+    public void importedAccountsArePublishedPerBatch() throws Exception {
+        HttpResponse<String> response = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/import"))
+                .POST(HttpRequest.BodyPublishers.ofString("imported1,password\nimported2,password\nimported3,password\n"))
+                .header("Content-Type", "text/csv")
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+
+        InvalidationBatch batch = received.poll(2, TimeUnit.SECONDS);
+        Assertions.assertNotNull(batch, "Expected an invalidation batch");
+        Assertions.assertEquals(3, batch.getKeys().size());
+        batch.getKeys().forEach(key -> Assertions.assertEquals(InvalidationKey.Kind.ACCOUNT, key.getKind()));
+    }
+
+    /**
+     * A write made by another node is invisible to this node's stats until that node's invalidation arrives.
+     */
+    @Test
+    public void remoteInvalidationsAreApplied() throws Exception {
+        try (Connection connection = app.getBean(DataSource.class).getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate("INSERT INTO message (messageId, postedBy, messageText, timePostedEpoch) "
+                + "VALUES (5000, 9998, 'from another node', 1669947800)");
+        }
+        Assertions.assertEquals(0L, stats(9998).getMessageCount());
+
+        peer.publish(new InvalidationBatch(42L, System.currentTimeMillis(), List.of(InvalidationKey.account(9998))));
+        long deadline = System.currentTimeMillis() + 2000;
+        while (stats(9998).getMessageCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        AccountStats stats = stats(9998);
+        Assertions.assertEquals(1L, stats.getMessageCount());
+        Assertions.assertEquals(1669947800L, stats.getLastPostedEpoch());
+        Assertions.assertEquals(1L, app.getBean(MeterRegistry.class).timer("cache.invalidation.propagation").count());
+    }
+
+    /**
+     * An account registered on another node shows up in this node's username search once its invalidation arrives.
+     */
+    @Test
+    public void remoteAccountsBecomeSearchable() throws Exception {
+        try (Connection connection = app.getBean(DataSource.class).getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate("INSERT INTO account (accountId, username, password) VALUES (5000, 'remoteuser', 'password')");
+        }
+        Assertions.assertEquals("[]", search("remote"));
+
+        peer.publish(new InvalidationBatch(42L, System.currentTimeMillis(), List.of(InvalidationKey.account(5000))));
+        long deadline = System.currentTimeMillis() + 2000;
+        while (search("remote").equals("[]") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        Assertions.assertEquals("[{\"accountId\":5000,\"username\":\"remoteuser\"}]", search("remote"));
+    }
+
+    /**
+     * A "no such user" answer cached on this node is dropped when another node's registration of that name arrives,
+     * so the account can log in here and the name cannot be registered again.
+     */
+    @Test
+    public void remoteAccountsCanLogIn() throws Exception {
+        Assertions.assertEquals(401, post("/login", "remotelogin").statusCode());
+        Assertions.assertEquals(401, post("/login", "remotelogin").statusCode());
+        try (Connection connection = app.getBean(DataSource.class).getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate("INSERT INTO account (accountId, username, password) VALUES (5001, 'remotelogin', 'password')");
+        }
+
+        peer.publish(new InvalidationBatch(43L, System.currentTimeMillis(), List.of(InvalidationKey.account(5001))));
+        long deadline = System.currentTimeMillis() + 2000;
+        while (post("/login", "remotelogin").statusCode() != 200 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        Assertions.assertEquals(200, post("/login", "remotelogin").statusCode());
+        Assertions.assertEquals(409, post("/register", "remotelogin").statusCode());
+    }
+
+    private HttpResponse<String> post(String path, String username) throws IOException, InterruptedException {
+        return webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"" + username + "\",\"password\":\"password\"}"))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private String search(String prefix) throws IOException, InterruptedException {
+        return webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/search?prefix=" + prefix)).build(),
+                HttpResponse.BodyHandlers.ofString()).body();
+    }
+
+    private AccountStats stats(int accountId) throws IOException, InterruptedException {
+        return objectMapper.readValue(webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/" + accountId + "/stats")).build(),
+                HttpResponse.BodyHandlers.ofString()).body(), AccountStats.class);
+    }
+}
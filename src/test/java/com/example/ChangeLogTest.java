@@ -0,0 +1,197 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.changelog.ChangeLog;
+import com.example.dto.ChangeEvent;
+import com.example.dto.ChangePage;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class ChangeLogTest {
+	ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Path changeLogDirectory;
+
+    /**
+     * Before every test, start the app with the change log on; it begins with the 4 seed accounts and 3 seed messages.
+     */
+    @BeforeEach
+    public void setUp() throws Exception {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        changeLogDirectory = Files.createTempDirectory("changelog");
+        app = SpringApplication.run(SocialMediaApp.class, args());
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    private String[] args() {
+        return new String[] {"--changelog.enabled=true", "--changelog.directory=" + changeLogDirectory};
+    }
+
+    /**
+     * Every write is recorded in order and a consumer can page through the log by passing nextOffset back.
+     */
+    @Test
+    public void writesAreTailedFromOffsets() throws IOException, InterruptedException {
+        JsonNode baseline = changes("?from=0");
+        Assertions.assertEquals(7, baseline.get("events").size());
+        Assertions.assertEquals("ACCOUNT_CREATED", baseline.get("events").get(0).get("type").asText());
+        Assertions.assertEquals("MESSAGE_CREATED", baseline.get("events").get(6).get("type").asText());
+        Assertions.assertFalse(baseline.get("events").get(0).has("password"));
+        long from = baseline.get("nextOffset").asLong();
+        Assertions.assertEquals(from, baseline.get("endOffset").asLong());
+
+        send("/register", "POST", "{\"username\":\"changelog\",\"password\":\"password\"}");
+        String posted = send("/messages", "POST",
+            "{\"postedBy\":9999,\"messageText\": \"first\",\"timePostedEpoch\": 1700000000}").body();
+        int messageId = objectMapper.readTree(posted).get("messageId").asInt();
+        send("/messages/" + messageId, "PATCH", "{\"messageText\": \"second\"}");
+        send("/messages/" + messageId, "DELETE", null);
+        send("/accounts/9997/messages", "DELETE", null);
+
+        JsonNode tail = changes("?from=" + from);
+        List<String> types = new ArrayList<>();
+        tail.get("events").forEach(event -> types.add(event.get("type").asText()));
+        Assertions.assertEquals(List.of("ACCOUNT_CREATED", "MESSAGE_CREATED", "MESSAGE_UPDATED", "MESSAGE_DELETED",
+            "ACCOUNT_MESSAGES_DELETED"), types);
+        JsonNode update = tail.get("events").get(2);
+        Assertions.assertEquals(messageId, update.get("messageId").asInt());
+        Assertions.assertEquals("second", update.get("messageText").asText());
+        Assertions.assertEquals(1, update.get("version").asLong());
+        Assertions.assertEquals(from, tail.get("events").get(0).get("offset").asLong());
+        Assertions.assertEquals(tail.get("nextOffset").asLong(), tail.get("endOffset").asLong());
+
+        JsonNode page = changes("?from=" + from + "&limit=2");
+        Assertions.assertEquals(2, page.get("events").size());
+        Assertions.assertEquals(tail.get("events").get(2).get("offset").asLong(), page.get("nextOffset").asLong());
+        Assertions.assertEquals("MESSAGE_UPDATED",
+            changes("?from=" + page.get("nextOffset").asLong() + "&limit=1").get("events").get(0).get("type").asText());
+
+        Assertions.assertEquals(400, get("/changes?from=" + (from + 1)).statusCode());
+        Assertions.assertEquals(400, get("/changes?from=" + (tail.get("endOffset").asLong() + 1)).statusCode());
+    }
+
+    /**
+     * A caught-up reader waiting with waitMs gets the next change as soon as it is written.
+     */
+    @Test
+    public void caughtUpReaderWaitsForTheNextChange() throws Exception {
+        long end = changes("?from=0").get("endOffset").asLong();
+        CompletableFuture<HttpResponse<String>> poll = webClient.sendAsync(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/changes?from=" + end + "&waitMs=10000"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Thread.sleep(200);
+        send("/register", "POST", "{\"username\":\"waiting\",\"password\":\"password\"}");
+
+        JsonNode page = objectMapper.readTree(poll.get().body());
+        Assertions.assertEquals(1, page.get("events").size());
+        Assertions.assertEquals("waiting", page.get("events").get(0).get("username").asText());
+    }
+
+    /**
+     * A restart keeps the log and does not write the baseline again; the username index is rebuilt from it.
+     */
+    @Test
+    public void restartReplaysTheLog() throws IOException, InterruptedException {
+        long end = changes("?from=0").get("endOffset").asLong();
+        SpringApplication.exit(app);
+        app = SpringApplication.run(SocialMediaApp.class, args());
+        Thread.sleep(500);
+
+        Assertions.assertEquals(end, changes("?from=0").get("endOffset").asLong());
+        Assertions.assertEquals(4, objectMapper.readTree(get("/accounts/search?prefix=testuser").body()).size());
+    }
+
+    /**
+     * Records are spread over rolled segments, and a torn record left at the end by a crash is cut off when the log
+     * is reopened, so appending carries on from the last intact event.
+     */
+    @Test
+    public void tornTailIsCutOnOpen() throws IOException {
+        Path directory = Files.createTempDirectory("changelog");
+        ChangeLog log = open(directory);
+        for (int i = 0; i < 20; i++) {
+            log.append(ChangeEvent.accountCreated(i, "user" + i));
+        }
+        long end = log.getEndOffset();
+        log.close();
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(directory)) {
+            segments = files.sorted().collect(Collectors.toList());
+        }
+        Assertions.assertTrue(segments.size() > 1, "Segments should roll");
+        try (FileChannel last = FileChannel.open(segments.get(segments.size() - 1), StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            last.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 40, 1, 2, 3, 4, '{'}));
+        }
+
+        log = open(directory);
+        Assertions.assertEquals(end, log.getEndOffset());
+        log.append(ChangeEvent.accountCreated(20, "user20"));
+        List<ChangeEvent> replayed = new ArrayList<>();
+        Assertions.assertEquals(log.getEndOffset(), log.replay(0, replayed::add));
+        Assertions.assertEquals(21, replayed.size());
+        Assertions.assertEquals("user20", replayed.get(20).getUsername());
+        ChangePage page = log.read(replayed.get(10).getOffset(), 1, 0);
+        Assertions.assertEquals("user10", page.getEvents().get(0).getUsername());
+        log.close();
+    }
+
+    private static ChangeLog open(Path directory) throws IOException {
+        ChangeLog log = new ChangeLog(new ObjectMapper(), new SimpleMeterRegistry(), true, directory.toString(), 256);
+        log.open();
+        return log;
+    }
+
+    private JsonNode changes(String query) throws IOException, InterruptedException {
+        HttpResponse<String> response = get("/changes" + query);
+        Assertions.assertEquals(200, response.statusCode());
+        return objectMapper.readTree(response.body());
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return webClient.send(HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path)).build(),
+            HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> send(String path, String method, String json) throws IOException, InterruptedException {
+        HttpResponse<String> response = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .method(method, json == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        return response;
+    }
+}
@@ -0,0 +1,92 @@
+package com.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.archive.ColdSegment;
+import com.example.archive.ColdSegmentWriter;
+import com.example.dto.VersionedMessage;
+import com.example.entity.Message;
+
+public class ColdSegmentTest {
+    @TempDir
+    Path directory;
+
+    /**
+     * Messages written across several blocks can be read back by ID, by poster and in full.
+     */
+    @Test
+    public void roundTripAcrossBlocks() throws IOException {
+        List<Message> messages = new ArrayList<>();
+        List<VersionedMessage> records = new ArrayList<>();
+        for (int id = 1; id <= 1000; id++) {
+            messages.add(new Message(id * 2, id % 7, id == 500 ? null : "message " + id + " é", 1600000000L + id));
+            records.add(new VersionedMessage(messages.get(id - 1), id % 3));
+        }
+        Path file = directory.resolve("segment.seg");
+        ColdSegmentWriter.write(file, records, 64);
+        ColdSegment segment = ColdSegment.open(file);
+
+        Assertions.assertEquals(1000, segment.getMessageCount());
+        Assertions.assertEquals(2, segment.getFirstMessageId());
+        Assertions.assertEquals(2000, segment.getLastMessageId());
+        Assertions.assertEquals(messages.get(122), segment.findById(246));
+        Assertions.assertEquals("message 123 é", segment.findById(246).getMessageText());
+        Assertions.assertNull(segment.findById(1000).getMessageText());
+        Assertions.assertEquals(0L, segment.findVersionedById(246).getVersion());
+        Assertions.assertEquals(2L, segment.findVersionedById(1000).getVersion());
+        Assertions.assertNull(segment.findById(247));
+        Assertions.assertNull(segment.findById(5000));
+        Map<Integer, Message> found = segment.findByIds(List.of(246, 247, 2000, 5000));
+        Assertions.assertEquals(Set.of(246, 2000), found.keySet());
+        Assertions.assertEquals(messages.get(999), found.get(2000));
+
+        List<Message> byPoster = segment.findByPostedBy(3);
+        Assertions.assertEquals(143, byPoster.size());
+        byPoster.forEach(message -> Assertions.assertEquals(3, message.getPostedBy()));
+        Assertions.assertEquals(143, segment.accountTotals().get(3)[0]);
+        Assertions.assertEquals(1600000000L + 997, segment.accountTotals().get(3)[1]);
+        Assertions.assertArrayEquals(segment.accountTotals().get(3), segment.accountTotal(3));
+        Assertions.assertNull(segment.accountTotal(5000));
+        Assertions.assertEquals(messages, segment.findAll());
+        Assertions.assertTrue(Files.size(file) < 1000 * 30, "Blocks should be compressed");
+    }
+
+    /**
+     * A message without a poster or post time is refused rather than archived with made-up values.
+     */
+    @Test
+    public void incompleteMessagesAreRejected() {
+        Path file = directory.resolve("segment.seg");
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> ColdSegmentWriter.write(file, List.of(new VersionedMessage(new Message(1, null, "no poster", 1600000000L), 0L)), 64));
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> ColdSegmentWriter.write(file, List.of(new VersionedMessage(new Message(1, 1, "no time", null), 0L)), 64));
+        Assertions.assertFalse(Files.exists(file));
+    }
+
+    /**
+     * A segment whose index was damaged is rejected when opened.
+     */
+    @Test
+    public void corruptIndexIsRejected() throws IOException {
+        Path file = directory.resolve("segment.seg");
+        ColdSegmentWriter.write(file, List.of(new VersionedMessage(new Message(1, 1, "hello", 1L), 0L)), 64);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0x7F}), channel.size() - 1);
+        }
+        Assertions.assertThrows(IOException.class, () -> ColdSegment.open(file));
+    }
+}
@@ -0,0 +1,88 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.datasource.AdaptivePoolSizer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+public class ConnectionPoolMetricsTest {
+	ApplicationContext app;
+    HttpClient webClient;
+
+    /**
+     * Before every test, restart the app with adaptive pool sizing switched on.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        String[] args = new String[] {"--datasource.adaptive.enabled=true", "--datasource.adaptive.min-size=2",
+                "--datasource.adaptive.max-size=12"};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/actuator/metrics/hikaricp.connections.pending
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the metric, tagged with the pool name
+     */
+    @Test
+    public void poolMetricsPublished() throws IOException, InterruptedException {
+        webClient.send(HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/messages")).build(),
+                HttpResponse.BodyHandlers.discarding());
+        for (String metric : new String[] {"hikaricp.connections.active", "hikaricp.connections.idle",
+                "hikaricp.connections.pending", "hikaricp.connections.acquire", "hikaricp.connections.usage",
+                "hikaricp.adaptive.max.size"}) {
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/actuator/metrics/" + metric))
+                    .build();
+            HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+            Assertions.assertEquals(200, response.statusCode(), "Expected metric " + metric + " to be published");
+            Assertions.assertTrue(response.body().contains("SocialMediaPool"), "Expected the pool tag on " + metric);
+        }
+    }
+
+    /**
+     * The sizer grows the pool while callers wait, refuses to grow when connection hold times spike,
+     * and shrinks after several quiet intervals, always within the configured bounds.
+     */
+    @Test
+    public void adaptiveSizingDecisions() throws SQLException {
+        Assertions.assertNotNull(app.getBean(AdaptivePoolSizer.class));
+        AdaptivePoolSizer sizer = new AdaptivePoolSizer(app.getBean(DataSource.class), app.getBean(MeterRegistry.class),
+                2, 12, 2, 2.0, 3.0);
+        Assertions.assertEquals(12, sizer.nextPoolSize(10, 1.0, 4, 0, 1.0));
+        Assertions.assertEquals(12, sizer.nextPoolSize(12, 50.0, 8, 0, 1.0));
+        Assertions.assertEquals(6, sizer.nextPoolSize(6, 50.0, 8, 0, 40.0));
+        int size = 6;
+        for (int i = 0; i < 3; i++) {
+            size = sizer.nextPoolSize(size, 0.0, 0, 5, 1.0);
+        }
+        Assertions.assertEquals(5, size);
+        Assertions.assertEquals(2, sizer.nextPoolSize(1, 0.0, 0, 0, 1.0));
+    }
+}
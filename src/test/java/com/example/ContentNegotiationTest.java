@@ -0,0 +1,133 @@
+package com.example;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.entity.Message;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+public class ContentNegotiationTest {
+	ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    ObjectMapper cborMapper;
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        cborMapper = new ObjectMapper(new CBORFactory());
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    private HttpResponse<byte[]> get(String path, String accept) throws IOException, InterruptedException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path));
+        if (accept != null) {
+            builder.header("Accept", accept);
+        }
+        return webClient.send(builder.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    /**
+     * Accept: application/cbor returns the same data as JSON, encoded as CBOR, for lists and single objects;
+     * without an Accept header the response is still JSON.
+     */
+    @Test
+    public void cborIsNegotiated() throws Exception {
+        HttpResponse<byte[]> json = get("/messages", null);
+        Assertions.assertTrue(json.headers().firstValue("Content-Type").orElse("").startsWith("application/json"));
+        List<Message> expected = objectMapper.readValue(json.body(), new TypeReference<List<Message>>() {});
+
+        HttpResponse<byte[]> cbor = get("/messages", "application/cbor");
+        Assertions.assertEquals(200, cbor.statusCode());
+        Assertions.assertEquals("application/cbor", cbor.headers().firstValue("Content-Type").orElse(""));
+        Assertions.assertEquals(expected, cborMapper.readValue(cbor.body(), new TypeReference<List<Message>>() {}));
+        Assertions.assertTrue(cbor.body().length < json.body().length);
+
+        HttpResponse<byte[]> single = get("/messages/9999", "application/cbor");
+        Assertions.assertEquals(9999, cborMapper.readValue(single.body(), Message.class).getMessageId());
+
+        HttpRequest post = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(
+                        cborMapper.writeValueAsBytes(new Message(9999, "sent as cbor", 1669947792L))))
+                .header("Content-Type", "application/cbor")
+                .header("Accept", "application/cbor")
+                .build();
+        HttpResponse<byte[]> created = webClient.send(post, HttpResponse.BodyHandlers.ofByteArray());
+        Assertions.assertEquals(200, created.statusCode());
+        Assertions.assertEquals("sent as cbor", cborMapper.readValue(created.body(), Message.class).getMessageText());
+    }
+
+    /**
+     * Accept: application/x-cbor-frames returns a list as length-prefixed CBOR frames, one message each.
+     */
+    @Test
+    public void listsAreFramed() throws Exception {
+        List<Message> expected = objectMapper.readValue(get("/messages", null).body(),
+                new TypeReference<List<Message>>() {});
+
+        HttpResponse<byte[]> framed = get("/messages", "application/x-cbor-frames");
+        Assertions.assertEquals(200, framed.statusCode());
+        Assertions.assertEquals("application/x-cbor-frames", framed.headers().firstValue("Content-Type").orElse(""));
+        List<Message> decoded = new ArrayList<>();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(framed.body()));
+        while (in.available() > 0) {
+            byte[] frame = new byte[in.readInt()];
+            in.readFully(frame);
+            decoded.add(cborMapper.readValue(frame, Message.class));
+        }
+        Assertions.assertEquals(expected, decoded);
+
+        Assertions.assertEquals(406, get("/messages/9999", "application/x-cbor-frames").statusCode());
+    }
+
+    /**
+     * Error bodies are negotiated like any other response: CBOR when asked for, JSON otherwise.
+     */
+    @Test
+    public void errorsAreNegotiated() throws Exception {
+        byte[] credentials = objectMapper.writeValueAsBytes(Map.of("username", "nobody", "password", "password"));
+        for (String accept : new String[] {"application/cbor", "application/json", null}) {
+            HttpRequest.Builder builder = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/login"))
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(credentials))
+                    .header("Content-Type", "application/json");
+            if (accept != null) {
+                builder.header("Accept", accept);
+            }
+            HttpResponse<byte[]> response = webClient.send(builder.build(), HttpResponse.BodyHandlers.ofByteArray());
+            Assertions.assertEquals(401, response.statusCode());
+            boolean cbor = "application/cbor".equals(accept);
+            Assertions.assertEquals(cbor ? "application/cbor" : "application/json",
+                    response.headers().firstValue("Content-Type").orElse(""));
+            ObjectMapper mapper = cbor ? cborMapper : objectMapper;
+            Assertions.assertEquals("401 UNAUTHORIZED", mapper.readTree(response.body()).get("status").asText());
+        }
+    }
+}
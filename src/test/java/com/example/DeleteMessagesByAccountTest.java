@@ -0,0 +1,99 @@
+package com.example;
+
+import static com.example.QueryCountAssertions.assertQueryCount;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.entity.Message;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class DeleteMessagesByAccountTest {
+	ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before every test, restart the app with a tiny chunk size so a purge spans several chunks.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {"--messages.bulk-delete.chunk-size=2"};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending an http request to DELETE localhost:8080/accounts/9999/messages after posting 3 more messages
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: 4 (rows deleted over 3 chunked statements), and the account has no messages left
+     */
+    @Test
+    public void deleteMessagesByAccountInChunks() throws IOException, InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            String json = "{\"postedBy\":9999,\"messageText\": \"bulk " + i + "\",\"timePostedEpoch\": 1669947792}";
+            webClient.send(HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages"))
+                    .POST(HttpRequest.BodyPublishers.ofString(json))
+                    .header("Content-Type", "application/json")
+                    .build(), HttpResponse.BodyHandlers.discarding());
+        }
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/9999/messages"))
+                .DELETE()
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        int status = response.statusCode();
+        Assertions.assertEquals(200, status, "Expected Status Code 200 - Actual Code was: " + status);
+        Assertions.assertEquals(4, objectMapper.readValue(response.body(), Integer.class));
+        assertQueryCount(3, response);
+
+        HttpResponse<String> remaining = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/9999/messages"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        List<Message> messages = objectMapper.readValue(remaining.body(), new TypeReference<List<Message>>(){});
+        Assertions.assertTrue(messages.isEmpty(), "Expected no messages left, but found " + messages);
+    }
+
+    /**
+     * Sending an http request to DELETE localhost:8080/accounts/9998/messages (account has no messages)
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: 0
+     */
+    @Test
+    public void deleteMessagesByAccountNoMessages() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/9998/messages"))
+                .DELETE()
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        int status = response.statusCode();
+        Assertions.assertEquals(200, status, "Expected Status Code 200 - Actual Code was: " + status);
+        Assertions.assertEquals(0, objectMapper.readValue(response.body(), Integer.class));
+    }
+}
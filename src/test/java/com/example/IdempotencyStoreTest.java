@@ -0,0 +1,46 @@
+package com.example;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.example.idempotency.IdempotencyStore;
+
+public class IdempotencyStoreTest {
+
+    /**
+     * A full store keeps the claims of requests still running, so their retries never run them a second time,
+     * and refuses new keys until one of them finishes.
+     */
+    @Test
+    public void runningClaimsAreNeverEvicted() {
+        IdempotencyStore store = new IdempotencyStore(2, TimeUnit.MINUTES.toNanos(5));
+        IdempotencyStore.Entry first = store.claim("first");
+        Assertions.assertNotNull(store.claim("second"));
+
+        Assertions.assertSame(IdempotencyStore.FULL, store.claim("third"));
+        Assertions.assertNull(store.claim("first"), "A retry should find the running claim");
+        Assertions.assertSame(first, store.get("first"));
+
+        store.complete(first, new IdempotencyStore.StoredResponse(200, "application/json", new byte[0], new byte[0]));
+        IdempotencyStore.Entry third = store.claim("third");
+        Assertions.assertNotNull(third);
+        Assertions.assertNotSame(IdempotencyStore.FULL, third);
+        Assertions.assertNull(store.get("first"), "The finished claim should make room");
+        Assertions.assertEquals(2, store.size());
+    }
+
+    /**
+     * Abandoned claims free their room right away.
+     */
+    @Test
+    public void abandonedClaimsMakeRoom() {
+        IdempotencyStore store = new IdempotencyStore(1, TimeUnit.MINUTES.toNanos(5));
+        store.abandon(store.claim("first"));
+
+        IdempotencyStore.Entry second = store.claim("second");
+        Assertions.assertNotSame(IdempotencyStore.FULL, second);
+        Assertions.assertNotNull(second);
+    }
+}
@@ -0,0 +1,131 @@
+package com.example;
+
+import static com.example.QueryCountAssertions.assertQueryCount;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.entity.Account;
+import com.example.entity.Message;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class IdempotencyTest {
+	ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    private HttpRequest post(String path, String json, String key) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json");
+        if (key != null) {
+            builder.header("Idempotency-Key", key);
+        }
+        return builder.build();
+    }
+
+    /**
+     * A retried post returns the original response and creates no second message; concurrent retries agree.
+     */
+    @Test
+    public void retriedPostCreatesOneMessage() throws Exception {
+        String json = "{\"postedBy\":9999,\"messageText\": \"once\",\"timePostedEpoch\": 1669947792}";
+        HttpResponse<String> first = webClient.send(post("/messages", json, "key-1"), HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> retry = webClient.send(post("/messages", json, "key-1"), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, retry.statusCode());
+        Assertions.assertEquals(first.body(), retry.body());
+        Assertions.assertEquals("true", retry.headers().firstValue("Idempotent-Replayed").orElse(""));
+        assertQueryCount(0, retry);
+
+        List<CompletableFuture<HttpResponse<String>>> concurrent = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            concurrent.add(webClient.sendAsync(post("/messages", json, "key-2"), HttpResponse.BodyHandlers.ofString()));
+        }
+        Set<String> bodies = new HashSet<>();
+        for (CompletableFuture<HttpResponse<String>> response : concurrent) {
+            Assertions.assertEquals(200, response.get().statusCode());
+            bodies.add(response.get().body());
+        }
+        Assertions.assertEquals(1, bodies.size());
+
+        List<Message> messages = objectMapper.readValue(webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/9999/messages")).build(),
+                HttpResponse.BodyHandlers.ofString()).body(), new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(3, messages.size());
+    }
+
+    /**
+     * A retried registration replays the created account instead of failing as a duplicate username;
+     * the same request under another key or without one still conflicts.
+     */
+    @Test
+    public void retriedRegistrationReplaysTheAccount() throws Exception {
+        String json = "{\"username\":\"retry-user\",\"password\":\"secret\"}";
+        HttpResponse<String> first = webClient.send(post("/register", json, "reg-1"), HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> retry = webClient.send(post("/register", json, "reg-1"), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, retry.statusCode());
+        Assertions.assertEquals(objectMapper.readValue(first.body(), Account.class),
+            objectMapper.readValue(retry.body(), Account.class));
+        Assertions.assertEquals(409, webClient.send(post("/register", json, "reg-2"), HttpResponse.BodyHandlers.ofString()).statusCode());
+        Assertions.assertEquals(409, webClient.send(post("/register", json, null), HttpResponse.BodyHandlers.ofString()).statusCode());
+        Assertions.assertEquals(400, webClient.send(post("/register", json, "k".repeat(300)),
+            HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    /**
+     * Reusing a key with a different body is refused instead of being answered with the first body's response.
+     * Streamed imports are covered too.
+     */
+    @Test
+    public void reusedKeyWithAnotherBodyIsRefused() throws Exception {
+        String json = "{\"postedBy\":9999,\"messageText\": \"first\",\"timePostedEpoch\": 1669947792}";
+        Assertions.assertEquals(200, webClient.send(post("/messages", json, "key-3"), HttpResponse.BodyHandlers.ofString()).statusCode());
+        HttpResponse<String> changed = webClient.send(post("/messages", json.replace("first", "second"), "key-3"),
+            HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(422, changed.statusCode());
+
+        HttpRequest importRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/import"))
+                .POST(HttpRequest.BodyPublishers.ofString("import-once,password\n"))
+                .header("Content-Type", "text/csv")
+                .header("Idempotency-Key", "import-1")
+                .build();
+        HttpResponse<String> imported = webClient.send(importRequest, HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> retried = webClient.send(importRequest, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, retried.statusCode());
+        Assertions.assertEquals(imported.body(), retried.body());
+        Assertions.assertEquals("true", retried.headers().firstValue("Idempotent-Replayed").orElse(""));
+    }
+}
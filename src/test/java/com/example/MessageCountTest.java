@@ -0,0 +1,91 @@
+package com.example;
+
+import static com.example.QueryCountAssertions.assertQueryCount;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.controller.SocialMediaController;
+
+public class MessageCountTest {
+	ApplicationContext app;
+    HttpClient webClient;
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    private HttpResponse<String> head(String path) throws IOException, InterruptedException {
+        return webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static long totalCount(HttpResponse<?> response) {
+        return Long.parseLong(response.headers().firstValue(SocialMediaController.TOTAL_COUNT_HEADER)
+                .orElseThrow(() -> new AssertionError("Response has no total count header")));
+    }
+
+    /**
+     * HEAD on the list endpoints and GET /messages/count answer from the counters without running a statement,
+     * and follow later writes.
+     */
+    @Test
+    public void countsComeFromCounters() throws IOException, InterruptedException {
+        HttpResponse<String> all = head("/messages");
+        Assertions.assertEquals(200, all.statusCode());
+        Assertions.assertEquals(3, totalCount(all));
+        Assertions.assertEquals("", all.body());
+        assertQueryCount(0, all);
+
+        HttpResponse<String> count = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/count"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, count.statusCode());
+        Assertions.assertEquals("3", count.body());
+        Assertions.assertEquals(3, totalCount(count));
+        assertQueryCount(0, count);
+
+        HttpResponse<String> byAccount = head("/accounts/9999/messages");
+        Assertions.assertEquals(1, totalCount(byAccount));
+        assertQueryCount(0, byAccount);
+        Assertions.assertEquals(0, totalCount(head("/accounts/1/messages")));
+
+        webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"postedBy\":9999,\"messageText\": \"count\",\"timePostedEpoch\": 1700000000}"))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.discarding());
+        Assertions.assertEquals(4, totalCount(head("/messages")));
+        Assertions.assertEquals(2, totalCount(head("/accounts/9999/messages")));
+
+        webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/9999/messages"))
+                .DELETE()
+                .build(), HttpResponse.BodyHandlers.discarding());
+        Assertions.assertEquals(2, totalCount(head("/messages")));
+        Assertions.assertEquals(0, totalCount(head("/accounts/9999/messages")));
+    }
+}
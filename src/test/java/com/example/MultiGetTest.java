@@ -0,0 +1,85 @@
+package com.example;
+
+import static com.example.QueryCountAssertions.assertQueryCount;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.entity.Message;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class MultiGetTest {
+	ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {"--messages.multi-get.max-ids=5"};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    private List<Integer> messageIds(HttpResponse<String> response) throws IOException {
+        return objectMapper.readValue(response.body(), new TypeReference<List<Message>>() {}).stream()
+                .map(Message::getMessageId)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * The listed messages come back in request order from one query; repeats are returned once and unknown IDs
+     * are left out.
+     */
+    @Test
+    public void getReturnsMessagesInRequestOrder() throws Exception {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?ids=9997,1,9999,9997,9996"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals(List.of(9997, 9999, 9996), messageIds(response));
+        assertQueryCount(1, response);
+
+        HttpRequest tooMany = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?ids=1,2,3,4,5,6"))
+                .build();
+        Assertions.assertEquals(400, webClient.send(tooMany, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    /**
+     * The POST form takes the IDs as a JSON array body and answers the same way.
+     */
+    @Test
+    public void postLookupMatchesGet() throws Exception {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/lookup"))
+                .POST(HttpRequest.BodyPublishers.ofString("[9996, 9999]"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals(List.of(9996, 9999), messageIds(response));
+        assertQueryCount(1, response);
+    }
+}
@@ -0,0 +1,113 @@
+package com.example;
+
+import static com.example.QueryCountAssertions.assertQueryCount;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.entity.Message;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class OptimisticConcurrencyTest {
+	ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    private HttpRequest patch(String text, String ifMatch) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/9999"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"messageText\": \"" + text + "\"}"))
+                .header("Content-Type", "application/json");
+        if (ifMatch != null) {
+            builder.header("If-Match", ifMatch);
+        }
+        return builder.build();
+    }
+
+    private HttpResponse<String> get() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/9999"))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * An edit made against the ETag that was read succeeds and moves the ETag on; a second edit against the old
+     * ETag is refused and leaves the message as the first edit wrote it.
+     */
+    @Test
+    public void ifMatchRejectsStaleVersion() throws Exception {
+        HttpResponse<String> read = get();
+        Assertions.assertEquals("\"0\"", read.headers().firstValue("ETag").orElse(""));
+        assertQueryCount(1, read);
+
+        HttpResponse<String> first = webClient.send(patch("first", "\"0\""), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, first.statusCode());
+        Assertions.assertEquals("1", first.body());
+        Assertions.assertEquals("\"1\"", first.headers().firstValue("ETag").orElse(""));
+        assertQueryCount(2, first);
+
+        HttpResponse<String> stale = webClient.send(patch("second", "W/\"0\""), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(412, stale.statusCode());
+
+        HttpResponse<String> unknown = webClient.send(patch("second", "\"abc\""), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(412, unknown.statusCode());
+
+        HttpResponse<String> after = get();
+        Assertions.assertEquals("first", objectMapper.readValue(after.body(), Message.class).getMessageText());
+        Assertions.assertEquals("\"1\"", after.headers().firstValue("ETag").orElse(""));
+
+        HttpResponse<String> any = webClient.send(patch("third", "*"), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, any.statusCode());
+        Assertions.assertEquals("\"2\"", any.headers().firstValue("ETag").orElse(""));
+    }
+
+    /**
+     * Concurrent edits without If-Match are all applied, one version each, instead of overwriting each other unseen.
+     */
+    @Test
+    public void concurrentEditsAreNotLost() throws Exception {
+        int edits = 10;
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < edits; i++) {
+            responses.add(webClient.sendAsync(patch("edit " + i, null), HttpResponse.BodyHandlers.ofString()));
+        }
+        Set<String> eTags = new HashSet<>();
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            Assertions.assertEquals(200, response.get().statusCode(), response.get().body());
+            eTags.add(response.get().headers().firstValue("ETag").orElse(""));
+        }
+        Assertions.assertEquals(edits, eTags.size());
+        Assertions.assertEquals("\"" + edits + "\"", get().headers().firstValue("ETag").orElse(""));
+    }
+}
@@ -0,0 +1,39 @@
+package com.example;
+
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.Assertions;
+
+import com.example.datasource.QueryCountFilter;
+
+/**
+ * Helper for the functional tests to check how many SQL statements an endpoint ran,
+ * using the X-Query-Count header added by QueryCountFilter.
+ */
+public final class QueryCountAssertions {
+
+    private QueryCountAssertions() {
+    }
+
+    /**
+     * @param response The response of the request under test
+     * @return The number of SQL statements the request executed
+     */
+    public static int queryCount(HttpResponse<?> response) {
+        String header = response.headers().firstValue(QueryCountFilter.QUERY_COUNT_HEADER)
+                .orElseThrow(() -> new AssertionError("Response has no " + QueryCountFilter.QUERY_COUNT_HEADER + " header"));
+        return Integer.parseInt(header);
+    }
+
+    /**
+     * Fails unless the request executed exactly the expected number of SQL statements.
+     *
+     * @param expected The expected number of statements
+     * @param response The response of the request under test
+     */
+    public static void assertQueryCount(int expected, HttpResponse<?> response) {
+        int actual = queryCount(response);
+        Assertions.assertEquals(expected, actual, "Expected " + expected + " SQL statements for "
+                + response.request().method() + " " + response.uri().getPath() + " - Actual was: " + actual);
+    }
+}
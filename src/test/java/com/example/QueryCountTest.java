@@ -0,0 +1,99 @@
+package com.example;
+
+import static com.example.QueryCountAssertions.assertQueryCount;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+/**
+ * Pins the number of SQL statements each SocialMediaController endpoint executes,
+ * so a change that adds a query (or an N+1) fails here instead of showing up in production latency.
+ */
+public class QueryCountTest {
+	ApplicationContext app;
+    HttpClient webClient;
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    private HttpResponse<String> send(String method, String path, String json) throws IOException, InterruptedException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path));
+        if (json == null) {
+            builder.method(method, HttpRequest.BodyPublishers.noBody());
+        } else {
+            builder.method(method, HttpRequest.BodyPublishers.ofString(json)).header("Content-Type", "application/json");
+        }
+        return webClient.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Registration checks the username, then takes an id from the sequence and inserts.
+     */
+    @Test
+    public void registerQueryCount() throws IOException, InterruptedException {
+        assertQueryCount(3, send("POST", "/register", "{\"username\":\"querycount\",\"password\":\"password\"}"));
+    }
+
+    @Test
+    public void loginQueryCount() throws IOException, InterruptedException {
+        assertQueryCount(1, send("POST", "/login", "{\"username\":\"testuser1\",\"password\":\"password\"}"));
+    }
+
+    /**
+     * Creating a message checks the poster, then takes an id from the sequence and inserts.
+     */
+    @Test
+    public void createMessageQueryCount() throws IOException, InterruptedException {
+        assertQueryCount(3, send("POST", "/messages", "{\"postedBy\":9999,\"messageText\":\"hello\",\"timePostedEpoch\":1669947792}"));
+    }
+
+    @Test
+    public void invalidMessageRunsNoQueries() throws IOException, InterruptedException {
+        assertQueryCount(0, send("POST", "/messages", "{\"postedBy\":9999,\"messageText\":\"\",\"timePostedEpoch\":1669947792}"));
+    }
+
+    @Test
+    public void readQueryCounts() throws IOException, InterruptedException {
+        assertQueryCount(1, send("GET", "/messages", null));
+        assertQueryCount(1, send("GET", "/messages/9999", null));
+        assertQueryCount(2, send("GET", "/accounts/9999/messages", null));
+    }
+
+    @Test
+    public void updateMessageQueryCount() throws IOException, InterruptedException {
+        assertQueryCount(2, send("PATCH", "/messages/9999", "{\"messageText\":\"text changed\"}"));
+    }
+
+    @Test
+    public void deleteMessageQueryCount() throws IOException, InterruptedException {
+        assertQueryCount(2, send("DELETE", "/messages/9999", null));
+    }
+
+    /**
+     * A purge smaller than one chunk is a single DELETE statement.
+     */
+    @Test
+    public void deleteMessagesByAccountQueryCount() throws IOException, InterruptedException {
+        assertQueryCount(1, send("DELETE", "/accounts/9999/messages", null));
+    }
+}
@@ -0,0 +1,121 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.ratelimit.TokenBucketRateLimiter;
+
+public class RateLimitTest {
+	ApplicationContext app;
+    HttpClient webClient;
+
+    /**
+     * Before every test, restart the app with small per-account and per-client bursts so the limits are reachable.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        String[] args = new String[] {"--ratelimit.account.capacity=2", "--ratelimit.account.refill-per-second=0.1",
+            "--ratelimit.ip.capacity=4", "--ratelimit.ip.refill-per-second=0.1"};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending three http requests to POST localhost:8080/messages for the same account with a burst of 2
+     *
+     * Expected Response:
+     *  Status Code: 200, 200, then 429 with a Retry-After header
+     */
+    @Test
+    public void createMessageRateLimited() throws IOException, InterruptedException {
+    	String json = "{\"postedBy\":9999,\"messageText\": \"hello message\",\"timePostedEpoch\": 1669947792}";
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        for (int i = 0; i < 2; i++) {
+            HttpResponse<String> response = webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+            Assertions.assertEquals(200, response.statusCode(), "Expected Status Code 200 - Actual Code was: " + response.statusCode());
+        }
+        HttpResponse<String> response = webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+        int status = response.statusCode();
+        Assertions.assertEquals(429, status, "Expected Status Code 429 - Actual Code was: " + status);
+        Assertions.assertTrue(response.headers().firstValue("Retry-After").isPresent(), "Expected a Retry-After header");
+    }
+
+    /**
+     * Reads are never limited, even after an account has used up its write allowance.
+     *
+     * Expected Response:
+     *  Status Code: 200
+     */
+    @Test
+    public void readsNotRateLimited() throws IOException, InterruptedException {
+        HttpRequest getRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .build();
+        for (int i = 0; i < 5; i++) {
+            HttpResponse<String> response = webClient.send(getRequest, HttpResponse.BodyHandlers.ofString());
+            Assertions.assertEquals(200, response.statusCode(), "Expected Status Code 200 - Actual Code was: " + response.statusCode());
+        }
+    }
+
+    /**
+     * Oversized writes are refused before they reach the rate limiter, so they do not use up the client's allowance.
+     *
+     * Expected Response:
+     *  Status Code: 400 five times, then 200
+     */
+    @Test
+    public void oversizedWritesDoNotSpendTokens() throws IOException, InterruptedException {
+        String oversized = "{\"postedBy\":9999,\"messageText\": \"" + "x".repeat(5000) + "\",\"timePostedEpoch\": 1669947792}";
+        for (int i = 0; i < 5; i++) {
+            HttpResponse<String> response = webClient.send(HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages"))
+                    .POST(HttpRequest.BodyPublishers.ofString(oversized))
+                    .header("Content-Type", "application/json")
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            Assertions.assertEquals(400, response.statusCode(), "Expected Status Code 400 - Actual Code was: " + response.statusCode());
+        }
+        String json = "{\"postedBy\":9999,\"messageText\": \"hello message\",\"timePostedEpoch\": 1669947792}";
+        HttpResponse<String> response = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode(), "Expected Status Code 200 - Actual Code was: " + response.statusCode());
+    }
+
+    /**
+     * A bucket allows exactly its capacity in a burst and keys are independent of each other.
+     */
+    @Test
+    public void tokenBucketBurstAndIsolation() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(3, 0.001, 60);
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals(0L, limiter.tryAcquire("a"));
+        }
+        Assertions.assertTrue(limiter.tryAcquire("a") > 0, "Expected the fourth token to be refused");
+        Assertions.assertEquals(0L, limiter.tryAcquire("b"));
+        Assertions.assertEquals(2, limiter.size());
+    }
+}
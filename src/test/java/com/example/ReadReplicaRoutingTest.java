@@ -0,0 +1,142 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.datasource.ReplicaFeeder;
+import com.example.entity.Message;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+public class ReadReplicaRoutingTest {
+	ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    @BeforeEach
+    public void setUp() {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    /**
+     * Starts the app with routing on and replica syncs only when the test asks for them.
+     */
+    private void start(long maxLagMillis) throws InterruptedException, SQLException {
+        String[] args = new String[] {"--datasource.routing.enabled=true", "--datasource.replica.sync-interval-ms=600000",
+            "--datasource.routing.max-lag-ms=" + maxLagMillis};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+        app.getBean(ReplicaFeeder.class).sync();
+    }
+
+    /**
+     * GET reads are served by the replica; a client that just wrote reads from the primary, others see the
+     * replica's older data until the next sync.
+     */
+    @Test
+    public void readsUseReplicaAndWritersReadTheirWrites() throws Exception {
+        start(600000);
+        double replicaRoutes = routes("replica");
+        List<Message> messages = objectMapper.readValue(get("/messages", "bob").body(), new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(3, messages.size());
+        Assertions.assertTrue(routes("replica") > replicaRoutes, "Expected GET /messages to use the replica");
+
+        HttpResponse<String> response = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(
+                    "{\"postedBy\":9999,\"messageText\": \"fresh\",\"timePostedEpoch\": 1669947792}"))
+                .header("Content-Type", "application/json")
+                .header("X-Client-Id", "alice")
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Message posted = objectMapper.readValue(response.body(), Message.class);
+
+        Assertions.assertEquals(posted, objectMapper.readValue(get("/messages/" + posted.getMessageId(), "alice").body(),
+            Message.class), "The writer should read its own write");
+        Assertions.assertEquals("", get("/messages/" + posted.getMessageId(), "bob").body(),
+            "Other clients read the replica, which has not synced yet");
+
+        app.getBean(ReplicaFeeder.class).sync();
+        Assertions.assertEquals(posted, objectMapper.readValue(get("/messages/" + posted.getMessageId(), "bob").body(),
+            Message.class));
+    }
+
+    /**
+     * POST /messages/lookup is a read: it is served by the replica and does not pin the client to the primary.
+     */
+    @Test
+    public void lookupsAreReads() throws Exception {
+        start(600000);
+        HttpResponse<String> response = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(
+                    "{\"postedBy\":9999,\"messageText\": \"fresh\",\"timePostedEpoch\": 1669947792}"))
+                .header("Content-Type", "application/json")
+                .header("X-Client-Id", "alice")
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Message posted = objectMapper.readValue(response.body(), Message.class);
+
+        HttpResponse<String> lookup = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/lookup"))
+                .POST(HttpRequest.BodyPublishers.ofString("[" + posted.getMessageId() + "]"))
+                .header("Content-Type", "application/json")
+                .header("X-Client-Id", "bob")
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals("[]", lookup.body(), "The lookup should read the replica, which has not synced yet");
+        Assertions.assertEquals("", get("/messages/" + posted.getMessageId(), "bob").body(),
+            "A lookup should not pin the client to the primary");
+    }
+
+    /**
+     * Once the replica is further behind than the lag limit, every read goes to the primary.
+     */
+    @Test
+    public void laggingReplicaIsBypassed() throws Exception {
+        start(300);
+        Thread.sleep(600);
+        HttpResponse<String> response = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(
+                    "{\"postedBy\":9999,\"messageText\": \"fresh\",\"timePostedEpoch\": 1669947792}"))
+                .header("Content-Type", "application/json")
+                .header("X-Client-Id", "alice")
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Message posted = objectMapper.readValue(response.body(), Message.class);
+
+        double replicaRoutes = routes("replica");
+        Assertions.assertEquals(posted, objectMapper.readValue(get("/messages/" + posted.getMessageId(), "bob").body(),
+            Message.class));
+        Assertions.assertEquals(replicaRoutes, routes("replica"));
+    }
+
+    private double routes(String target) {
+        return app.getBean(MeterRegistry.class).counter("datasource.routing", "target", target).count();
+    }
+
+    private HttpResponse<String> get(String path, String clientId) throws IOException, InterruptedException {
+        return webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .header("X-Client-Id", clientId)
+                .build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,71 @@
+package com.example;
+
+import static com.example.QueryCountAssertions.assertQueryCount;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.exception.InvalidMessageException;
+
+public class RejectionPathTest {
+	ApplicationContext app;
+    HttpClient webClient;
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    private HttpResponse<String> post(String json) throws IOException, InterruptedException {
+        return webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Invalid posts are rejected with the usual JSON error body, without touching the database.
+     */
+    @Test
+    public void invalidPostsGetTheSameErrorBody() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            HttpResponse<String> response = post("{\"postedBy\":9999,\"messageText\": \"\"}");
+            Assertions.assertEquals(400, response.statusCode());
+            Assertions.assertEquals("application/json", response.headers().firstValue("Content-Type").orElse(""));
+            Assertions.assertEquals("{\"message\":\"Invalid message data\",\"status\":\"400 BAD_REQUEST\"}", response.body());
+            assertQueryCount(0, response);
+        }
+        Assertions.assertEquals(0, new InvalidMessageException("Invalid message data").getStackTrace().length);
+    }
+
+    /**
+     * A body larger than any valid message is rejected from its Content-Length alone.
+     */
+    @Test
+    public void oversizedPostIsRejectedBeforeBinding() throws Exception {
+        HttpResponse<String> response = post("{\"postedBy\":9999,\"messageText\": \"" + "x".repeat(10000) + "\"}");
+        Assertions.assertEquals(400, response.statusCode());
+        Assertions.assertTrue(response.body().contains("Invalid message data"));
+        assertQueryCount(0, response);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.archive.ArchiveService;
+import com.example.archive.ColdStore;
+import com.example.entity.Message;
+import com.example.repository.MessageRepository;
+import com.example.retention.RetentionService;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class RetentionTest {
+	ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Path archiveDirectory;
+
+    /**
+     * Before every test, start the app with archiving and a one-day retention window; the seed messages are from 2022.
+     */
+    @BeforeEach
+    public void setUp() throws Exception {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        archiveDirectory = Files.createTempDirectory("archive");
+        String[] args = new String[] {"--archive.enabled=true", "--archive.directory=" + archiveDirectory,
+            "--archive.max-age-days=1", "--retention.enabled=true", "--retention.max-age-days=1",
+            "--retention.chunk-size=2", "--retention.chunk-pause-ms=0"};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    /**
+     * Expired messages still in the table are deleted in chunks; recent ones and the counters are left consistent.
+     */
+    @Test
+    public void expiredRowsAreDeletedInChunks() throws IOException, InterruptedException {
+        long now = Instant.now().getEpochSecond();
+        post(9999, 1600000000L);
+        post(9998, now);
+
+        Assertions.assertEquals(4, app.getBean(RetentionService.class).purge());
+
+        List<Message> all = objectMapper.readValue(get("/messages").body(), new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(1, all.size());
+        Assertions.assertEquals(now, all.get(0).getTimePostedEpoch());
+        Assertions.assertEquals("1", get("/messages/count").body());
+        Assertions.assertEquals(0, app.getBean(RetentionService.class).purge());
+    }
+
+    /**
+     * An expired cold segment is deleted as a whole, and a later segment never reuses its number.
+     */
+    @Test
+    public void expiredSegmentsAreDropped() throws Exception {
+        Assertions.assertEquals(3, app.getBean(ArchiveService.class).archiveOnce());
+        ColdStore coldStore = app.getBean(ColdStore.class);
+        Path segment = coldStore.getSegments().get(0).getPath();
+        post(9999, 1600000000L);
+
+        Assertions.assertEquals(4, app.getBean(RetentionService.class).purge());
+        Assertions.assertFalse(coldStore.hasSegments());
+        Assertions.assertFalse(Files.exists(segment));
+        Assertions.assertEquals(0, app.getBean(MessageRepository.class).count());
+        Assertions.assertEquals("[]", get("/messages").body());
+        Assertions.assertEquals("0", get("/messages/count").body());
+
+        post(9999, 1600000000L);
+        Assertions.assertEquals(1, app.getBean(ArchiveService.class).archiveOnce());
+        Assertions.assertNotEquals(segment, coldStore.getSegments().get(0).getPath());
+    }
+
+    private void post(int accountId, long timePosted) throws IOException, InterruptedException {
+        String json = "{\"postedBy\":" + accountId + ",\"messageText\": \"retention\",\"timePostedEpoch\": " + timePosted + "}";
+        HttpResponse<String> response = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return webClient.send(HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path)).build(),
+            HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,124 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.entity.Message;
+import com.example.sharding.MessageShards;
+import com.example.sharding.ShardRoutingDataSource;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class ShardingTest {
+	ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {"--sharding.enabled=true", "--sharding.shards=3"};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    /**
+     * The seed messages are moved to their home shards and still read back as before, in ID order.
+     */
+    @Test
+    public void seedMessagesAreSpreadAcrossShards() throws Exception {
+        MessageShards shards = app.getBean(MessageShards.class);
+        for (int postedBy : new int[] {9999, 9997, 9996}) {
+            Assertions.assertEquals(1, countOnShard(shards.shardOf(postedBy), postedBy));
+        }
+        HttpResponse<String> all = send("GET", "/messages", null);
+        QueryCountAssertions.assertQueryCount(3, all); // one per shard, the scattered ones included
+        List<Message> messages = objectMapper.readValue(all.body(), new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(List.of(
+            new Message(9996, 9996, "test message 3", 1669947792L),
+            new Message(9997, 9997, "test message 2", 1669947792L),
+            new Message(9999, 9999, "test message 1", 1669947792L)), messages);
+        Assertions.assertEquals(List.of(new Message(9997, 9997, "test message 2", 1669947792L)),
+            objectMapper.readValue(send("GET", "/accounts/9997/messages", null).body(),
+                new TypeReference<List<Message>>(){}));
+    }
+
+    /**
+     * New messages land on their poster's shard with IDs unique across shards, and can be read, updated and
+     * deleted by ID without saying where they live.
+     */
+    @Test
+    public void messagesAreRoutedByPoster() throws Exception {
+        MessageShards shards = app.getBean(MessageShards.class);
+        Set<Integer> ids = new HashSet<>();
+        Set<Integer> usedShards = new HashSet<>();
+        for (int postedBy = 9996; postedBy <= 9999; postedBy++) {
+            for (int i = 0; i < 3; i++) {
+                HttpResponse<String> response = send("POST", "/messages", "{\"postedBy\":" + postedBy
+                    + ",\"messageText\": \"post " + i + "\",\"timePostedEpoch\": 1669947792}");
+                Assertions.assertEquals(200, response.statusCode());
+                Assertions.assertTrue(ids.add(objectMapper.readValue(response.body(), Message.class).getMessageId()));
+            }
+            usedShards.add(shards.shardOf(postedBy));
+            Assertions.assertEquals(3, countOnShard(shards.shardOf(postedBy), postedBy) - (postedBy == 9998 ? 0 : 1));
+        }
+        Assertions.assertTrue(usedShards.size() > 1, "Expected the test accounts to hash to more than one shard");
+        Assertions.assertEquals(15, objectMapper.readValue(send("GET", "/messages", null).body(),
+            new TypeReference<List<Message>>(){}).size());
+
+        for (Integer id : ids) {
+            Message message = objectMapper.readValue(send("GET", "/messages/" + id, null).body(), Message.class);
+            Assertions.assertEquals(id, message.getMessageId());
+            Assertions.assertEquals("1", send("PATCH", "/messages/" + id, "{\"messageText\": \"edited\"}").body());
+            Assertions.assertEquals("edited", objectMapper.readValue(send("GET", "/messages/" + id, null).body(),
+                Message.class).getMessageText());
+            Assertions.assertEquals("1", send("DELETE", "/messages/" + id, null).body());
+            Assertions.assertEquals("", send("GET", "/messages/" + id, null).body());
+        }
+        Assertions.assertEquals(3, objectMapper.readValue(send("GET", "/messages", null).body(),
+            new TypeReference<List<Message>>(){}).size());
+    }
+
+    private int countOnShard(int shard, int postedBy) throws SQLException {
+        DataSource dataSource = app.getBean(DataSource.class).unwrap(ShardRoutingDataSource.class).getShard(shard);
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT COUNT(*) FROM message WHERE postedBy = " + postedBy)) {
+            rows.next();
+            return rows.getInt(1);
+        }
+    }
+
+    private HttpResponse<String> send(String method, String path, String body) throws IOException, InterruptedException {
+        return webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
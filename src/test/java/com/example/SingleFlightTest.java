@@ -0,0 +1,104 @@
+package com.example;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.example.service.SingleFlight;
+
+public class SingleFlightTest {
+
+    /**
+     * Callers that arrive while a load for the same key is running should share its result.
+     */
+    @Test
+    public void concurrentCallersShareOneLoad() throws Exception {
+        SingleFlight<Integer, String> flights = new SingleFlight<>();
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            Future<String> leader = pool.submit(() -> flights.execute(1, () -> {
+                loads.incrementAndGet();
+                loaderStarted.countDown();
+                await(release);
+                return "value";
+            }));
+            loaderStarted.await(5, TimeUnit.SECONDS);
+            Future<String> follower = pool.submit(() -> flights.execute(1, () -> {
+                loads.incrementAndGet();
+                return "other";
+            }));
+            while (flights.coalescedCount() == 0) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+            Assertions.assertEquals("value", leader.get(5, TimeUnit.SECONDS));
+            Assertions.assertEquals("value", follower.get(5, TimeUnit.SECONDS));
+            Assertions.assertEquals(1, loads.get());
+            Assertions.assertEquals(1, flights.executedCount());
+            Assertions.assertEquals(1, flights.coalescedCount());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Once a load finishes the key is released, so the next caller runs the loader again.
+     */
+    @Test
+    public void completedLoadsAreNotCached() {
+        SingleFlight<Integer, Integer> flights = new SingleFlight<>();
+        AtomicInteger loads = new AtomicInteger();
+        flights.execute(1, loads::incrementAndGet);
+        flights.execute(1, loads::incrementAndGet);
+        Assertions.assertEquals(2, loads.get());
+        Assertions.assertEquals(0, flights.coalescedCount());
+    }
+
+    /**
+     * A caller in the other lane runs its own load instead of joining one started in the first lane.
+     */
+    @Test
+    public void lanesDoNotShareLoads() throws Exception {
+        ThreadLocal<Boolean> replica = ThreadLocal.withInitial(() -> false);
+        SingleFlight<Integer, String> flights = new SingleFlight<>(replica::get);
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> replicaRead = pool.submit(() -> {
+                replica.set(true);
+                return flights.execute(1, () -> {
+                    loaderStarted.countDown();
+                    await(release);
+                    return "stale";
+                });
+            });
+            loaderStarted.await(5, TimeUnit.SECONDS);
+            Future<String> primaryRead = pool.submit(() -> flights.execute(1, () -> "fresh"));
+            Assertions.assertEquals("fresh", primaryRead.get(5, TimeUnit.SECONDS));
+            release.countDown();
+            Assertions.assertEquals("stale", replicaRead.get(5, TimeUnit.SECONDS));
+            Assertions.assertEquals(2, flights.executedCount());
+            Assertions.assertEquals(0, flights.coalescedCount());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.dto.AccountStats;
+import com.example.entity.Account;
+import com.example.entity.Message;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class SnapshotTest {
+	ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Path snapshotFile;
+
+    /**
+     * Before every test, pick a fresh snapshot location. Each test starts the app itself.
+     * @throws IOException
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        snapshotFile = Files.createTempDirectory("snapshot").resolve("testdb.snap");
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    private void start() throws InterruptedException {
+        String[] args = new String[] {"--snapshot.enabled=true", "--snapshot.file=" + snapshotFile};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    /**
+     * Data written before a shutdown is back after a restart with its versions, and new IDs continue after the restored
+     * ones.
+     */
+    @Test
+    public void restartRestoresSnapshot() throws IOException, InterruptedException {
+        start();
+        Account account = objectMapper.readValue(post("/register",
+            "{\"username\": \"snapshotuser\", \"password\": \"password\"}").body(), Account.class);
+        Message message = objectMapper.readValue(post("/messages",
+            "{\"postedBy\":" + account.getAccountId() + ",\"messageText\": \"persisted\",\"timePostedEpoch\": 1669947792}")
+            .body(), Message.class);
+        Assertions.assertEquals(200, webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/9999"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"messageText\": \"edited\"}"))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        Thread.sleep(500);
+        SpringApplication.exit(app); // takes the shutdown snapshot
+        Assertions.assertTrue(Files.size(snapshotFile) > 0);
+        start();
+
+        List<Message> messages = objectMapper.readValue(get("/messages").body(), new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(4, messages.size());
+        Assertions.assertTrue(messages.contains(message), "Expected restored message " + message + " in " + messages);
+        Assertions.assertEquals("\"1\"", get("/messages/9999").headers().firstValue("ETag").orElse(""),
+            "The edited message should keep its version across the restore");
+        Assertions.assertEquals(200, post("/login", "{\"username\": \"snapshotuser\", \"password\": \"password\"}")
+            .statusCode());
+        Assertions.assertEquals(1, objectMapper.readValue(get("/accounts/" + account.getAccountId() + "/stats").body(),
+            AccountStats.class).getMessageCount());
+
+        Message next = objectMapper.readValue(post("/messages",
+            "{\"postedBy\":9999,\"messageText\": \"after restore\",\"timePostedEpoch\": 1669947792}").body(), Message.class);
+        Assertions.assertTrue(next.getMessageId() > message.getMessageId(),
+            "Expected a new ID after " + message.getMessageId() + " but got " + next.getMessageId());
+    }
+
+    /**
+     * A damaged snapshot is ignored and the app starts from the seed data.
+     */
+    @Test
+    public void corruptSnapshotIsIgnored() throws IOException, InterruptedException {
+        Files.write(snapshotFile, new byte[64]);
+        start();
+        List<Message> messages = objectMapper.readValue(get("/messages").body(), new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(3, messages.size());
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return webClient.send(HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path)).build(),
+            HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> post(String path, String json) throws IOException, InterruptedException {
+        return webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
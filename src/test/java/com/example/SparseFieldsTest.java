@@ -0,0 +1,102 @@
+package com.example;
+
+import static com.example.QueryCountAssertions.assertQueryCount;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class SparseFieldsTest {
+	ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path)).build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private List<Map<String, Object>> rows(HttpResponse<String> response) throws Exception {
+        return objectMapper.readValue(response.body(), new TypeReference<List<Map<String, Object>>>() {});
+    }
+
+    /**
+     * Only the requested fields are returned, in the entity's field order, from one query.
+     */
+    @Test
+    public void listReturnsOnlyRequestedFields() throws Exception {
+        HttpResponse<String> response = get("/messages?fields=timePostedEpoch,messageId");
+        Assertions.assertEquals(200, response.statusCode());
+        List<Map<String, Object>> rows = rows(response);
+        Assertions.assertEquals(3, rows.size());
+        for (Map<String, Object> row : rows) {
+            Assertions.assertEquals(List.of("messageId", "timePostedEpoch"), List.copyOf(row.keySet()));
+        }
+        assertQueryCount(1, response);
+
+        HttpResponse<String> byAccount = get("/accounts/9999/messages?fields=messageText");
+        Assertions.assertEquals(200, byAccount.statusCode());
+        Assertions.assertEquals(List.of(Map.of("messageText", "test message 1")), rows(byAccount));
+        assertQueryCount(2, byAccount);
+
+        HttpResponse<String> byIds = get("/messages?ids=9996,9999&fields=postedBy");
+        Assertions.assertEquals(List.of(Map.of("postedBy", 9996), Map.of("postedBy", 9999)), rows(byIds));
+        assertQueryCount(1, byIds);
+    }
+
+    /**
+     * A single message can be narrowed too; it then carries no ETag.
+     */
+    @Test
+    public void singleMessageReturnsOnlyRequestedFields() throws Exception {
+        HttpResponse<String> response = get("/messages/9997?fields=messageText");
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals(Map.of("messageText", "test message 2"),
+                objectMapper.readValue(response.body(), new TypeReference<Map<String, Object>>() {}));
+        Assertions.assertTrue(response.headers().firstValue("ETag").isEmpty());
+
+        HttpResponse<String> missing = get("/messages/1?fields=messageText");
+        Assertions.assertEquals(200, missing.statusCode());
+        Assertions.assertEquals("", missing.body());
+    }
+
+    /**
+     * Unknown or empty field lists are rejected before any query runs.
+     */
+    @Test
+    public void unknownFieldIsRejected() throws Exception {
+        HttpResponse<String> unknown = get("/messages?fields=messageId,password");
+        Assertions.assertEquals(400, unknown.statusCode());
+        assertQueryCount(0, unknown);
+
+        Assertions.assertEquals(400, get("/messages?fields=").statusCode());
+    }
+}
@@ -0,0 +1,91 @@
+package com.example;
+
+import static com.example.QueryCountAssertions.assertQueryCount;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.dto.AccountSummary;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class UsernameSearchTest {
+	ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * A merge threshold of 3 makes the registrations below exercise both the overflow map and a merge.
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {"--accounts.search.merge-threshold=3"};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    private void register(String username) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/register"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"" + username + "\",\"password\":\"password\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assertions.assertEquals(200, webClient.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    private HttpResponse<String> search(String query) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/search?" + query))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private List<String> usernames(HttpResponse<String> response) throws IOException {
+        return objectMapper.readValue(response.body(), new TypeReference<List<AccountSummary>>() {}).stream()
+                .map(AccountSummary::getUsername)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Seeded and newly registered accounts are found by prefix, ignoring case, in username order and without SQL.
+     */
+    @Test
+    public void findsAccountsByPrefix() throws Exception {
+        HttpResponse<String> seeded = search("prefix=testuser");
+        Assertions.assertEquals(200, seeded.statusCode());
+        Assertions.assertEquals(List.of("testuser1", "testuser2", "testuser3", "testuser4"), usernames(seeded));
+        assertQueryCount(0, seeded);
+
+        for (String username : List.of("Alice", "alicia", "alfred", "bob")) {
+            register(username);
+        }
+        HttpResponse<String> registered = search("prefix=AL");
+        Assertions.assertEquals(List.of("alfred", "Alice", "alicia"), usernames(registered));
+        assertQueryCount(0, registered);
+
+        Assertions.assertEquals(List.of("alfred", "Alice"), usernames(search("prefix=al&limit=2")));
+        Assertions.assertEquals(List.of("bob"), usernames(search("prefix=b")));
+        Assertions.assertEquals(List.of(), usernames(search("prefix=zz")));
+        Assertions.assertEquals(List.of(), usernames(search("prefix=")));
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.loadtest;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.SocialMediaApp;
+import com.example.config.AccountCacheConfig;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Hit ratios of the account caches under a mixed workload. Excluded from the normal build; run it with
+ * {@code mvn test -Ploadtest -Dtest=AccountCacheBenchmark}.
+ * The app is started in-process and the loadtest.* settings are used as for LoadTest, with loadtest.mix defaulting to
+ * a mix heavy on the account lookups (register=1,login=50,post=50,readAccount=50,read=100). Registrations stay in
+ * the mix on purpose: each one invalidates every cached username lookup. The hits, misses and puts of the account
+ * region and the account-by-username query region, with the latency of the endpoints that look accounts up, go to
+ * loadtest.accountCacheReport (target/account-cache-benchmark.json).
+ */
+@Tag("loadtest")
+public class AccountCacheBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(AccountCacheBenchmark.class);
+
+    @Test
+    public void hitRatioUnderMixedLoad() throws Exception {
+        LoadTestConfig defaults = LoadTestConfig.fromSystemProperties();
+        LoadTestConfig config = new LoadTestConfig("", defaults.getMode(), defaults.getConcurrency(),
+            defaults.getArrivalRate(), defaults.getWarmupSeconds(), defaults.getDurationSeconds(),
+            defaults.getAccounts(), defaults.getMessagesPerAccount(),
+            LoadTestConfig.parseMix(System.getProperty("loadtest.mix", "register=1,login=50,post=50,readAccount=50,read=100")),
+            "target/account-cache-load.json");
+        ObjectMapper objectMapper = new ObjectMapper();
+        ObjectNode summary = objectMapper.createObjectNode();
+        String[] args = new String[] {"--ratelimit.enabled=false", "--logging.level.root=WARN", "--logging.level.com.example.loadtest=INFO"};
+        ConfigurableApplicationContext app = SpringApplication.run(SocialMediaApp.class, args);
+        try {
+            JsonNode report = new LoadGenerator(config, "http://localhost:8080").run();
+            Assertions.assertTrue(report.path("requests").asLong() > 0, "No requests completed");
+            Statistics statistics = app.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+            CacheRegionStatistics accounts = statistics.getDomainDataRegionStatistics(AccountCacheConfig.ACCOUNT_REGION);
+            CacheRegionStatistics usernames = statistics.getQueryRegionStatistics(AccountCacheConfig.USERNAME_REGION);
+            summary.set("accountRegion", region(objectMapper, accounts));
+            summary.set("usernameRegion", region(objectMapper, usernames));
+            summary.put("throughputPerSecond", report.path("throughputPerSecond").asDouble());
+            summary.put("errors", report.path("errors").asLong());
+            for (Operation operation : new Operation[] {Operation.LOGIN, Operation.POST, Operation.READ_ACCOUNT, Operation.REGISTER}) {
+                summary.set(operation.getKey(), report.path("endpoints").path(operation.getEndpoint()));
+            }
+            Assertions.assertTrue(hitRatio(accounts) > 0.9, "Account region hit ratio " + hitRatio(accounts));
+            Assertions.assertTrue(usernames.getHitCount() > 0, "No username lookup was served from the cache");
+        } finally {
+            SpringApplication.exit(app);
+        }
+
+        Path path = Paths.get(System.getProperty("loadtest.accountCacheReport", "target/account-cache-benchmark.json"));
+        if (path.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+        }
+        Files.writeString(path, summary.toPrettyString());
+        log.info("Benchmark report written to {}\n{}", path, summary.toPrettyString());
+    }
+
+    private static ObjectNode region(ObjectMapper objectMapper, CacheRegionStatistics statistics) {
+        ObjectNode region = objectMapper.createObjectNode();
+        region.put("hits", statistics.getHitCount());
+        region.put("misses", statistics.getMissCount());
+        region.put("puts", statistics.getPutCount());
+        region.put("hitRatio", hitRatio(statistics));
+        return region;
+    }
+
+    private static double hitRatio(CacheRegionStatistics statistics) {
+        long lookups = statistics.getHitCount() + statistics.getMissCount();
+        return lookups == 0 ? 0 : (double) statistics.getHitCount() / lookups;
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.loadtest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+
+import com.example.controller.FramedCborHttpMessageConverter;
+import com.example.entity.Message;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+/**
+ * Payload size and encode/decode time of a message list in JSON, CBOR and framed CBOR. Excluded from the normal
+ * build; run it with {@code mvn test -Ploadtest -Dtest=EncodingBenchmark}.
+ * Encodes loadtest.encoding.messages (default 10000) messages loadtest.encoding.rounds (default 50) times per
+ * encoding after as many warm-up rounds, in-process and without HTTP. The summary goes to
+ * loadtest.encodingReport (target/encoding-benchmark.json).
+ */
+@Tag("loadtest")
+public class EncodingBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(EncodingBenchmark.class);
+    private static final TypeReference<List<Message>> MESSAGES = new TypeReference<List<Message>>() {};
+
+    private final ObjectMapper json = new ObjectMapper();
+    private final ObjectMapper cbor = new ObjectMapper(new CBORFactory());
+    private final ObjectReader frameReader = cbor.readerFor(Message.class);
+    private final FramedCborHttpMessageConverter framed = new FramedCborHttpMessageConverter(cbor);
+
+    @Test
+    public void compareEncodings() throws IOException {
+        int count = Integer.getInteger("loadtest.encoding.messages", 10000);
+        int rounds = Integer.getInteger("loadtest.encoding.rounds", 50);
+        List<Message> messages = messages(count);
+        ObjectNode summary = json.createObjectNode();
+        for (String encoding : new String[] {"json", "cbor", "framedCbor"}) {
+            byte[] payload = encode(encoding, messages);
+            Assertions.assertEquals(messages, decode(encoding, payload));
+            for (int i = 0; i < rounds; i++) {
+                decode(encoding, encode(encoding, messages));
+            }
+            long encodeNanos = 0;
+            long decodeNanos = 0;
+            for (int i = 0; i < rounds; i++) {
+                long start = System.nanoTime();
+                payload = encode(encoding, messages);
+                long encoded = System.nanoTime();
+                decode(encoding, payload);
+                encodeNanos += encoded - start;
+                decodeNanos += System.nanoTime() - encoded;
+            }
+            ObjectNode result = summary.putObject(encoding);
+            result.put("bytes", payload.length);
+            result.put("bytesPerMessage", (double) payload.length / count);
+            result.put("encodeMillis", encodeNanos / 1e6 / rounds);
+            result.put("decodeMillis", decodeNanos / 1e6 / rounds);
+        }
+        Path path = Paths.get(System.getProperty("loadtest.encodingReport", "target/encoding-benchmark.json"));
+        if (path.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+        }
+        Files.writeString(path, summary.toPrettyString());
+        log.info("Benchmark report written to {}\n{}", path, summary.toPrettyString());
+    }
+
+    /**
+     * Messages shaped like real ones: IDs and posters spread over a wide range, texts of 20 to 200 characters.
+     */
+    private static List<Message> messages(int count) {
+        Random random = new Random(42);
+        List<Message> messages = new ArrayList<>(count);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.setLength(0);
+            int length = 20 + random.nextInt(181);
+            while (text.length() < length) {
+                text.append("lorem ipsum dolor sit amet ".charAt(random.nextInt(27)));
+            }
+            messages.add(new Message(100000 + i, 1000 + random.nextInt(50000), text.toString(),
+                1669947792L + random.nextInt(100000000)));
+        }
+        return messages;
+    }
+
+    private byte[] encode(String encoding, List<Message> messages) throws IOException {
+        switch (encoding) {
+            case "json":
+                return json.writeValueAsBytes(messages);
+            case "cbor":
+                return cbor.writeValueAsBytes(messages);
+            default:
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                framed.write(messages, FramedCborHttpMessageConverter.FRAMED_CBOR, new HttpOutputMessage() {
+                    private final HttpHeaders headers = new HttpHeaders();
+
+                    @Override
+                    public ByteArrayOutputStream getBody() {
+                        return out;
+                    }
+
+                    @Override
+                    public HttpHeaders getHeaders() {
+                        return headers;
+                    }
+                });
+                return out.toByteArray();
+        }
+    }
+
+    private List<Message> decode(String encoding, byte[] payload) throws IOException {
+        switch (encoding) {
+            case "json":
+                return json.readValue(payload, MESSAGES);
+            case "cbor":
+                return cbor.readValue(payload, MESSAGES);
+            default:
+                List<Message> messages = new ArrayList<>();
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+                while (in.available() > 0) {
+                    int length = in.readInt();
+                    int offset = payload.length - in.available();
+                    messages.add(frameReader.readValue(payload, offset, length));
+                    in.skipBytes(length);
+                }
+                return messages;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.loadtest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.SocialMediaApp;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Edit throughput on a single contended message, optimistic versioning against row locking. Excluded from the normal
+ * build; run it with {@code mvn test -Ploadtest -Dtest=HotMessageBenchmark}.
+ * For each messages.update.locking mode the app is started in-process and one account with one message is seeded;
+ * every worker then PATCHes that message in a closed loop, using the other loadtest.* settings from LoadTestConfig.
+ * Per-mode reports go to target/hot-message-&lt;mode&gt;.json and the summary, with the retry and conflict counts,
+ * to loadtest.hotMessageReport (target/hot-message-benchmark.json).
+ */
+@Tag("loadtest")
+public class HotMessageBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(HotMessageBenchmark.class);
+
+    @Test
+    public void updateThroughputByLockingMode() throws IOException, InterruptedException {
+        LoadTestConfig defaults = LoadTestConfig.fromSystemProperties();
+        ObjectMapper objectMapper = new ObjectMapper();
+        ObjectNode summary = objectMapper.createObjectNode();
+        for (String mode : new String[] {"optimistic", "pessimistic"}) {
+            LoadTestConfig config = new LoadTestConfig("", LoadTestConfig.Mode.CLOSED, defaults.getConcurrency(),
+                defaults.getArrivalRate(), defaults.getWarmupSeconds(), defaults.getDurationSeconds(),
+                1, 1, Map.of(Operation.UPDATE, 1), "target/hot-message-" + mode + ".json");
+            String[] args = new String[] {"--ratelimit.enabled=false", "--logging.level.root=WARN", "--logging.level.com.example.loadtest=INFO",
+                "--messages.update.locking=" + mode};
+            ConfigurableApplicationContext app = SpringApplication.run(SocialMediaApp.class, args);
+            JsonNode report;
+            double retries;
+            double conflicts;
+            try {
+                report = new LoadGenerator(config, "http://localhost:8080").run();
+                MeterRegistry meterRegistry = app.getBean(MeterRegistry.class);
+                retries = meterRegistry.counter("messages.update.retries").count();
+                conflicts = meterRegistry.counter("messages.update.conflicts").count();
+            } finally {
+                SpringApplication.exit(app);
+            }
+            Assertions.assertTrue(report.path("requests").asLong() > 0, "No requests completed with " + mode + " locking");
+            ObjectNode result = summary.putObject(mode);
+            result.put("throughputPerSecond", report.path("throughputPerSecond").asDouble());
+            result.put("errors", report.path("errors").asLong());
+            result.put("retries", retries);
+            result.put("conflicts", conflicts);
+            result.set("update", report.path("endpoints").path(Operation.UPDATE.getEndpoint()));
+        }
+        Path path = Paths.get(System.getProperty("loadtest.hotMessageReport", "target/hot-message-benchmark.json"));
+        if (path.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+        }
+        Files.writeString(path, summary.toPrettyString());
+        log.info("Benchmark report written to {}\n{}", path, summary.toPrettyString());
+    }
+}
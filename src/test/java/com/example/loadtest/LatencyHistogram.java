@@ -0,0 +1,99 @@
+package com.example.loadtest;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free log-linear latency histogram with roughly 1.5% relative precision.
+ * Values are recorded in microseconds; below 128us every value has its own bucket and above that
+ * each power of two is split into 64 linear sub-buckets,
+ * which keeps p99.9 accurate without storing every sample.
+ */
+public class LatencyHistogram {
+    private static final int LINEAR_BITS = 7;
+    private static final int LINEAR = 1 << LINEAR_BITS;
+    private static final int HALF = LINEAR / 2;
+    private static final int MAGNITUDES = 36;
+    private static final int BUCKETS = LINEAR + MAGNITUDES * HALF;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * Records one request.
+     *
+     * @param latencyNanos The time the request took, measured from when it was due to be sent
+     * @param success false if the request failed or returned an unexpected status
+     */
+    public void record(long latencyNanos, boolean success) {
+        long micros = Math.max(0L, TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+        counts.incrementAndGet(indexOf(micros));
+        total.increment();
+        if (!success) {
+            errors.increment();
+        }
+    }
+
+    public long count() {
+        return total.sum();
+    }
+
+    public long errorCount() {
+        return errors.sum();
+    }
+
+    /**
+     * @param percentile The percentile to compute, between 0 and 100
+     * @return The latency at that percentile in milliseconds, or 0 if nothing was recorded
+     */
+    public double percentileMillis(double percentile) {
+        long recorded = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            recorded += counts.get(i);
+        }
+        if (recorded == 0) {
+            return 0.0;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(recorded * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return upperBoundOf(i) / 1000.0;
+            }
+        }
+        return upperBoundOf(counts.length() - 1) / 1000.0;
+    }
+
+    /**
+     * @return The largest recorded latency bucket in milliseconds
+     */
+    public double maxMillis() {
+        for (int i = counts.length() - 1; i >= 0; i--) {
+            if (counts.get(i) > 0) {
+                return upperBoundOf(i) / 1000.0;
+            }
+        }
+        return 0.0;
+    }
+
+    static int indexOf(long micros) {
+        if (micros < LINEAR) {
+            return (int) micros;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - (LINEAR_BITS - 1);
+        int index = LINEAR + (shift - 1) * HALF + (int) (micros >>> shift) - HALF;
+        return Math.min(index, BUCKETS - 1);
+    }
+
+    static long upperBoundOf(int index) {
+        if (index < LINEAR) {
+            return index;
+        }
+        int shift = (index - LINEAR) / HALF + 1;
+        long subBucket = (index - LINEAR) % HALF + HALF;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
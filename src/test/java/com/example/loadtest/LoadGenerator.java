@@ -0,0 +1,366 @@
+package com.example.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives the real HTTP endpoints with a weighted mix of operations and records per-endpoint latency.
+ * Seeds its own accounts and messages first so reads, updates and deletes have something to hit,
+ * runs a warmup phase that is not recorded, then the measured phase, and writes a JSON report.
+ */
+public class LoadGenerator {
+    private static final String PASSWORD = "password";
+
+    private final LoadTestConfig config;
+    private final String baseUrl;
+    private final ExecutorService clientExecutor;
+    private final HttpClient client;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final IdPool accountIds = new IdPool();
+    private final IdPool messageIds = new IdPool();
+    private final Operation[] schedule;
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile Map<Operation, LatencyHistogram> histograms = newHistograms();
+
+    public LoadGenerator(LoadTestConfig config, String baseUrl) {
+        this.config = config;
+        this.baseUrl = baseUrl;
+        this.clientExecutor = Executors.newFixedThreadPool(Math.max(2, config.getConcurrency()));
+        this.client = HttpClient.newBuilder()
+            .executor(clientExecutor)
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+        this.schedule = buildSchedule(config.getMix());
+    }
+
+    /**
+     * Seeds the dataset, warms up, runs the measured phase and writes the report.
+     *
+     * @return The report that was written
+     */
+    public JsonNode run() throws IOException, InterruptedException {
+        double elapsedSeconds;
+        try {
+            seed();
+            runPhase(config.getWarmupSeconds());
+            histograms = newHistograms();
+            long start = System.nanoTime();
+            runPhase(config.getDurationSeconds());
+            elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        } finally {
+            clientExecutor.shutdownNow();
+        }
+        JsonNode report = buildReport(elapsedSeconds);
+        File reportFile = new File(config.getReportPath());
+        if (reportFile.getParentFile() != null) {
+            reportFile.getParentFile().mkdirs();
+        }
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(reportFile, report);
+        return report;
+    }
+
+    /**
+     * Registers the configured number of accounts and posts their messages.
+     */
+    private void seed() throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(config.getConcurrency());
+        for (int i = 0; i < config.getAccounts(); i++) {
+            pool.execute(() -> {
+                Integer accountId = register();
+                if (accountId == null) {
+                    return;
+                }
+                for (int m = 0; m < config.getMessagesPerAccount(); m++) {
+                    Integer messageId = post(accountId);
+                    if (messageId != null) {
+                        messageIds.add(messageId);
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.MINUTES);
+    }
+
+    private void runPhase(int seconds) throws InterruptedException {
+        if (seconds <= 0) {
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        if (config.getMode() == LoadTestConfig.Mode.OPEN) {
+            runOpenLoop(deadline);
+        } else {
+            runClosedLoop(deadline);
+        }
+    }
+
+    /**
+     * Each worker issues its next request as soon as the previous one finishes.
+     */
+    private void runClosedLoop(long deadline) throws InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(config.getConcurrency());
+        for (int i = 0; i < config.getConcurrency(); i++) {
+            workers.execute(() -> {
+                while (System.nanoTime() < deadline) {
+                    execute(nextOperation(), System.nanoTime());
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(config.getDurationSeconds() + 60L, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Requests are released at a fixed rate. Latency is measured from the time each request was due,
+     * not from when a worker picked it up, so queueing behind a slow server is counted (no coordinated omission).
+     */
+    private void runOpenLoop(long deadline) throws InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(config.getConcurrency());
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / config.getArrivalRate());
+        long due = System.nanoTime();
+        while (due < deadline) {
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            long scheduledAt = due;
+            workers.execute(() -> execute(nextOperation(), scheduledAt));
+            due += intervalNanos;
+        }
+        workers.shutdown();
+        workers.awaitTermination(60, TimeUnit.SECONDS);
+    }
+
+    private void execute(Operation operation, long scheduledAt) {
+        boolean success;
+        try {
+            success = perform(operation);
+        } catch (IOException e) {
+            success = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        histograms.get(operation).record(System.nanoTime() - scheduledAt, success);
+    }
+
+    private boolean perform(Operation operation) throws IOException, InterruptedException {
+        switch (operation) {
+            case REGISTER:
+                return register() != null;
+            case LOGIN:
+                return send(post("/login", "{\"username\":\"" + username(randomSeeded()) + "\",\"password\":\"" + PASSWORD + "\"}")) == 200;
+            case POST: {
+                Integer accountId = accountIds.random();
+                Integer messageId = accountId == null ? null : post(accountId);
+                if (messageId != null) {
+                    messageIds.add(messageId);
+                }
+                return messageId != null;
+            }
+            case READ:
+                return send(get("/messages/" + orZero(messageIds.random()))) == 200;
+            case READ_ACCOUNT:
+                return send(get("/accounts/" + orZero(accountIds.random()) + "/messages")) == 200;
+            case READ_ALL:
+                return send(get("/messages")) == 200;
+            case UPDATE:
+                return send(HttpRequest.newBuilder(URI.create(baseUrl + "/messages/" + orZero(messageIds.random())))
+                    .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"messageText\":\"updated " + sequence.incrementAndGet() + "\"}"))
+                    .header("Content-Type", "application/json")
+                    .build()) == 200;
+            case DELETE: {
+                Integer messageId = messageIds.take();
+                return send(HttpRequest.newBuilder(URI.create(baseUrl + "/messages/" + orZero(messageId))).DELETE().build()) == 200;
+            }
+            case REJECT:
+                return send(post("/messages", "{\"postedBy\":" + orZero(accountIds.random()) + ",\"messageText\":\"\"}")) == 400;
+            default:
+                throw new IllegalStateException("Unhandled operation " + operation);
+        }
+    }
+
+    private Integer register() {
+        long n = sequence.incrementAndGet();
+        try {
+            HttpResponse<String> response = client.send(
+                post("/register", "{\"username\":\"" + username(n) + "\",\"password\":\"" + PASSWORD + "\"}"),
+                HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                return null;
+            }
+            int accountId = objectMapper.readTree(response.body()).path("accountId").asInt();
+            accountIds.add(accountId);
+            accountIds.rememberName(accountId, n);
+            return accountId;
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private Integer post(int accountId) {
+        String body = "{\"postedBy\":" + accountId + ",\"messageText\":\"load test message " + sequence.incrementAndGet() + "\"}";
+        try {
+            HttpResponse<String> response = client.send(post("/messages", body), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                return null;
+            }
+            return objectMapper.readTree(response.body()).path("messageId").asInt();
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private int send(HttpRequest request) throws IOException, InterruptedException {
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private HttpRequest post(String path, String json) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+            .POST(HttpRequest.BodyPublishers.ofString(json))
+            .header("Content-Type", "application/json")
+            .build();
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build();
+    }
+
+    private long randomSeeded() {
+        Integer accountId = accountIds.random();
+        return accountId == null ? 0L : accountIds.nameOf(accountId);
+    }
+
+    private String username(long n) {
+        return "lt-" + runId + "-" + n;
+    }
+
+    private static int orZero(Integer id) {
+        return id == null ? 0 : id;
+    }
+
+    private Operation nextOperation() {
+        return schedule[ThreadLocalRandom.current().nextInt(schedule.length)];
+    }
+
+    private static Operation[] buildSchedule(Map<Operation, Integer> mix) {
+        List<Operation> slots = new ArrayList<>();
+        mix.forEach((operation, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                slots.add(operation);
+            }
+        });
+        return slots.toArray(new Operation[0]);
+    }
+
+    private static Map<Operation, LatencyHistogram> newHistograms() {
+        Map<Operation, LatencyHistogram> map = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            map.put(operation, new LatencyHistogram());
+        }
+        return map;
+    }
+
+    private JsonNode buildReport(double elapsedSeconds) {
+        ObjectNode report = objectMapper.createObjectNode();
+        ObjectNode settings = report.putObject("config");
+        settings.put("baseUrl", baseUrl);
+        settings.put("mode", config.getMode().name().toLowerCase());
+        settings.put("concurrency", config.getConcurrency());
+        settings.put("arrivalRate", config.getArrivalRate());
+        settings.put("warmupSeconds", config.getWarmupSeconds());
+        settings.put("durationSeconds", config.getDurationSeconds());
+        settings.put("accounts", config.getAccounts());
+        settings.put("messagesPerAccount", config.getMessagesPerAccount());
+        ObjectNode mix = settings.putObject("mix");
+        config.getMix().forEach((operation, weight) -> mix.put(operation.getKey(), weight));
+
+        long totalRequests = 0;
+        long totalErrors = 0;
+        ObjectNode endpoints = report.putObject("endpoints");
+        for (Map.Entry<Operation, LatencyHistogram> entry : histograms.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            if (histogram.count() == 0) {
+                continue;
+            }
+            totalRequests += histogram.count();
+            totalErrors += histogram.errorCount();
+            ObjectNode endpoint = endpoints.putObject(entry.getKey().getEndpoint());
+            endpoint.put("requests", histogram.count());
+            endpoint.put("errors", histogram.errorCount());
+            endpoint.put("throughputPerSecond", histogram.count() / elapsedSeconds);
+            endpoint.put("p50Millis", histogram.percentileMillis(50));
+            endpoint.put("p99Millis", histogram.percentileMillis(99));
+            endpoint.put("p999Millis", histogram.percentileMillis(99.9));
+            endpoint.put("maxMillis", histogram.maxMillis());
+        }
+        report.put("elapsedSeconds", elapsedSeconds);
+        report.put("requests", totalRequests);
+        report.put("errors", totalErrors);
+        report.put("throughputPerSecond", totalRequests / elapsedSeconds);
+        return report;
+    }
+
+    /**
+     * A small thread-safe pool of ids that supports picking a random element and removing one.
+     */
+    private static final class IdPool {
+        private final List<Integer> ids = new ArrayList<>();
+        private final Map<Integer, Long> names = new ConcurrentHashMap<>();
+
+        synchronized void add(int id) {
+            ids.add(id);
+        }
+
+        synchronized Integer random() {
+            return ids.isEmpty() ? null : ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+        }
+
+        synchronized Integer take() {
+            if (ids.isEmpty()) {
+                return null;
+            }
+            int index = ThreadLocalRandom.current().nextInt(ids.size());
+            int last = ids.size() - 1;
+            Integer id = ids.get(index);
+            ids.set(index, ids.get(last));
+            ids.remove(last);
+            return id;
+        }
+
+        void rememberName(int accountId, long n) {
+            names.put(accountId, n);
+        }
+
+        long nameOf(int accountId) {
+            return names.getOrDefault(accountId, 0L);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.loadtest;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.SocialMediaApp;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Capacity test for the HTTP API. Excluded from the normal build; run it with
+ * {@code mvn test -Ploadtest} and tune it with the loadtest.* system properties described in LoadTestConfig.
+ * When loadtest.baseUrl is empty the app is started in-process with rate limiting switched off,
+ * otherwise the already running instance at that URL is driven.
+ * Throughput and p50/p99/p99.9 latency per endpoint are written to loadtest.report (target/loadtest-report.json).
+ */
+@Tag("loadtest")
+public class LoadTest {
+    private static final Logger log = LoggerFactory.getLogger(LoadTest.class);
+    LoadTestConfig config;
+    ConfigurableApplicationContext app;
+
+    @BeforeEach
+    public void setUp() {
+        config = LoadTestConfig.fromSystemProperties();
+        if (config.getBaseUrl().isEmpty()) {
+            String[] args = new String[] {"--ratelimit.enabled=false", "--logging.level.root=WARN", "--logging.level.com.example.loadtest=INFO"};
+            app = SpringApplication.run(SocialMediaApp.class, args);
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (app != null) {
+            SpringApplication.exit(app);
+        }
+    }
+
+    @Test
+    public void mixedWorkload() throws IOException, InterruptedException {
+        String baseUrl = config.getBaseUrl().isEmpty() ? "http://localhost:8080" : config.getBaseUrl();
+        JsonNode report = new LoadGenerator(config, baseUrl).run();
+        log.info("Load test report written to {}\n{}", config.getReportPath(), report.toPrettyString());
+        Assertions.assertTrue(report.path("requests").asLong() > 0, "The load test did not complete any requests");
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.loadtest;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Settings for a load test run, read from system properties so they can be passed on the Maven command line,
+ * e.g. {@code mvn test -Ploadtest -Dloadtest.concurrency=32 -Dloadtest.mix=read=8,post=2}.
+ */
+public class LoadTestConfig {
+    /**
+     * How requests are issued.
+     * CLOSED: each worker sends its next request as soon as the previous one completes.
+     * OPEN: requests are scheduled at a fixed arrival rate regardless of how fast the server answers.
+     */
+    public enum Mode { CLOSED, OPEN }
+
+    private final String baseUrl;
+    private final Mode mode;
+    private final int concurrency;
+    private final double arrivalRate;
+    private final int warmupSeconds;
+    private final int durationSeconds;
+    private final int accounts;
+    private final int messagesPerAccount;
+    private final Map<Operation, Integer> mix;
+    private final String reportPath;
+
+    public LoadTestConfig(String baseUrl, Mode mode, int concurrency, double arrivalRate, int warmupSeconds,
+                          int durationSeconds, int accounts, int messagesPerAccount, Map<Operation, Integer> mix,
+                          String reportPath) {
+        this.baseUrl = baseUrl;
+        this.mode = mode;
+        this.concurrency = concurrency;
+        this.arrivalRate = arrivalRate;
+        this.warmupSeconds = warmupSeconds;
+        this.durationSeconds = durationSeconds;
+        this.accounts = accounts;
+        this.messagesPerAccount = messagesPerAccount;
+        this.mix = Collections.unmodifiableMap(new EnumMap<>(mix));
+        this.reportPath = reportPath;
+    }
+
+    /**
+     * Builds a configuration from the loadtest.* system properties, using defaults for anything not set.
+     * An empty loadtest.baseUrl means the app is started in-process on port 8080.
+     *
+     * @return The configuration for this run
+     */
+    public static LoadTestConfig fromSystemProperties() {
+        return new LoadTestConfig(
+            System.getProperty("loadtest.baseUrl", ""),
+            Mode.valueOf(System.getProperty("loadtest.mode", "closed").toUpperCase()),
+            Integer.getInteger("loadtest.concurrency", 16),
+            Double.parseDouble(System.getProperty("loadtest.rate", "500")),
+            Integer.getInteger("loadtest.warmupSeconds", 5),
+            Integer.getInteger("loadtest.durationSeconds", 30),
+            Integer.getInteger("loadtest.accounts", 200),
+            Integer.getInteger("loadtest.messagesPerAccount", 10),
+            parseMix(System.getProperty("loadtest.mix",
+                "register=1,login=2,post=10,read=50,readAccount=20,readAll=1,update=10,delete=6")),
+            System.getProperty("loadtest.report", "target/loadtest-report.json"));
+    }
+
+    /**
+     * Parses a comma separated list of operation=weight pairs.
+     *
+     * @param spec The mix specification, e.g. "read=8,post=2"
+     * @return The weight of each listed operation
+     */
+    static Map<Operation, Integer> parseMix(String spec) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : spec.split(",")) {
+            String[] pair = part.trim().split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Invalid mix entry: " + part);
+            }
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight > 0) {
+                weights.put(Operation.fromKey(pair[0].trim()), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("The operation mix must contain at least one positive weight");
+        }
+        return weights;
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public double getArrivalRate() {
+        return arrivalRate;
+    }
+
+    public int getWarmupSeconds() {
+        return warmupSeconds;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public int getAccounts() {
+        return accounts;
+    }
+
+    public int getMessagesPerAccount() {
+        return messagesPerAccount;
+    }
+
+    public Map<Operation, Integer> getMix() {
+        return mix;
+    }
+
+    public String getReportPath() {
+        return reportPath;
+    }
+}
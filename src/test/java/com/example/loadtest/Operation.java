@@ -0,0 +1,53 @@
+package com.example.loadtest;
+
+/**
+ * The endpoint calls a load test can mix, each reported under its own endpoint label.
+ */
+public enum Operation {
+    REGISTER("register", "POST /register"),
+    LOGIN("login", "POST /login"),
+    POST("post", "POST /messages"),
+    READ("read", "GET /messages/{messageId}"),
+    READ_ACCOUNT("readAccount", "GET /accounts/{accountId}/messages"),
+    READ_ALL("readAll", "GET /messages"),
+    UPDATE("update", "PATCH /messages/{messageId}"),
+    DELETE("delete", "DELETE /messages/{messageId}"),
+    REJECT("reject", "POST /messages (invalid)");
+
+    private final String key;
+    private final String endpoint;
+
+    Operation(String key, String endpoint) {
+        this.key = key;
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * @return The name used for this operation in the loadtest.mix property
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return The endpoint label used in the report
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Looks up an operation by its mix key.
+     *
+     * @param key The mix key, e.g. "readAccount"
+     * @return The matching operation
+     */
+    public static Operation fromKey(String key) {
+        for (Operation operation : values()) {
+            if (operation.key.equalsIgnoreCase(key)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Unknown load test operation: " + key);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.loadtest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.SocialMediaApp;
+import com.example.retention.RetentionService;
+import com.example.service.MessageCounterService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Retention purge rate and its cost to live reads. Excluded from the normal build; run it with
+ * {@code mvn test -Ploadtest -Dtest=RetentionBenchmark}.
+ * The app is started in-process and loadtest.expiredRows (default 300000) messages from 2017 are inserted straight
+ * into the table. Reads (GET /messages/{messageId} and GET /accounts/{accountId}/messages) are then measured twice
+ * with the other loadtest.* settings: once on their own and once while a retention pass deletes the expired rows.
+ * Per-phase reports go to target/retention-&lt;phase&gt;.json and the summary, with the purge rate, to
+ * loadtest.retentionReport (target/retention-benchmark.json).
+ */
+@Tag("loadtest")
+public class RetentionBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(RetentionBenchmark.class);
+
+    @Test
+    public void purgeRateAndReadLatency() throws Exception {
+        LoadTestConfig defaults = LoadTestConfig.fromSystemProperties();
+        int expiredRows = Integer.getInteger("loadtest.expiredRows", 300000);
+        ObjectMapper objectMapper = new ObjectMapper();
+        ObjectNode summary = objectMapper.createObjectNode();
+        String[] args = new String[] {"--ratelimit.enabled=false", "--logging.level.root=WARN", "--logging.level.com.example.loadtest=INFO",
+            "--retention.enabled=true", "--retention.interval-ms=86400000"};
+        ConfigurableApplicationContext app = SpringApplication.run(SocialMediaApp.class, args);
+        try {
+            app.getBean(JdbcTemplate.class).update("INSERT INTO message (messageId, postedBy, messageText, timePostedEpoch) "
+                + "SELECT 1000000 + X, 9999, 'expired', 1500000000 + X FROM SYSTEM_RANGE(1, ?)",
+                expiredRows);
+            app.getBean(MessageCounterService.class).reconcile();
+
+            summary.set("baseline", readPhase(defaults, "baseline"));
+
+            RetentionService retention = app.getBean(RetentionService.class);
+            long start = System.nanoTime();
+            double[] purgeSeconds = new double[1];
+            CompletableFuture<Long> purge = CompletableFuture.supplyAsync(() -> {
+                try {
+                    long purged = retention.purge();
+                    purgeSeconds[0] = (System.nanoTime() - start) / 1e9;
+                    return purged;
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            ObjectNode purging = readPhase(defaults, "purging");
+            long purged = purge.get();
+            Assertions.assertTrue(purged >= expiredRows, "Only " + purged + " expired messages were purged");
+            purging.put("purgedRows", purged);
+            purging.put("purgeSeconds", purgeSeconds[0]);
+            purging.put("purgedRowsPerSecond", purged / purgeSeconds[0]);
+            summary.set("purging", purging);
+        } finally {
+            SpringApplication.exit(app);
+        }
+
+        Path path = Paths.get(System.getProperty("loadtest.retentionReport", "target/retention-benchmark.json"));
+        if (path.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+        }
+        Files.writeString(path, summary.toPrettyString());
+        log.info("Benchmark report written to {}\n{}", path, summary.toPrettyString());
+    }
+
+    private static ObjectNode readPhase(LoadTestConfig defaults, String phase) throws IOException, InterruptedException {
+        LoadTestConfig config = new LoadTestConfig("", LoadTestConfig.Mode.CLOSED, defaults.getConcurrency(),
+            defaults.getArrivalRate(), defaults.getWarmupSeconds(), defaults.getDurationSeconds(),
+            defaults.getAccounts(), defaults.getMessagesPerAccount(), Map.of(Operation.READ, 3, Operation.READ_ACCOUNT, 1),
+            "target/retention-" + phase + ".json");
+        JsonNode report = new LoadGenerator(config, "http://localhost:8080").run();
+        Assertions.assertTrue(report.path("requests").asLong() > 0, "No requests completed in the " + phase + " phase");
+        ObjectNode result = new ObjectMapper().createObjectNode();
+        result.put("throughputPerSecond", report.path("throughputPerSecond").asDouble());
+        result.put("errors", report.path("errors").asLong());
+        result.set("read", report.path("endpoints").path(Operation.READ.getEndpoint()));
+        result.set("readAccount", report.path("endpoints").path(Operation.READ_ACCOUNT.getEndpoint()));
+        return result;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.loadtest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.SocialMediaApp;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Write throughput against shard count. Excluded from the normal build; run it with
+ * {@code mvn test -Ploadtest -Dtest=ShardingBenchmark}.
+ * For every count in loadtest.shardCounts (default 1,2,4) the app is started in-process with sharding on and
+ * driven with a POST-only closed-loop workload, using the other loadtest.* settings from LoadTestConfig.
+ * Per-count reports go to target/sharding-&lt;count&gt;.json and the throughput summary to
+ * loadtest.shardingReport (target/sharding-benchmark.json).
+ */
+@Tag("loadtest")
+public class ShardingBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(ShardingBenchmark.class);
+
+    @Test
+    public void writeThroughputByShardCount() throws IOException, InterruptedException {
+        LoadTestConfig defaults = LoadTestConfig.fromSystemProperties();
+        ObjectMapper objectMapper = new ObjectMapper();
+        ObjectNode summary = objectMapper.createObjectNode();
+        for (String count : System.getProperty("loadtest.shardCounts", "1,2,4").split(",")) {
+            int shards = Integer.parseInt(count.trim());
+            LoadTestConfig config = new LoadTestConfig("", LoadTestConfig.Mode.CLOSED, defaults.getConcurrency(),
+                defaults.getArrivalRate(), defaults.getWarmupSeconds(), defaults.getDurationSeconds(),
+                defaults.getAccounts(), 0, Map.of(Operation.POST, 1), "target/sharding-" + shards + ".json");
+            String[] args = new String[] {"--ratelimit.enabled=false", "--logging.level.root=WARN", "--logging.level.com.example.loadtest=INFO",
+                "--sharding.enabled=true", "--sharding.shards=" + shards};
+            ConfigurableApplicationContext app = SpringApplication.run(SocialMediaApp.class, args);
+            JsonNode report;
+            try {
+                report = new LoadGenerator(config, "http://localhost:8080").run();
+            } finally {
+                SpringApplication.exit(app);
+            }
+            Assertions.assertTrue(report.path("requests").asLong() > 0, "No requests completed with " + shards + " shards");
+            ObjectNode result = summary.putObject(String.valueOf(shards));
+            result.put("throughputPerSecond", report.path("throughputPerSecond").asDouble());
+            result.put("errors", report.path("errors").asLong());
+            result.set("post", report.path("endpoints").path(Operation.POST.getEndpoint()));
+        }
+        Path path = Paths.get(System.getProperty("loadtest.shardingReport", "target/sharding-benchmark.json"));
+        if (path.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+        }
+        Files.writeString(path, summary.toPrettyString());
+        log.info("Benchmark report written to {}\n{}", path, summary.toPrettyString());
+    }
+}